@@ -27,4 +27,5 @@ public class Constants {
     public static final String ENROLLMENT = "com.auth0.guardian.sample.Constants.ENROLLMENT";
     public static final String NOTIFICATION = "com.auth0.guardian.sample.Constants.NOTIFICATION";
     public static final String CONSENT = "com.auth0.guardian.sample.Constants.CONSENT";
+    public static final String SERVER_TIME_OFFSET = "com.auth0.guardian.sample.Constants.SERVER_TIME_OFFSET";
 }
@@ -106,10 +106,18 @@ public class MainActivity extends AppCompatActivity implements FcmUtils.FcmToken
         fcmUtils.fetchFcmToken(this);
 
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        // restore the last known server time offset, so the first OTP codes already match the server
+        if (sharedPreferences.contains(Constants.SERVER_TIME_OFFSET)) {
+            Guardian.getServerClock().setOffsetMillis(
+                    sharedPreferences.getLong(Constants.SERVER_TIME_OFFSET, 0));
+        }
         String enrollmentJSON = sharedPreferences.getString(Constants.ENROLLMENT, null);
         if (enrollmentJSON != null) {
             enrollment = ParcelableEnrollment.fromJSON(enrollmentJSON);
             updateUI();
+            if (!enrollment.hasStoredPublicKey()) {
+                migratePublicKey(enrollment);
+            }
 
             ParcelableNotification notification = getIntent().getParcelableExtra(Constants.NOTIFICATION);
             if (notification != null) {
@@ -118,6 +126,15 @@ public class MainActivity extends AppCompatActivity implements FcmUtils.FcmToken
         }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .edit()
+                .putLong(Constants.SERVER_TIME_OFFSET, Guardian.getServerClock().getOffsetMillis())
+                .apply();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -226,6 +243,36 @@ public class MainActivity extends AppCompatActivity implements FcmUtils.FcmToken
         updateUI();
     }
 
+    /**
+     * Enrollments saved by older versions don't include the public key, derive it once (in the
+     * background) and save it, so it's not derived again on every start. The save happens on the
+     * main thread, like every other save of the enrollment, so it can't overwrite a newer one.
+     */
+    private void migratePublicKey(final ParcelableEnrollment enrollment) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    enrollment.getPublicKey();
+                } catch (IllegalStateException e) {
+                    Log.e(TAG, "Unable to obtain the public key of the enrollment", e);
+                    return;
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // only if it wasn't replaced or removed in the meantime
+                        if (MainActivity.this.enrollment == enrollment) {
+                            PreferenceManager.getDefaultSharedPreferences(MainActivity.this).edit()
+                                    .putString(Constants.ENROLLMENT, enrollment.toJSON())
+                                    .apply();
+                        }
+                    }
+                });
+            }
+        }, "Enrollment migration").start();
+    }
+
     private void onPushNotificationReceived(ParcelableNotification notification) {
         startActivity(NotificationActivity.getStartIntent(this, notification, enrollment));
     }
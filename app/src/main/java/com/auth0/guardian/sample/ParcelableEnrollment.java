@@ -38,6 +38,7 @@ import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
+import java.security.Provider;
 import java.security.PublicKey;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.InvalidKeySpecException;
@@ -80,8 +81,14 @@ public class ParcelableEnrollment implements Enrollment, Parcelable {
     @SerializedName("privateKey")
     private final String privateKey;
 
+    // not final: enrollments stored without it get the derived key, see hasStoredPublicKey.
+    // volatile because it's derived in the background and read when saving on the main thread
     @SerializedName("publicKey")
-    private final String publicKey;
+    private volatile String publicKey;
+
+    // decoded keys, not serialized
+    private transient volatile PrivateKey decodedSigningKey;
+    private transient volatile PublicKey decodedPublicKey;
 
     public ParcelableEnrollment(Enrollment enrollment) {
         this.userId = enrollment.getUserId();
@@ -156,33 +163,58 @@ public class ParcelableEnrollment implements Enrollment, Parcelable {
     @NonNull
     @Override
     public PrivateKey getSigningKey() {
+        PrivateKey signingKey = decodedSigningKey;
+        if (signingKey != null) {
+            return signingKey;
+        }
         try {
             byte[] key = Base64.decode(privateKey, Base64.DEFAULT);
             KeyFactory keyFactory = KeyFactory.getInstance("RSA");
             PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(key);
-            return keyFactory.generatePrivate(keySpec);
+            signingKey = keyFactory.generatePrivate(keySpec);
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             throw new IllegalStateException("Invalid private key!");
         }
+        decodedSigningKey = signingKey;
+        return signingKey;
     }
 
     @NonNull
     @Override
     public PublicKey getPublicKey() {
+        PublicKey key = decodedPublicKey;
+        if (key != null) {
+            return key;
+        }
         try {
             if (publicKey == null || publicKey.isEmpty()) {
                 // For backwards-compatibility with enrollments encoded without a public key
                 // prior to version 0.9.0 of the Guardian.Android SDK
-                return getPublicKeyFromSigningKey();
+                key = getPublicKeyFromSigningKey();
+                // keep the derived key, so it's stored the next time the enrollment is saved
+                publicKey = Base64.encodeToString(key.getEncoded(), Base64.DEFAULT);
+            } else {
+                byte[] encoded = Base64.decode(publicKey, Base64.DEFAULT);
+                KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+                X509EncodedKeySpec keySpec = new X509EncodedKeySpec(encoded);
+                key = keyFactory.generatePublic(keySpec);
             }
-
-            byte[] key = Base64.decode(publicKey, Base64.DEFAULT);
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(key);
-            return keyFactory.generatePublic(keySpec);
         } catch (NoSuchAlgorithmException | InvalidKeySpecException | NoSuchProviderException e) {
             throw new IllegalStateException("Invalid public key!");
         }
+        decodedPublicKey = key;
+        return key;
+    }
+
+    /**
+     * Whether the serialized form includes the public key. Enrollments stored without it should
+     * call {@link #getPublicKey()} once, which derives it from the signing key, and be saved again
+     * so it's not derived every time the app starts.
+     *
+     * @return true if the public key doesn't have to be derived
+     */
+    public boolean hasStoredPublicKey() {
+        return publicKey != null && !publicKey.isEmpty();
     }
 
     private PublicKey getPublicKeyFromSigningKey() throws NoSuchAlgorithmException, InvalidKeySpecException, NoSuchProviderException {
@@ -191,7 +223,7 @@ public class ParcelableEnrollment implements Enrollment, Parcelable {
         // Prior to API Level 32 the default Security Provider will decode PKCS8Encoded private key to a
         // RSAPrivateKey rather than RSAPrivateCrtKey which discards the public exponent required to reconstruct
         // the public key.
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA", new BouncyCastleProvider());
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA", BouncyCastle.PROVIDER);
 
         byte[] signingKeyBytes = Base64.decode(privateKey, Base64.DEFAULT);
         PKCS8EncodedKeySpec signingKeySpec = new PKCS8EncodedKeySpec(signingKeyBytes);
@@ -206,6 +238,13 @@ public class ParcelableEnrollment implements Enrollment, Parcelable {
         }
     }
 
+    /**
+     * Creating the provider is expensive, so there's only one, created the first time it's needed
+     */
+    private static class BouncyCastle {
+        static final Provider PROVIDER = new BouncyCastleProvider();
+    }
+
     // PARCELABLE
     protected ParcelableEnrollment(Parcel in) {
         id = in.readString();
@@ -57,6 +57,10 @@ public class FcmListenerService extends FirebaseMessagingService {
 
         try {
             ParcelableNotification notification = Guardian.parseNotification(message.getData());
+            if (notification != null && Guardian.markSeen(notification)) {
+                Log.d(TAG, "Ignoring a notification that was already received");
+                return;
+            }
             EventBus eventBus = EventBus.getDefault();
             if (eventBus.hasSubscriberForEvent(GuardianNotificationReceivedEvent.class)) {
                 eventBus.post(new GuardianNotificationReceivedEvent(notification));
@@ -25,24 +25,39 @@ package com.auth0.guardian.sample.views;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
-import android.os.CountDownTimer;
 import android.util.AttributeSet;
 
+import androidx.annotation.NonNull;
+
 import com.auth0.android.guardian.sdk.Enrollment;
-import com.auth0.android.guardian.sdk.otp.TOTP;
-import com.auth0.android.guardian.sdk.otp.utils.Base32;
+import com.auth0.android.guardian.sdk.TOTPTicker;
 import com.auth0.guardian.sample.R;
 
 public class TOTPCodeView extends androidx.appcompat.widget.AppCompatTextView {
 
+    // shared by every view, so there's a single timer no matter how many codes are displayed
+    private static final TOTPTicker TICKER = new TOTPTicker();
+
     private Enrollment enrollment;
-    private CountDownTimer timer;
-    private TOTP codeGenerator;
+    private boolean subscribed;
 
     private int defaultTextColor = Color.BLACK;
     private int aboutToExpireColor = Color.RED;
     private int expiringTime = 5000;
 
+    private final TOTPTicker.Listener listener = new TOTPTicker.Listener() {
+        @Override
+        public void onCode(@NonNull final String code, final long millisRemaining) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    setText(code);
+                    setTextColor(millisRemaining > expiringTime ? defaultTextColor : aboutToExpireColor);
+                }
+            });
+        }
+    };
+
     public TOTPCodeView(Context context) {
         super(context);
         init(null, 0);
@@ -84,19 +99,12 @@ public class TOTPCodeView extends androidx.appcompat.widget.AppCompatTextView {
     }
 
     public void setEnrollment(Enrollment enrollment) {
-        try {
-            this.codeGenerator = new TOTP(
-                    enrollment.getAlgorithm(),
-                    Base32.decode(enrollment.getSecret()),
-                    enrollment.getDigits(),
-                    enrollment.getPeriod());
-        } catch (Base32.DecodingException e) {
-            throw new IllegalArgumentException("Unable to generate OTP: could not decode secret", e);
-        }
-
         this.enrollment = enrollment;
 
-        startUpdateTimer();
+        unsubscribe();
+        if (isAttachedToWindow()) {
+            subscribe();
+        }
     }
 
     @Override
@@ -104,7 +112,7 @@ public class TOTPCodeView extends androidx.appcompat.widget.AppCompatTextView {
         super.onAttachedToWindow();
 
         if (enrollment != null) {
-            startUpdateTimer();
+            subscribe();
         }
     }
 
@@ -112,53 +120,20 @@ public class TOTPCodeView extends androidx.appcompat.widget.AppCompatTextView {
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
 
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
-        }
+        unsubscribe();
     }
 
-    private void startUpdateTimer() {
-        final long periodMs = enrollment.getPeriod() * 1000;
-        long currentTime = System.currentTimeMillis();
-        // always start with a little offset (0.1 sec) to  be sure that the next code is the new one
-        long nextChange = periodMs - currentTime % periodMs + 100;
-
-        if (nextChange > expiringTime) {
-            setTextColor(defaultTextColor);
-        } else {
-            setTextColor(aboutToExpireColor);
+    private void subscribe() {
+        if (!subscribed) {
+            TICKER.subscribe(enrollment, expiringTime, listener);
+            subscribed = true;
         }
-
-        updateCode();
-
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
-        }
-
-        timer = new CountDownTimer(nextChange, 1000) {
-            @Override
-            public void onTick(long millisUntilFinished) {
-                if (System.currentTimeMillis() % periodMs >= periodMs - expiringTime) {
-                    setTextColor(aboutToExpireColor);
-                }
-            }
-
-            @Override
-            public void onFinish() {
-                timer = null;
-                startUpdateTimer();
-            }
-        };
-        timer.start();
     }
 
-    private void updateCode() {
-        setTextColor(defaultTextColor);
-
-        String codeStr = codeGenerator.generate();
-
-        setText(codeStr);
+    private void unsubscribe() {
+        if (subscribed) {
+            TICKER.unsubscribe(listener);
+            subscribed = false;
+        }
     }
 }
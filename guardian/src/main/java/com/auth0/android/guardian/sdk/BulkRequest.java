@@ -0,0 +1,202 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the same operation on several enrollments, a few at a time. Requests are created only
+ * when they are about to start, and the next one starts as soon as any of the running ones
+ * finishes.
+ * <p>
+ * The failure of one enrollment doesn't stop the others, it's reported in the {@link BulkResult},
+ * so executing or starting this request never fails.
+ *
+ * @param <T> the type of the response of each request
+ */
+class BulkRequest<T> implements GuardianAPIRequest<BulkResult<T>> {
+
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    interface Operation<T> {
+
+        /**
+         * Creates the request for an enrollment, called right before starting it
+         */
+        @NonNull
+        GuardianAPIRequest<T> create(@NonNull Enrollment enrollment);
+
+        /**
+         * Called after the request of an enrollment succeeded
+         */
+        void onSuccess(@NonNull Enrollment enrollment);
+    }
+
+    private final List<Enrollment> enrollments;
+    private final Operation<T> operation;
+    private final int maxConcurrentRequests;
+
+    BulkRequest(@NonNull List<? extends Enrollment> enrollments,
+                @NonNull Operation<T> operation,
+                int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException(
+                    "At least one request must be allowed (was: " + maxConcurrentRequests + ")");
+        }
+        this.enrollments = new ArrayList<>(enrollments);
+        this.operation = operation;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Runs every request, blocking the current thread until all of them finish
+     *
+     * @return the result of every enrollment
+     * @throws IOException when the thread is interrupted while waiting
+     */
+    @Override
+    public BulkResult<T> execute() throws IOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<BulkResult<T>> result = new AtomicReference<>();
+        start(new Callback<BulkResult<T>>() {
+            @Override
+            public void onSuccess(BulkResult<T> response) {
+                result.set(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                // never called
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the requests");
+        }
+        return result.get();
+    }
+
+    @Override
+    public void start(@NonNull Callback<BulkResult<T>> callback) {
+        new Run(callback).start();
+    }
+
+    private class Run {
+
+        private final Callback<BulkResult<T>> callback;
+        private final long startedAt = System.nanoTime();
+        // one per enrollment, set as they finish
+        private final List<BulkResult.Item<T>> items =
+                new ArrayList<>(Collections.<BulkResult.Item<T>>nCopies(enrollments.size(), null));
+
+        // guarded by this
+        private int next;
+        private int finished;
+        private int available = maxConcurrentRequests;
+        // requests that fail right away finish while starting, so only one thread starts them
+        private boolean starting;
+
+        Run(Callback<BulkResult<T>> callback) {
+            this.callback = callback;
+        }
+
+        void start() {
+            if (enrollments.isEmpty()) {
+                finish();
+                return;
+            }
+            startPending();
+        }
+
+        /**
+         * Starts requests while there are enrollments left and fewer requests than the maximum
+         * running, unless another call is already doing it
+         */
+        private void startPending() {
+            synchronized (this) {
+                if (starting) {
+                    return;
+                }
+                starting = true;
+            }
+            while (true) {
+                final int index;
+                synchronized (this) {
+                    if (available == 0 || next == enrollments.size()) {
+                        starting = false;
+                        return;
+                    }
+                    available--;
+                    index = next++;
+                }
+                start(index);
+            }
+        }
+
+        private void start(final int index) {
+            final Enrollment enrollment = enrollments.get(index);
+            final long requestStartedAt = System.nanoTime();
+
+            final GuardianAPIRequest<T> request;
+            try {
+                request = operation.create(enrollment);
+            } catch (RuntimeException e) {
+                // e.g. the JWT can't be signed with the enrollment's key
+                onFinished(index, new BulkResult.Item<T>(enrollment, null, e, 0));
+                return;
+            }
+            request.start(new Callback<T>() {
+                @Override
+                public void onSuccess(T response) {
+                    operation.onSuccess(enrollment);
+                    onFinished(index, new BulkResult.Item<>(enrollment, response, null,
+                            millisSince(requestStartedAt)));
+                }
+
+                @Override
+                public void onFailure(Throwable exception) {
+                    onFinished(index, new BulkResult.Item<T>(enrollment, null, exception,
+                            millisSince(requestStartedAt)));
+                }
+            });
+        }
+
+        private void onFinished(int index, BulkResult.Item<T> item) {
+            final boolean done;
+            synchronized (this) {
+                items.set(index, item);
+                available++;
+                done = ++finished == enrollments.size();
+            }
+            if (done) {
+                finish();
+            } else {
+                startPending();
+            }
+        }
+
+        private void finish() {
+            final List<BulkResult.Item<T>> results;
+            synchronized (this) {
+                results = new ArrayList<>(items);
+            }
+            callback.onSuccess(new BulkResult<>(results, millisSince(startedAt)));
+        }
+    }
+
+    private static long millisSince(long nanoTime) {
+        return (System.nanoTime() - nanoTime) / 1000000L;
+    }
+}
@@ -0,0 +1,152 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of running the same operation on several enrollments, with the result and duration
+ * of the request of each one
+ *
+ * @param <T> the type of the response of each request
+ */
+public final class BulkResult<T> {
+
+    private final List<Item<T>> items;
+    private final long totalMillis;
+
+    BulkResult(@NonNull List<Item<T>> items, long totalMillis) {
+        this.items = Collections.unmodifiableList(items);
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * @return the result of every enrollment, in the same order they were given
+     */
+    @NonNull
+    public List<Item<T>> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the results of the requests that failed
+     */
+    @NonNull
+    public List<Item<T>> getFailures() {
+        final List<Item<T>> failures = new ArrayList<>();
+        for (Item<T> item : items) {
+            if (!item.isSuccessful()) {
+                failures.add(item);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return how many requests succeeded
+     */
+    public int getSuccessCount() {
+        int count = 0;
+        for (Item<T> item : items) {
+            if (item.isSuccessful()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the time from the start of the first request to the end of the last one, in
+     * milliseconds
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * @return the average duration of the requests, in milliseconds
+     */
+    public long getAverageMillis() {
+        if (items.isEmpty()) {
+            return 0;
+        }
+        long sum = 0;
+        for (Item<T> item : items) {
+            sum += item.getDurationMillis();
+        }
+        return sum / items.size();
+    }
+
+    /**
+     * @return the duration of the slowest request, in milliseconds
+     */
+    public long getSlowestMillis() {
+        long slowest = 0;
+        for (Item<T> item : items) {
+            slowest = Math.max(slowest, item.getDurationMillis());
+        }
+        return slowest;
+    }
+
+    /**
+     * The result of the request of one enrollment
+     *
+     * @param <T> the type of the response
+     */
+    public static final class Item<T> {
+
+        private final Enrollment enrollment;
+        private final T response;
+        private final Throwable error;
+        private final long durationMillis;
+
+        Item(@NonNull Enrollment enrollment, @Nullable T response, @Nullable Throwable error,
+             long durationMillis) {
+            this.enrollment = enrollment;
+            this.response = response;
+            this.error = error;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return the enrollment
+         */
+        @NonNull
+        public Enrollment getEnrollment() {
+            return enrollment;
+        }
+
+        /**
+         * @return whether the request succeeded
+         */
+        public boolean isSuccessful() {
+            return error == null;
+        }
+
+        /**
+         * @return the response, or null if the request failed or has no response
+         */
+        @Nullable
+        public T getResponse() {
+            return response;
+        }
+
+        /**
+         * @return why the request failed, or null if it succeeded
+         */
+        @Nullable
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * @return how long the request took, in milliseconds
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
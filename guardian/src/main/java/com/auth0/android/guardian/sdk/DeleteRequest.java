@@ -0,0 +1,49 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import java.io.IOException;
+
+/**
+ * The request that deletes an enrollment. Once the server confirms the deletion, the cached
+ * device token of the enrollment is dropped, it can't be used anymore.
+ */
+class DeleteRequest implements GuardianAPIRequest<Void> {
+
+    final GuardianAPIRequest<Void> request;
+    final GuardianAPIClient client;
+    final String deviceIdentifier;
+
+    DeleteRequest(@NonNull GuardianAPIRequest<Void> request,
+                  @NonNull GuardianAPIClient client,
+                  @NonNull String deviceIdentifier) {
+        this.request = request;
+        this.client = client;
+        this.deviceIdentifier = deviceIdentifier;
+    }
+
+    @Override
+    public Void execute() throws IOException, GuardianException {
+        final Void result = request.execute();
+        client.invalidateDeviceToken(deviceIdentifier);
+        return result;
+    }
+
+    @Override
+    public void start(@NonNull final Callback<Void> callback) {
+        request.start(new Callback<Void>() {
+            @Override
+            public void onSuccess(Void response) {
+                client.invalidateDeviceToken(deviceIdentifier);
+                callback.onSuccess(response);
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                callback.onFailure(exception);
+            }
+        });
+    }
+}
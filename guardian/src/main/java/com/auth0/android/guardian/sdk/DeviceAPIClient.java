@@ -25,9 +25,7 @@ package com.auth0.android.guardian.sdk;
 import androidx.annotation.Nullable;
 
 import com.auth0.android.guardian.sdk.networking.RequestFactory;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
 import java.util.Map;
 
 import okhttp3.HttpUrl;
@@ -43,7 +41,7 @@ public class DeviceAPIClient {
     private final HttpUrl url;
     private final String token;
 
-    private final ClientInfo clientInfo;
+    private final String encodedClientInfo;
 
     DeviceAPIClient(RequestFactory requestFactory, HttpUrl baseUrl, String id, String token) {
         this(requestFactory, baseUrl, id, token, null);
@@ -56,7 +54,7 @@ public class DeviceAPIClient {
                 .addPathSegment(id)
                 .build();
         this.token = token;
-        this.clientInfo = new ClientInfo(telemetryInfo);
+        this.encodedClientInfo = new ClientInfo(telemetryInfo).toBase64();
     }
 
     /**
@@ -67,7 +65,7 @@ public class DeviceAPIClient {
     public GuardianAPIRequest<Void> delete() {
         return requestFactory
                 .<Void>newRequest("DELETE", url, Void.class)
-                .setHeader("Auth0-Client", this.clientInfo.toBase64())
+                .setHeader("Auth0-Client", encodedClientInfo)
                 .setBearer(token);
     }
 
@@ -86,9 +84,8 @@ public class DeviceAPIClient {
     public GuardianAPIRequest<Map<String, Object>> update(@Nullable String identifier,
                                                           @Nullable String name,
                                                           @Nullable String gcmToken) {
-        Type type = new TypeToken<Map<String, Object>>() {}.getType();
-        return requestFactory.<Map<String, Object>>newRequest("PATCH", url, type)
-                .setHeader("Auth0-Client", this.clientInfo.toBase64())
+        return requestFactory.<Map<String, Object>>newRequest("PATCH", url, GuardianJsonAdapters.MAP_TYPE)
+                .setHeader("Auth0-Client", encodedClientInfo)
                 .setBearer(token)
                 .setParameter("identifier", identifier)
                 .setParameter("name", name)
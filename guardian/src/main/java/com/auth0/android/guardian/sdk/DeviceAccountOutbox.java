@@ -0,0 +1,565 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the device account changes (updates and deletes of enrollments) that were not sent yet in
+ * a file, and sends them when possible, so they are not lost when the device is offline or the
+ * app is killed.
+ * <p>
+ * There's at most one pending change per enrollment: an update after another one is merged into
+ * it, and a delete replaces any pending update, so only the delete is sent. Changes are sent one
+ * at a time in a background thread, in the order the enrollments were first changed. When one
+ * can't be sent because of a connection problem or a server error, sending stops and is retried
+ * later, waiting longer after every failure; call {@link #flush()} when connectivity returns, or
+ * when the app starts, to send them right away. Changes the server rejects are dropped and
+ * reported to the {@link Listener}.
+ * <p>
+ * The enrollment's id, user id and signing key are kept with each change, so deletes can still be
+ * sent after the enrollment was removed from the app. The file is encrypted with a
+ * {@link StorageCipher}, the same way as the {@link EnrollmentStore} one. A file that can't be
+ * read back, e.g. it was truncated, is moved aside and the outbox starts empty, see
+ * {@link Listener#onDiscarded(IOException)}.
+ * <p>
+ * Instances are thread safe, but only one instance should use a given file.
+ */
+public class DeviceAccountOutbox {
+
+    /**
+     * Receives the result of the changes, on the outbox's thread
+     */
+    public interface Listener {
+
+        /**
+         * Called when the server accepted the change of an enrollment
+         *
+         * @param enrollmentId the enrollment id
+         * @param deleted      true if the enrollment was deleted, false if it was updated
+         */
+        void onSent(@NonNull String enrollmentId, boolean deleted);
+
+        /**
+         * Called when the server rejected the change of an enrollment, which is not retried
+         *
+         * @param enrollmentId the enrollment id
+         * @param deleted      true if the change was a delete, false if it was an update
+         * @param exception    the reason
+         */
+        void onRejected(@NonNull String enrollmentId, boolean deleted,
+                        @NonNull GuardianException exception);
+
+        /**
+         * Called when the file couldn't be parsed or decrypted. It was renamed with a
+         * {@code .corrupt} suffix (or deleted if that failed) and the changes in it are lost.
+         *
+         * @param reason why the file couldn't be read
+         */
+        default void onDiscarded(@NonNull IOException reason) {
+        }
+    }
+
+    static final long MIN_RETRY_DELAY_MILLIS = 15 * 1000;
+    static final long MAX_RETRY_DELAY_MILLIS = 30 * 60 * 1000;
+
+    private static final int MAGIC = 0x4744414f; // "GDAO"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    private final GuardianAPIClient apiClient;
+    private final File file;
+    private final StorageCipher cipher;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private final Runnable send = new Runnable() {
+        @Override
+        public void run() {
+            sendPending();
+        }
+    };
+
+    private volatile Listener listener;
+
+    // guarded by this, pending changes by enrollment id, null until loaded
+    private Map<String, Change> pending;
+    private ScheduledFuture<?> nextRetry;
+    private long retryDelayMillis;
+
+    /**
+     * Creates an outbox that uses the given file, usually in the app's private files directory,
+     * encrypted with the default cipher
+     *
+     * @param guardian the Guardian instance used to send the changes
+     * @param file     the file where pending changes are kept
+     */
+    public DeviceAccountOutbox(@NonNull Guardian guardian, @NonNull File file) {
+        this(guardian, file, StorageCiphers.defaultCipher());
+    }
+
+    /**
+     * Creates an outbox that uses the given file, usually in the app's private files directory
+     *
+     * @param guardian the Guardian instance used to send the changes
+     * @param file     the file where pending changes are kept
+     * @param cipher   encrypts the file, it must be able to decrypt what it encrypted in previous
+     *                 runs of the app
+     */
+    public DeviceAccountOutbox(@NonNull Guardian guardian, @NonNull File file,
+                               @NonNull StorageCipher cipher) {
+        this(guardian.getAPIClient(), file, cipher,
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Guardian device account outbox");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }), true);
+    }
+
+    @VisibleForTesting
+    DeviceAccountOutbox(@NonNull GuardianAPIClient apiClient,
+                        @NonNull File file,
+                        @NonNull StorageCipher cipher,
+                        @NonNull ScheduledExecutorService executor,
+                        boolean ownsExecutor) {
+        this.apiClient = apiClient;
+        this.file = file;
+        this.cipher = cipher;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Sets the listener that receives the result of the changes
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds an update of the name and push notification token of an enrollment's device. Null
+     * values are not changed at the server, and values of a pending update of the same enrollment
+     * that are not changed again are kept.
+     *
+     * @param enrollment        the enrollment
+     * @param deviceName        the new device name, or null to keep the current one
+     * @param notificationToken the new push notification token, or null to keep the current one
+     * @throws IOException              when the file can't be read or written
+     * @throws IllegalArgumentException when the signing key is not exportable, see
+     *                                  {@link EnrollmentStore#put(Enrollment)}
+     */
+    @WorkerThread
+    public void update(@NonNull Enrollment enrollment,
+                       @Nullable String deviceName,
+                       @Nullable String notificationToken) throws IOException {
+        add(new Change(StoredEnrollment.copyOf(enrollment), false, deviceName, notificationToken));
+    }
+
+    /**
+     * Adds the delete of an enrollment, which replaces any pending update of it
+     *
+     * @param enrollment the enrollment
+     * @throws IOException              when the file can't be read or written
+     * @throws IllegalArgumentException when the signing key is not exportable, see
+     *                                  {@link EnrollmentStore#put(Enrollment)}
+     */
+    @WorkerThread
+    public void delete(@NonNull Enrollment enrollment) throws IOException {
+        add(new Change(StoredEnrollment.copyOf(enrollment), true, null, null));
+    }
+
+    /**
+     * Returns how many enrollments have changes that were not sent yet
+     *
+     * @return the number of pending changes
+     * @throws IOException when the file was not loaded yet and can't be read
+     */
+    @WorkerThread
+    public synchronized int size() throws IOException {
+        return load().size();
+    }
+
+    /**
+     * Sends the pending changes now, without waiting for the next retry. Should be called when
+     * connectivity returns and when the app starts.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (nextRetry != null) {
+                nextRetry.cancel(false);
+                nextRetry = null;
+            }
+            retryDelayMillis = 0;
+        }
+        post();
+    }
+
+    /**
+     * Stops sending changes. Pending ones are kept in the file and sent by a new instance. If the
+     * outbox created its own thread it's also stopped.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (nextRetry != null) {
+                nextRetry.cancel(false);
+                nextRetry = null;
+            }
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void add(Change change) throws IOException {
+        final boolean waiting;
+        synchronized (this) {
+            final String id = change.enrollment.getId();
+            final Change current = load().get(id);
+            final Change merged = current != null ? current.then(change) : change;
+            if (merged != current) {
+                final Map<String, Change> updated = new LinkedHashMap<>(pending);
+                updated.put(id, merged);
+                write(updated);
+                pending = updated;
+            }
+            waiting = nextRetry != null;
+        }
+        // after a connection problem, wait for the retry or a flush
+        if (!waiting) {
+            post();
+        }
+    }
+
+    /**
+     * Sends the changes one at a time until there are none left or one fails because of a
+     * connection problem or server error. Runs on the executor.
+     */
+    private void sendPending() {
+        while (true) {
+            final Change change;
+            synchronized (this) {
+                if (nextRetry != null) {
+                    // a retry is scheduled, this run was posted before the failure
+                    return;
+                }
+                try {
+                    final Map<String, Change> loaded = load();
+                    if (loaded.isEmpty()) {
+                        retryDelayMillis = 0;
+                        return;
+                    }
+                    change = loaded.values().iterator().next();
+                } catch (IOException e) {
+                    scheduleRetry();
+                    return;
+                }
+            }
+
+            GuardianException rejection = null;
+            try {
+                change.send(apiClient);
+            } catch (IOException e) {
+                synchronized (this) {
+                    scheduleRetry();
+                }
+                return;
+            } catch (GuardianException e) {
+                if (e.isRetryable()) {
+                    synchronized (this) {
+                        scheduleRetry();
+                    }
+                    return;
+                }
+                rejection = e;
+            } catch (RuntimeException e) {
+                // e.g. the signing key is not valid, sending it again won't help
+                rejection = new GuardianException("Unable to send the device account change", e);
+            }
+
+            synchronized (this) {
+                // unless it was changed again while it was being sent
+                if (pending.get(change.enrollment.getId()) == change) {
+                    final Map<String, Change> updated = new LinkedHashMap<>(pending);
+                    updated.remove(change.enrollment.getId());
+                    try {
+                        write(updated);
+                    } catch (IOException e) {
+                        // it's sent again later, which the server accepts or rejects
+                        scheduleRetry();
+                        return;
+                    }
+                    pending = updated;
+                }
+                retryDelayMillis = 0;
+            }
+
+            final Listener listener = this.listener;
+            if (listener != null) {
+                if (rejection == null) {
+                    listener.onSent(change.enrollment.getId(), change.delete);
+                } else {
+                    listener.onRejected(change.enrollment.getId(), change.delete, rejection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private void scheduleRetry() {
+        retryDelayMillis = retryDelayMillis == 0
+                ? MIN_RETRY_DELAY_MILLIS
+                : Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+        try {
+            nextRetry = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (DeviceAccountOutbox.this) {
+                        nextRetry = null;
+                    }
+                    sendPending();
+                }
+            }, retryDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down, a new instance sends them
+        }
+    }
+
+    private void post() {
+        try {
+            executor.execute(send);
+        } catch (RejectedExecutionException e) {
+            // shut down, a new instance sends them
+        }
+    }
+
+    /**
+     * Reads the file the first time, must be called holding the lock. A file that can't be parsed
+     * or decrypted is discarded, so it doesn't block the outbox forever.
+     */
+    private Map<String, Change> load() throws IOException {
+        if (pending != null) {
+            return pending;
+        }
+        final Map<String, Change> loaded = new LinkedHashMap<>();
+        if (file.exists()) {
+            // failing to read the file is reported, it may work later
+            final byte[] content = readFully(file);
+            try {
+                final DataInputStream in = new DataInputStream(new ByteArrayInputStream(decrypt(content)));
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    final Change change = Change.readFrom(in);
+                    loaded.put(change.enrollment.getId(), change);
+                }
+            } catch (IOException e) {
+                loaded.clear();
+                discard(e);
+            }
+        }
+        pending = loaded;
+        return loaded;
+    }
+
+    /**
+     * Checks the header and decrypts the rest of the file
+     */
+    private byte[] decrypt(byte[] content) throws IOException {
+        final DataInputStream header = new DataInputStream(new ByteArrayInputStream(content));
+        if (content.length < HEADER_SIZE || header.readInt() != MAGIC || header.readByte() != VERSION) {
+            throw new IOException("Not a device account outbox file: " + file);
+        }
+        try {
+            return cipher.decrypt(Arrays.copyOfRange(content, HEADER_SIZE, content.length));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to decrypt " + file, e);
+        }
+    }
+
+    /**
+     * Moves the file aside and tells the listener, on the executor
+     */
+    private void discard(final IOException reason) {
+        final File corrupt = new File(file.getPath() + ".corrupt");
+        //noinspection ResultOfMethodCallIgnored
+        corrupt.delete();
+        if (!file.renameTo(corrupt)) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Listener listener = DeviceAccountOutbox.this.listener;
+                    if (listener != null) {
+                        listener.onDiscarded(reason);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down, nobody to tell
+        }
+    }
+
+    /**
+     * Writes the file next to the current one and then renames it, so the current one is kept if
+     * anything fails. Only the header is not encrypted.
+     */
+    private void write(Map<String, Change> changes) throws IOException {
+        if (changes.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to delete " + file);
+            }
+            return;
+        }
+        final ByteArrayOutputStream content = new ByteArrayOutputStream(changes.size() * 2048 + 16);
+        final DataOutputStream data = new DataOutputStream(content);
+        data.writeInt(changes.size());
+        for (Change change : changes.values()) {
+            change.writeTo(data);
+        }
+        final byte[] encrypted;
+        try {
+            encrypted = cipher.encrypt(content.toByteArray());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to encrypt " + file, e);
+        }
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            final DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            out.write(encrypted);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            final byte[] content = new byte[(int) file.length()];
+            in.readFully(content);
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The pending change of an enrollment, immutable so that the one being sent can be told
+     * apart from a newer one
+     */
+    private static final class Change {
+        final StoredEnrollment enrollment;
+        final boolean delete;
+        final String deviceName;
+        final String notificationToken;
+
+        Change(StoredEnrollment enrollment, boolean delete,
+               String deviceName, String notificationToken) {
+            this.enrollment = enrollment;
+            this.delete = delete;
+            this.deviceName = deviceName;
+            this.notificationToken = notificationToken;
+        }
+
+        /**
+         * Merges a later change of the same enrollment into this one
+         *
+         * @return the merged change, this same instance if nothing changes
+         */
+        Change then(Change next) {
+            if (delete) {
+                // nothing to update once it's deleted
+                return this;
+            }
+            if (next.delete) {
+                return next;
+            }
+            final String name = next.deviceName != null ? next.deviceName : deviceName;
+            final String token = next.notificationToken != null ? next.notificationToken : notificationToken;
+            if (equals(name, deviceName) && equals(token, notificationToken)) {
+                return this;
+            }
+            return new Change(next.enrollment, false, name, token);
+        }
+
+        void send(GuardianAPIClient apiClient) throws IOException, GuardianException {
+            final DeviceAPIClient device = apiClient.device(
+                    enrollment.getId(), enrollment.getUserId(), enrollment.getSigningKey());
+            if (delete) {
+                device.delete().execute();
+            } else {
+                device.update(null, deviceName, notificationToken).execute();
+            }
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeBoolean(delete);
+            writeNullableString(out, deviceName);
+            writeNullableString(out, notificationToken);
+            enrollment.writeTo(out);
+        }
+
+        static Change readFrom(DataInput in) throws IOException {
+            final boolean delete = in.readBoolean();
+            final String deviceName = readNullableString(in);
+            final String notificationToken = readNullableString(in);
+            final StoredEnrollment enrollment = StoredEnrollment.readFrom(in);
+            return new Change(enrollment, delete, deviceName, notificationToken);
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        private static void writeNullableString(DataOutput out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readNullableString(DataInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
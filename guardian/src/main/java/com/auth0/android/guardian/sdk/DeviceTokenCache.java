@@ -0,0 +1,109 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.security.PrivateKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the signed JWTs used to authenticate device account requests, so that several requests
+ * of the same enrollment within a short time don't sign a new token each time.
+ * <p>
+ * Entries are keyed by device identifier and validated against the subject and private key on
+ * every lookup. Tokens are only reused while they are still valid for a while, so a request never
+ * reaches the server with a token that is about to expire. The least recently used entry is
+ * evicted when the cache is full.
+ */
+final class DeviceTokenCache {
+
+    static final int DEFAULT_MAX_SIZE = 64;
+    // tokens closer than this to their expiration are signed again
+    static final long MIN_REMAINING_MILLIS = 10 * 60 * 1000;
+
+    private final Map<String, Entry> entries;
+
+    DeviceTokenCache(final int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the token of the device, if there's one that is valid for long enough
+     *
+     * @param deviceIdentifier the device id
+     * @param subject          the enrollment's user id
+     * @param privateKey       the private key that must have signed the token
+     * @param nowMillis        the current time in milliseconds since the epoch
+     * @return the token, or null when a new one must be signed
+     */
+    @Nullable
+    String get(@NonNull String deviceIdentifier, @NonNull String subject,
+               @NonNull PrivateKey privateKey, long nowMillis) {
+        synchronized (entries) {
+            final Entry entry = entries.get(deviceIdentifier);
+            if (entry == null
+                    || !entry.subject.equals(subject)
+                    || !entry.privateKey.equals(privateKey)
+                    || entry.expiresAtMillis - nowMillis < MIN_REMAINING_MILLIS) {
+                return null;
+            }
+            return entry.token;
+        }
+    }
+
+    /**
+     * Keeps the token of a device, replacing the previous one
+     *
+     * @param deviceIdentifier the device id
+     * @param subject          the enrollment's user id
+     * @param privateKey       the private key that signed the token
+     * @param token            the signed token
+     * @param expiresAtMillis  the expiration of the token in milliseconds since the epoch
+     */
+    void put(@NonNull String deviceIdentifier, @NonNull String subject,
+             @NonNull PrivateKey privateKey, @NonNull String token, long expiresAtMillis) {
+        synchronized (entries) {
+            entries.put(deviceIdentifier, new Entry(subject, privateKey, token, expiresAtMillis));
+        }
+    }
+
+    /**
+     * Removes the token of a device
+     *
+     * @param deviceIdentifier the device id
+     */
+    void invalidate(@Nullable String deviceIdentifier) {
+        if (deviceIdentifier == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(deviceIdentifier);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+        final String subject;
+        final PrivateKey privateKey;
+        final String token;
+        final long expiresAtMillis;
+
+        Entry(String subject, PrivateKey privateKey, String token, long expiresAtMillis) {
+            this.subject = subject;
+            this.privateKey = privateKey;
+            this.token = token;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the enrollments of the device in a file, with their keys decoded once and kept in memory.
+ * <p>
+ * Enrollments are indexed by id, so finding the enrollment of a received notification with
+ * {@link #get(Notification)} is a single lookup. The file uses a compact binary format and is
+ * read once: call {@link #load(Callback)} when the app starts to read it (and decode the keys) in
+ * a background thread, after that every read is served from memory. Methods that change the
+ * enrollments write the whole file, they should not be called on the main thread.
+ * <p>
+ * <b>The file contains the private signing key and the TOTP secret of every enrollment.</b> It's
+ * encrypted with a {@link StorageCipher}: by default a {@link KeyStoreStorageCipher}, whose key
+ * never leaves the AndroidKeyStore. Before Android 6.0 there's no such key and the default
+ * keeps the file in plaintext, protected only by the app's private directory, so pass a cipher
+ * to {@link #EnrollmentStore(File, StorageCipher)} if those versions must be covered too.
+ * <p>
+ * Instances are thread safe, but only one instance should use a given file.
+ */
+public class EnrollmentStore {
+
+    private static final int MAGIC = 0x4745534e; // "GESN"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Guardian enrollment store");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File file;
+    private final StorageCipher cipher;
+    private final Executor executor;
+
+    // guarded by this, null until loaded
+    private Map<String, StoredEnrollment> enrollments;
+
+    /**
+     * Creates a store that uses the given file, usually in the app's private files directory,
+     * encrypted with the default cipher
+     *
+     * @param file the file where enrollments are kept
+     */
+    public EnrollmentStore(@NonNull File file) {
+        this(file, StorageCiphers.defaultCipher());
+    }
+
+    /**
+     * Creates a store that uses the given file, usually in the app's private files directory
+     *
+     * @param file   the file where enrollments are kept
+     * @param cipher encrypts the file, it must be able to decrypt what it encrypted in previous
+     *               runs of the app
+     */
+    public EnrollmentStore(@NonNull File file, @NonNull StorageCipher cipher) {
+        this(file, cipher, LOADER);
+    }
+
+    @VisibleForTesting
+    EnrollmentStore(@NonNull File file, @NonNull StorageCipher cipher, @NonNull Executor executor) {
+        this.file = file;
+        this.cipher = cipher;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads the file in a background thread, if it was not read yet, and decodes the keys of
+     * every enrollment
+     *
+     * @param callback receives the enrollments, or the exception if the file can't be read. It's
+     *                 called on the background thread.
+     */
+    public void load(@NonNull final Callback<List<Enrollment>> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Enrollment> loaded;
+                try {
+                    loaded = getAll();
+                } catch (IOException e) {
+                    callback.onFailure(e);
+                    return;
+                }
+                callback.onSuccess(loaded);
+            }
+        });
+    }
+
+    /**
+     * Returns whether the file was already read, so that reading enrollments doesn't do any I/O
+     *
+     * @return true if the enrollments are in memory
+     */
+    public synchronized boolean isLoaded() {
+        return enrollments != null;
+    }
+
+    /**
+     * Returns the enrollment with the given id
+     *
+     * @param enrollmentId the enrollment id
+     * @return the enrollment, or null if there's none with that id
+     * @throws IOException when the file was not loaded yet and can't be read
+     */
+    @Nullable
+    @WorkerThread
+    public synchronized Enrollment get(@NonNull String enrollmentId) throws IOException {
+        return load().get(enrollmentId);
+    }
+
+    /**
+     * Returns the enrollment that should handle the notification
+     *
+     * @param notification the notification
+     * @return the enrollment, or null if the notification is for an enrollment that is not in
+     * the store
+     * @throws IOException when the file was not loaded yet and can't be read
+     */
+    @Nullable
+    @WorkerThread
+    public Enrollment get(@NonNull Notification notification) throws IOException {
+        return get(notification.getEnrollmentId());
+    }
+
+    /**
+     * Returns every enrollment, in the order they were first added
+     *
+     * @return the enrollments
+     * @throws IOException when the file was not loaded yet and can't be read
+     */
+    @NonNull
+    @WorkerThread
+    public synchronized List<Enrollment> getAll() throws IOException {
+        return Collections.unmodifiableList(new ArrayList<Enrollment>(load().values()));
+    }
+
+    /**
+     * Adds an enrollment, or replaces the one with the same id
+     * <p>
+     * The keys are written to the file, so the signing key must be exportable: keys kept in the
+     * AndroidKeyStore, whose {@link java.security.Key#getEncoded()} returns null, can't be stored.
+     *
+     * @param enrollment the enrollment
+     * @return the stored enrollment, which returns the same keys on every call
+     * @throws IOException              when the file can't be read or written
+     * @throws IllegalArgumentException when the signing key is not exportable
+     */
+    @NonNull
+    @WorkerThread
+    public synchronized Enrollment put(@NonNull Enrollment enrollment) throws IOException {
+        final Map<String, StoredEnrollment> updated = new LinkedHashMap<>(load());
+        final StoredEnrollment stored = StoredEnrollment.copyOf(enrollment);
+        updated.put(stored.getId(), stored);
+        write(updated);
+        enrollments = updated;
+        return stored;
+    }
+
+    /**
+     * Replaces an enrollment, but only if it's still in the store, so that updates that finish
+     * after the enrollment was removed don't add it back
+     *
+     * @return true if the enrollment was replaced
+     */
+    @WorkerThread
+    synchronized boolean replace(@NonNull StoredEnrollment enrollment) throws IOException {
+        if (!load().containsKey(enrollment.getId())) {
+            return false;
+        }
+        final Map<String, StoredEnrollment> updated = new LinkedHashMap<>(enrollments);
+        updated.put(enrollment.getId(), enrollment);
+        write(updated);
+        enrollments = updated;
+        return true;
+    }
+
+    /**
+     * Removes an enrollment, usually after deleting it with {@link Guardian#delete(Enrollment)}
+     *
+     * @param enrollmentId the enrollment id
+     * @return true if the enrollment was in the store
+     * @throws IOException when the file can't be read or written
+     */
+    @WorkerThread
+    public synchronized boolean remove(@NonNull String enrollmentId) throws IOException {
+        if (!load().containsKey(enrollmentId)) {
+            return false;
+        }
+        final Map<String, StoredEnrollment> updated = new LinkedHashMap<>(enrollments);
+        updated.remove(enrollmentId);
+        write(updated);
+        enrollments = updated;
+        return true;
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private Map<String, StoredEnrollment> load() throws IOException {
+        if (enrollments != null) {
+            return enrollments;
+        }
+        final Map<String, StoredEnrollment> loaded = new LinkedHashMap<>();
+        if (file.exists()) {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(readContent()));
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final StoredEnrollment enrollment = StoredEnrollment.readFrom(in);
+                // decode the keys now, in the background, and not on the first allow/reject
+                enrollment.decodeKeys();
+                loaded.put(enrollment.getId(), enrollment);
+            }
+        }
+        enrollments = loaded;
+        return loaded;
+    }
+
+    /**
+     * Reads the whole file and decrypts everything after the header
+     */
+    private byte[] readContent() throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        final byte[] encrypted;
+        try {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not an enrollment store file: " + file);
+            }
+            encrypted = new byte[(int) file.length() - HEADER_SIZE];
+            in.readFully(encrypted);
+        } finally {
+            in.close();
+        }
+        try {
+            return cipher.decrypt(encrypted);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to decrypt " + file, e);
+        }
+    }
+
+    /**
+     * Writes the file next to the current one and then renames it, so the current one is kept if
+     * anything fails. Only the header is not encrypted.
+     */
+    private void write(Map<String, StoredEnrollment> enrollments) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream(enrollments.size() * 2048 + 16);
+        final DataOutputStream data = new DataOutputStream(content);
+        data.writeInt(enrollments.size());
+        for (StoredEnrollment enrollment : enrollments.values()) {
+            enrollment.writeTo(data);
+        }
+        final byte[] encrypted;
+        try {
+            encrypted = cipher.encrypt(content.toByteArray());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to encrypt " + file, e);
+        }
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            final DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            out.write(encrypted);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A request that fails without reaching the server, because it's known beforehand that the
+ * server would reject it
+ * <p>
+ * Like the requests that do reach the server, {@link #start(Callback)} calls the callback later
+ * on a background thread, never before returning.
+ *
+ * @param <T> the type of the expected response
+ */
+class FailedRequest<T> implements GuardianAPIRequest<T> {
+
+    final GuardianException exception;
+
+    FailedRequest(@NonNull GuardianException exception) {
+        this.exception = exception;
+    }
+
+    @Override
+    public T execute() throws GuardianException {
+        throw exception;
+    }
+
+    @Override
+    public void start(@NonNull final Callback<T> callback) {
+        Callbacks.EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(exception);
+            }
+        });
+    }
+
+    // created the first time a request fails this way
+    private static class Callbacks {
+        static final Executor EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "Guardian failed request");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -28,11 +28,11 @@ import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
+import com.auth0.android.guardian.sdk.networking.Converter;
+import com.auth0.android.guardian.sdk.networking.GsonConverter;
 import com.auth0.android.guardian.sdk.networking.RequestFactory;
-import com.auth0.android.guardian.sdk.otp.TOTP;
-import com.auth0.android.guardian.sdk.otp.utils.Base32;
-import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.io.IOException;
@@ -44,8 +44,10 @@ import java.security.PublicKey;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
@@ -59,6 +61,11 @@ import okhttp3.logging.HttpLoggingInterceptor;
  */
 public class Guardian {
 
+    static final OTPCodeCache OTP_CODES = new OTPCodeCache(OTPCodeCache.DEFAULT_MAX_SIZE);
+    static final ServerClock SERVER_CLOCK = new ServerClock();
+    static final SeenNotifications SEEN_NOTIFICATIONS = new SeenNotifications(
+            SeenNotifications.DEFAULT_MAX_SIZE, SeenNotifications.DEFAULT_EXPIRATION_MILLIS);
+
     private final GuardianAPIClient guardianAPIClient;
     private final RichConsentsAPIClient richConsentsAPIClient;
 
@@ -106,13 +113,112 @@ public class Guardian {
      */
     @NonNull
     public GuardianAPIRequest<Void> delete(@NonNull Enrollment enrollment) {
-        return guardianAPIClient
+        OTP_CODES.invalidate(enrollment.getId());
+        final GuardianAPIRequest<Void> request = guardianAPIClient
                 .device(enrollment.getId(), enrollment.getUserId(), enrollment.getSigningKey())
                 .delete();
+        return new DeleteRequest(request, guardianAPIClient, enrollment.getId());
+    }
+
+    /**
+     * Deletes several enrollments, a few at a time. Useful to wipe a device that has many
+     * enrollments.
+     *
+     * @param enrollments the enrollments to delete
+     * @return a request to execute or start, with the result of every enrollment
+     * @see #deleteAll(List, int)
+     */
+    @NonNull
+    public GuardianAPIRequest<BulkResult<Void>> deleteAll(@NonNull List<? extends Enrollment> enrollments) {
+        return deleteAll(enrollments, BulkRequest.DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * Deletes several enrollments, with at most the given number of requests running at the same
+     * time. The failure of one enrollment doesn't stop the others, check
+     * {@link BulkResult#getFailures()} to know which ones were not deleted.
+     *
+     * @param enrollments           the enrollments to delete
+     * @param maxConcurrentRequests how many requests can run at the same time
+     * @return a request to execute or start, with the result of every enrollment
+     * @throws IllegalArgumentException when maxConcurrentRequests is not positive
+     */
+    @NonNull
+    public GuardianAPIRequest<BulkResult<Void>> deleteAll(@NonNull List<? extends Enrollment> enrollments,
+                                                          int maxConcurrentRequests) {
+        return new BulkRequest<>(enrollments, new BulkRequest.Operation<Void>() {
+            @NonNull
+            @Override
+            public GuardianAPIRequest<Void> create(@NonNull Enrollment enrollment) {
+                return delete(enrollment);
+            }
+
+            @Override
+            public void onSuccess(@NonNull Enrollment enrollment) {
+                // the request returned by delete() already dropped the device token
+            }
+        }, maxConcurrentRequests);
+    }
+
+    /**
+     * Updates the name and push notification token of several enrollments, a few at a time. Null
+     * values are not changed at the server.
+     *
+     * @param enrollments       the enrollments to update
+     * @param deviceName        the new device name, or null to keep the current one
+     * @param notificationToken the new push notification token, or null to keep the current one
+     * @return a request to execute or start, with the result of every enrollment
+     * @see #updateAll(List, String, String, int)
+     */
+    @NonNull
+    public GuardianAPIRequest<BulkResult<Map<String, Object>>> updateAll(@NonNull List<? extends Enrollment> enrollments,
+                                                                         @Nullable String deviceName,
+                                                                         @Nullable String notificationToken) {
+        return updateAll(enrollments, deviceName, notificationToken,
+                BulkRequest.DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * Updates the name and push notification token of several enrollments, with at most the given
+     * number of requests running at the same time. Null values are not changed at the server. The
+     * failure of one enrollment doesn't stop the others, check {@link BulkResult#getFailures()} to
+     * know which ones were not updated.
+     *
+     * @param enrollments           the enrollments to update
+     * @param deviceName            the new device name, or null to keep the current one
+     * @param notificationToken     the new push notification token, or null to keep the current one
+     * @param maxConcurrentRequests how many requests can run at the same time
+     * @return a request to execute or start, with the result of every enrollment
+     * @throws IllegalArgumentException when maxConcurrentRequests is not positive
+     */
+    @NonNull
+    public GuardianAPIRequest<BulkResult<Map<String, Object>>> updateAll(@NonNull List<? extends Enrollment> enrollments,
+                                                                         @Nullable final String deviceName,
+                                                                         @Nullable final String notificationToken,
+                                                                         int maxConcurrentRequests) {
+        return new BulkRequest<>(enrollments, new BulkRequest.Operation<Map<String, Object>>() {
+            @NonNull
+            @Override
+            public GuardianAPIRequest<Map<String, Object>> create(@NonNull Enrollment enrollment) {
+                return guardianAPIClient
+                        .device(enrollment.getId(), enrollment.getUserId(), enrollment.getSigningKey())
+                        .update(null, deviceName, notificationToken);
+            }
+
+            @Override
+            public void onSuccess(@NonNull Enrollment enrollment) {
+            }
+        }, maxConcurrentRequests);
     }
 
     /**
      * Allows an authentication request
+     * <p>
+     * When the transaction token of the notification already expired the request fails without
+     * reaching the server, with a {@link GuardianException} for which
+     * {@link GuardianException#isTransactionExpired()} is true. Until the offset of the
+     * {@link #getServerClock() server clock} is known the token must have expired a minute ago.
+     * As with any other request the callback is called on a background thread.
      *
      * @param notification the (parsed) push notification received
      * @param enrollment   the enrollment to whom the notification corresponds
@@ -121,6 +227,10 @@ public class Guardian {
     @NonNull
     public GuardianAPIRequest<Void> allow(@NonNull Notification notification,
                                           @NonNull Enrollment enrollment) {
+        final GuardianException expired = checkExpiration(notification);
+        if (expired != null) {
+            return new FailedRequest<>(expired);
+        }
         return guardianAPIClient
                 .allow(notification.getTransactionToken(), enrollment.getDeviceIdentifier(),
                         notification.getChallenge(), enrollment.getSigningKey());
@@ -128,6 +238,9 @@ public class Guardian {
 
     /**
      * Rejects an authentication request
+     * <p>
+     * Fails without reaching the server when the transaction already expired, same as
+     * {@link #allow(Notification, Enrollment)}.
      *
      * @param notification the (parsed) push notification received
      * @param enrollment   the enrollment to whom the notification corresponds
@@ -139,6 +252,10 @@ public class Guardian {
     public GuardianAPIRequest<Void> reject(@NonNull Notification notification,
                                            @NonNull Enrollment enrollment,
                                            @Nullable String reason) {
+        final GuardianException expired = checkExpiration(notification);
+        if (expired != null) {
+            return new FailedRequest<>(expired);
+        }
         return guardianAPIClient
                 .reject(notification.getTransactionToken(), enrollment.getDeviceIdentifier(),
                         notification.getChallenge(), enrollment.getSigningKey(), reason);
@@ -161,6 +278,9 @@ public class Guardian {
 
     /**
      * Fetches the rich consent record linked to the transaction.
+     * <p>
+     * Fails without reaching the server when the transaction already expired, same as
+     * {@link #allow(Notification, Enrollment)}.
      *
      * @param notification the push notification
      * @param enrollment   the device enrollment
@@ -168,6 +288,10 @@ public class Guardian {
      * @return the request
      */
     public GuardianAPIRequest<RichConsent> fetchConsent(@NonNull Notification notification, @NonNull Enrollment enrollment) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        final GuardianException expired = checkExpiration(notification);
+        if (expired != null) {
+            return new FailedRequest<>(expired);
+        }
         return richConsentsAPIClient.fetch(notification.getTransactionLinkingId(), notification.getTransactionToken(), enrollment.getSigningKey(), enrollment.getPublicKey());
     }
 
@@ -175,6 +299,21 @@ public class Guardian {
         return guardianAPIClient;
     }
 
+    @Nullable
+    private static GuardianException checkExpiration(@NonNull Notification notification) {
+        return checkExpiration(notification, SERVER_CLOCK);
+    }
+
+    @Nullable
+    @VisibleForTesting
+    static GuardianException checkExpiration(@NonNull Notification notification, @NonNull ServerClock clock) {
+        final long expiresAt = TransactionTokens.getExpirationMillis(notification.getTransactionToken());
+        if (clock.hasPassed(expiresAt)) {
+            return GuardianException.transactionExpired(expiresAt);
+        }
+        return null;
+    }
+
     /**
      * Parses the Bundle received from the GCM push notification into a Notification
      *
@@ -203,9 +342,28 @@ public class Guardian {
         return ParcelableNotification.parse(pushNotificationPayload);
     }
 
+    /**
+     * Records the notification as received, and tells if it was already received before.
+     * <p>
+     * The same push can be delivered more than once. Call this once for every push received,
+     * and ignore the notification when it returns true: one with the same enrollment, challenge
+     * and transaction token was already received in the last minutes, so there's no need to
+     * show the request again or make any request.
+     *
+     * @param notification the notification parsed from the push
+     * @return true if the same notification was already received recently
+     */
+    public static boolean markSeen(@NonNull Notification notification) {
+        return SEEN_NOTIFICATIONS.markSeen(notification);
+    }
+
     /**
      * Returns the current OTP code for the {@link Enrollment}. This can be used for manual input,
      * when there's no internet connection or the push notification is not received.
+     * <p>
+     * The code corresponds to the server time, see {@link #getServerClock()}. The generator of the
+     * most recently used enrollments and their last code are cached by enrollment id, so reading
+     * the code again within the same period is just a lookup.
      *
      * @param enrollment the enrollment for which to generate the OTP
      * @return the OTP code, or null if the enrollment doesn't include OTP data
@@ -213,23 +371,54 @@ public class Guardian {
      */
     @Nullable
     public static String getOTPCode(Enrollment enrollment) {
-        if (enrollment.getSecret() == null
-                || enrollment.getAlgorithm() == null
-                || enrollment.getDigits() == null
-                || enrollment.getPeriod() == null) {
-            return null;
-        }
-        try {
-            TOTP totp = new TOTP(
-                    enrollment.getAlgorithm(),
-                    Base32.decode(enrollment.getSecret()),
-                    enrollment.getDigits(),
-                    enrollment.getPeriod());
-            return totp.generate();
-        } catch (Base32.DecodingException e) {
-            throw new IllegalArgumentException(
-                    "Enrollment's secret is not a valid Base32 encoded TOTP secret", e);
+        return OTP_CODES.getCodeIfAvailable(enrollment, SERVER_CLOCK.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Returns the current OTP code of every {@link Enrollment} in the list. All the codes are
+     * computed for the same instant and written into the given array, at the same index of their
+     * enrollment.
+     * <p>
+     * Large lists are split and computed in parallel in a {@link ForkJoinPool} owned by the SDK,
+     * reusing the generators cached by {@link #getOTPCode(Enrollment)}.
+     *
+     * @param enrollments the enrollments for which to generate the OTPs
+     * @param out         the array that receives the codes, at least as long as the list. The code
+     *                    of an enrollment that doesn't include OTP data is null
+     * @throws IllegalArgumentException  when the OTP data of an enrollment is invalid
+     * @throws IndexOutOfBoundsException when the array is shorter than the list
+     */
+    public static void getOTPCodes(@NonNull List<? extends Enrollment> enrollments, @NonNull String[] out) {
+        OTP_CODES.getCodes(enrollments, out, SERVER_CLOCK.currentTimeMillis() / 1000, OTPCodeCache.bulkPool());
+    }
+
+    /**
+     * Returns how long the authentication request of the notification can still be allowed or
+     * rejected, according to the expiration of its transaction token and the server time. Can be
+     * used to show the remaining time, or to handle the requests that expire sooner first.
+     *
+     * @param notification the notification
+     * @return the remaining time in milliseconds, zero or negative if it already expired, or
+     * {@link Long#MAX_VALUE} if the transaction token doesn't include its expiration
+     */
+    public static long getTransactionValidityMillis(@NonNull Notification notification) {
+        final long expiresAt = TransactionTokens.getExpirationMillis(notification.getTransactionToken());
+        if (expiresAt == TransactionTokens.NO_EXPIRATION) {
+            return Long.MAX_VALUE;
         }
+        return expiresAt - SERVER_CLOCK.currentTimeMillis();
+    }
+
+    /**
+     * Returns the clock used to generate the OTP codes. It follows the time of the Guardian
+     * server, learned from the responses of every {@link Guardian} instance, so that the codes
+     * are accepted even when the device clock is not accurate.
+     *
+     * @return the shared server clock
+     */
+    @NonNull
+    public static ServerClock getServerClock() {
+        return SERVER_CLOCK;
     }
 
     /**
@@ -239,6 +428,8 @@ public class Guardian {
         private final ClientInfo clientInfo = new ClientInfo();
         private Uri url;
         private boolean loggingEnabled = false;
+        private boolean builtInHmac = false;
+        private Converter converter;
 
         /**
          * Set the URL of the Guardian server.
@@ -287,11 +478,40 @@ public class Guardian {
             return this;
         }
 
+        /**
+         * Computes the OTP codes with the SDK's own HMAC implementation instead of a
+         * {@link javax.crypto.Mac} from the security providers, whose first lookup can be slow on
+         * some devices. The security providers are still used for algorithms it doesn't support.
+         * <p>
+         * OTP codes are computed by static methods, like {@link Guardian#getOTPCode(Enrollment)},
+         * so once an instance built with this option exists it applies to the whole process.
+         *
+         * @return itself
+         */
+        public Builder useBuiltInHmac() {
+            this.builtInHmac = true;
+            return this;
+        }
+
         public Builder setTelemetryInfo(String appName, String appVersion) {
             clientInfo.telemetryInfo = new ClientInfo.TelemetryInfo(appName, appVersion);
             return this;
         }
 
+        /**
+         * Set the {@link Converter} used to serialize requests and parse the API responses.
+         * <p>
+         * When not set, a Gson based converter with pre-registered adapters for the SDK models is
+         * used.
+         *
+         * @param converter the converter
+         * @return itself
+         */
+        public Builder setConverter(@NonNull Converter converter) {
+            this.converter = converter;
+            return this;
+        }
+
         /**
          * Builds and returns the Guardian instance
          *
@@ -314,6 +534,10 @@ public class Guardian {
 
             RichConsentsAPIClient richConsentsAPIClient = new RichConsentsAPIClient(requestFactory, url, clientInfo);
 
+            if (builtInHmac) {
+                OTP_CODES.setBuiltInHmac(true);
+            }
+
             return new Guardian(guardianAPIClient, richConsentsAPIClient);
         }
 
@@ -339,6 +563,8 @@ public class Guardian {
                 }
             });
 
+            builder.addNetworkInterceptor(new ServerClock.SamplingInterceptor(SERVER_CLOCK));
+
             if (loggingEnabled) {
                 final HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor()
                         .setLevel(HttpLoggingInterceptor.Level.BODY);
@@ -349,8 +575,10 @@ public class Guardian {
         }
 
         private RequestFactory provideRequestFactory(OkHttpClient okHttpClient){
-            Gson gson = new GsonBuilder().create();
-            return new RequestFactory(gson, okHttpClient);
+            Converter requestConverter = converter != null
+                    ? converter
+                    : new GsonConverter(GuardianJsonAdapters.register(new GsonBuilder()).create());
+            return new RequestFactory(requestConverter, okHttpClient);
         }
     }
 }
@@ -32,10 +32,8 @@ import androidx.annotation.Nullable;
 import com.auth0.android.guardian.sdk.networking.RequestFactory;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -65,15 +63,36 @@ public class GuardianAPIClient {
     private static final int ACCESS_APPROVAL_JWT_EXP_SECS = 30;
     private static final int BASIC_JWT_EXP_SECS = 60 * 60 * 2; // 2 hours
     private static final String PATH = "appliance-mfa";
+    private static final String JWT_HEADER = "{\"alg\":\"RS256\",\"typ\":\"JWT\"}";
+    private static final Gson JSON = new GsonBuilder().create();
 
     private final RequestFactory requestFactory;
     private final HttpUrl baseUrl;
-    private final ClientInfo clientInfo;
+    private final String encodedClientInfo;
+
+    // endpoints never change for a client, so they (and the JWT audiences) are built only once
+    private final HttpUrl enrollUrl;
+    private final HttpUrl resolveTransactionUrl;
+    private final String resolveTransactionAudience;
+    private final String deviceAccountsAudience;
+    // device account tokens are valid for hours, so they are signed once and reused
+    private final DeviceTokenCache deviceTokens = new DeviceTokenCache(DeviceTokenCache.DEFAULT_MAX_SIZE);
 
     GuardianAPIClient(RequestFactory requestFactory, HttpUrl baseUrl, ClientInfo clientInfo) {
         this.requestFactory = requestFactory;
         this.baseUrl = appendingPathComponentIfNeeded(baseUrl, PATH);
-        this.clientInfo = clientInfo;
+        this.encodedClientInfo = clientInfo != null ? clientInfo.toBase64() : null;
+        this.enrollUrl = this.baseUrl.newBuilder()
+                .addPathSegments("api/enroll")
+                .build();
+        this.resolveTransactionUrl = this.baseUrl.newBuilder()
+                .addPathSegments("api/resolve-transaction")
+                .build();
+        this.resolveTransactionAudience = resolveTransactionUrl.toString();
+        this.deviceAccountsAudience = this.baseUrl.newBuilder()
+                .addPathSegments("api/device-accounts")
+                .build()
+                .toString();
     }
 
     private static Map<String, String> createJWK(@NonNull PublicKey publicKey) {
@@ -129,17 +148,10 @@ public class GuardianAPIClient {
                                                           @NonNull String deviceName,
                                                           @NonNull String gcmToken,
                                                           @NonNull PublicKey publicKey) {
-        Type type = new TypeToken<Map<String, Object>>() {
-        }.getType();
-
-        HttpUrl url = baseUrl.newBuilder()
-                .addPathSegments("api/enroll")
-                .build();
-
         return requestFactory
-                .<Map<String, Object>>newRequest("POST", url, type)
-                .setHeader("Authorization", String.format("Ticket id=\"%s\"", enrollmentTicket))
-                .setHeader("Auth0-Client", this.clientInfo.toBase64())
+                .<Map<String, Object>>newRequest("POST", enrollUrl, GuardianJsonAdapters.MAP_TYPE)
+                .setHeader("Authorization", "Ticket id=\"" + enrollmentTicket + "\"")
+                .setHeader("Auth0-Client", encodedClientInfo)
                 .setParameter("identifier", deviceIdentifier)
                 .setParameter("name", deviceName)
                 .setParameter("push_credentials", createPushCredentials(gcmToken))
@@ -160,14 +172,10 @@ public class GuardianAPIClient {
                                           @NonNull String deviceIdentifier,
                                           @NonNull String challenge,
                                           @NonNull PrivateKey privateKey) {
-        final HttpUrl url = baseUrl.newBuilder()
-                .addPathSegments("api/resolve-transaction")
-                .build();
-
-        final String jwt = createAccessApprovalJWT(privateKey, url.toString(), deviceIdentifier, challenge, true, null);
+        final String jwt = createAccessApprovalJWT(privateKey, resolveTransactionAudience, deviceIdentifier, challenge, true, null);
         return requestFactory
-                .<Void>newRequest("POST", url, Void.class)
-                .setHeader("Auth0-Client", this.clientInfo.toBase64())
+                .<Void>newRequest("POST", resolveTransactionUrl, Void.class)
+                .setHeader("Auth0-Client", encodedClientInfo)
                 .setBearer(txToken)
                 .setParameter("challenge_response", jwt);
     }
@@ -188,14 +196,10 @@ public class GuardianAPIClient {
                                            @NonNull String challenge,
                                            @NonNull PrivateKey privateKey,
                                            @Nullable String reason) {
-        final HttpUrl url = baseUrl.newBuilder()
-                .addPathSegments("api/resolve-transaction")
-                .build();
-
-        final String jwt = createAccessApprovalJWT(privateKey, url.toString(), deviceIdentifier, challenge, false, reason);
+        final String jwt = createAccessApprovalJWT(privateKey, resolveTransactionAudience, deviceIdentifier, challenge, false, reason);
         return requestFactory
-                .<Void>newRequest("POST", url, Void.class)
-                .setHeader("Auth0-Client", this.clientInfo.toBase64())
+                .<Void>newRequest("POST", resolveTransactionUrl, Void.class)
+                .setHeader("Auth0-Client", encodedClientInfo)
                 .setBearer(txToken)
                 .setParameter("challenge_response", jwt);
     }
@@ -219,6 +223,9 @@ public class GuardianAPIClient {
 
     /**
      * Returns an API client to create, update or delete an enrollment's device data
+     * <p>
+     * The signed token is reused by later calls for the same device while it's valid for long
+     * enough, so calling this method for several requests in a row signs it only once.
      *
      * @param deviceIdentifier the device id
      * @param subject          the enrollment's user id
@@ -227,20 +234,31 @@ public class GuardianAPIClient {
      */
     @NonNull
     public DeviceAPIClient device(@NonNull String deviceIdentifier, @NonNull String subject, @NonNull PrivateKey privateKey) {
-        final HttpUrl url = baseUrl.newBuilder()
-                .addPathSegments("api/device-accounts")
-                .build();
-
-        final String token = createBasicJWT(privateKey, url.toString(), deviceIdentifier, subject);
+        final long currentTime = new Date().getTime() / 1000L;
+        String token = deviceTokens.get(deviceIdentifier, subject, privateKey, currentTime * 1000L);
+        if (token == null) {
+            token = createBasicJWT(privateKey, deviceAccountsAudience, deviceIdentifier, subject, currentTime);
+            deviceTokens.put(deviceIdentifier, subject, privateKey, token,
+                    (currentTime + BASIC_JWT_EXP_SECS) * 1000L);
+        }
 
         return new DeviceAPIClient(requestFactory, baseUrl, deviceIdentifier, token);
     }
 
+    /**
+     * Forgets the token of a device, usually because the enrollment was deleted
+     *
+     * @param deviceIdentifier the device id
+     */
+    void invalidateDeviceToken(@NonNull String deviceIdentifier) {
+        deviceTokens.invalidate(deviceIdentifier);
+    }
+
     private String createBasicJWT(@NonNull PrivateKey privateKey,
                                   @NonNull String audience,
                                   @NonNull String deviceIdentifier,
-                                  @NonNull String subject) {
-        long currentTime = new Date().getTime() / 1000L;
+                                  @NonNull String subject,
+                                  long currentTime) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("iat", currentTime);
         claims.put("exp", currentTime + BASIC_JWT_EXP_SECS);
@@ -273,12 +291,8 @@ public class GuardianAPIClient {
 
     private String signJWT(@NonNull PrivateKey privateKey, @NonNull Map<String, Object> claims) {
         try {
-            Map<String, Object> headers = new HashMap<>();
-            headers.put("alg", "RS256");
-            headers.put("typ", "JWT");
-            Gson gson = new GsonBuilder().create();
-            String headerAndPayload = base64UrlSafeEncode(gson.toJson(headers).getBytes())
-                    + "." + base64UrlSafeEncode(gson.toJson(claims).getBytes());
+            String headerAndPayload = base64UrlSafeEncode(JWT_HEADER.getBytes())
+                    + "." + base64UrlSafeEncode(JSON.toJson(claims).getBytes());
             final byte[] messageBytes = headerAndPayload.getBytes();
             final Signature signer = Signature.getInstance("SHA256withRSA");
             signer.initSign(privateKey);
@@ -24,6 +24,7 @@ package com.auth0.android.guardian.sdk;
 
 import androidx.annotation.Nullable;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class GuardianException extends RuntimeException {
@@ -34,6 +35,7 @@ public class GuardianException extends RuntimeException {
     private static final String ERROR_ENROLLMENT_NOT_FOUND = "enrollment_not_found";
     private static final String ERROR_ENROLLMENT_TRANSACTION_NOT_FOUND = "enrollment_transaction_not_found";
     private static final String ERROR_LOGIN_TRANSACTION_NOT_FOUND = "login_transaction_not_found";
+    private static final String ERROR_TRANSACTION_EXPIRED = "transaction_expired";
 
     private final Map<String, Object> errorResponse;
     private final String errorCode;
@@ -133,6 +135,16 @@ public class GuardianException extends RuntimeException {
         return ERROR_LOGIN_TRANSACTION_NOT_FOUND.equals(errorCode);
     }
 
+    /**
+     * Whether the request was not sent because the transaction token of the notification already
+     * expired. The transaction can't be allowed or rejected anymore.
+     *
+     * @return true if the error is caused by the transaction being expired
+     */
+    public boolean isTransactionExpired() {
+        return ERROR_TRANSACTION_EXPIRED.equals(errorCode);
+    }
+
     /**
      * Whether the error is caused by the requested resource being not found.
      *
@@ -142,6 +154,28 @@ public class GuardianException extends RuntimeException {
         return statusCode == 404 || (errorCode != null && errorCode.matches("(?i).*not_found.*"));
     }
 
+    /**
+     * Whether sending the same request again later may succeed: no response was received, the
+     * request timed out or was throttled, or the server failed. Other errors, like an enrollment
+     * that doesn't exist or an invalid token, would just happen again.
+     *
+     * @return true if the request should be retried
+     */
+    boolean isRetryable() {
+        if (statusCode == -1) {
+            // unless the error code was known without a response, e.g. an expired transaction
+            return errorCode == null;
+        }
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    static GuardianException transactionExpired(long expiredAtMillis) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "The transaction expired at " + expiredAtMillis);
+        errorResponse.put("errorCode", ERROR_TRANSACTION_EXPIRED);
+        return new GuardianException(errorResponse);
+    }
+
     @Override
     public String toString() {
         if (errorResponse != null) {
@@ -0,0 +1,308 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand written Gson type adapters for the models returned by the Guardian API.
+ * <p>
+ * Registering them avoids Gson's reflective adapters (and the field lookups they perform) when
+ * parsing rich consents, enrollment responses and error bodies.
+ */
+final class GuardianJsonAdapters {
+
+    static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    private GuardianJsonAdapters() {
+    }
+
+    /**
+     * Registers the adapters on the given builder
+     *
+     * @param builder the builder to configure
+     * @return the same builder
+     */
+    @NonNull
+    static GsonBuilder register(@NonNull GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(MAP_TYPE, new JsonMapAdapter().nullSafe())
+                .registerTypeAdapter(GuardianRichConsent.class, new RichConsentAdapter().nullSafe())
+                .registerTypeAdapter(GuardianRichConsentRequestedDetails.class, new RequestedDetailsAdapter().nullSafe());
+    }
+
+    static class RichConsentAdapter extends TypeAdapter<GuardianRichConsent> {
+
+        private final TypeAdapter<GuardianRichConsentRequestedDetails> requestedDetailsAdapter =
+                new RequestedDetailsAdapter().nullSafe();
+
+        @Override
+        public void write(JsonWriter out, GuardianRichConsent value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.getId());
+            out.name("requested_details");
+            requestedDetailsAdapter.write(out, (GuardianRichConsentRequestedDetails) value.getRequestedDetails());
+            out.name("created_at").value(value.getCreatedAt());
+            out.name("expires_at").value(value.getExpiresAt());
+            out.endObject();
+        }
+
+        @Override
+        public GuardianRichConsent read(JsonReader in) throws IOException {
+            String id = null;
+            GuardianRichConsentRequestedDetails requestedDetails = null;
+            String createdAt = null;
+            String expiresAt = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = readString(in);
+                        break;
+                    case "requested_details":
+                        requestedDetails = requestedDetailsAdapter.read(in);
+                        break;
+                    case "created_at":
+                        createdAt = readString(in);
+                        break;
+                    case "expires_at":
+                        expiresAt = readString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GuardianRichConsent(id, requestedDetails, createdAt, expiresAt);
+        }
+    }
+
+    static class RequestedDetailsAdapter extends TypeAdapter<GuardianRichConsentRequestedDetails> {
+
+        @Override
+        public void write(JsonWriter out, GuardianRichConsentRequestedDetails value) throws IOException {
+            out.beginObject();
+            out.name("audience").value(value.getAudience());
+            out.name("scope");
+            if (value.getScope() == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (String scope : value.getScope()) {
+                    out.value(scope);
+                }
+                out.endArray();
+            }
+            out.name("binding_message").value(value.getBindingMessage());
+            List<JsonObject> authorizationDetails = value.getRawAuthorizationDetails();
+            if (authorizationDetails != null) {
+                out.name("authorization_details").beginArray();
+                for (JsonObject item : authorizationDetails) {
+                    writeValue(out, item);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public GuardianRichConsentRequestedDetails read(JsonReader in) throws IOException {
+            String audience = null;
+            String[] scope = null;
+            String bindingMessage = null;
+            List<JsonObject> authorizationDetails = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "audience":
+                        audience = readString(in);
+                        break;
+                    case "scope":
+                        scope = readStringArray(in);
+                        break;
+                    case "binding_message":
+                        bindingMessage = readString(in);
+                        break;
+                    case "authorization_details":
+                        authorizationDetails = readObjectList(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GuardianRichConsentRequestedDetails(audience, scope, bindingMessage, authorizationDetails);
+        }
+    }
+
+    /**
+     * Reads any JSON object into a {@link Map}, using the same value types as Gson's default
+     * {@code Object} adapter: numbers are {@link Double}, arrays are {@link List} and objects are
+     * {@link Map}.
+     */
+    static class JsonMapAdapter extends TypeAdapter<Map<String, Object>> {
+
+        @Override
+        public void write(JsonWriter out, Map<String, Object> value) throws IOException {
+            writeValue(out, value);
+        }
+
+        @Override
+        public Map<String, Object> read(JsonReader in) throws IOException {
+            return readObject(in);
+        }
+
+        private static Map<String, Object> readObject(JsonReader in) throws IOException {
+            Map<String, Object> map = new LinkedHashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                map.put(in.nextName(), readValue(in));
+            }
+            in.endObject();
+            return map;
+        }
+
+        private static Object readValue(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                    return readObject(in);
+                case BEGIN_ARRAY:
+                    List<Object> list = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        list.add(readValue(in));
+                    }
+                    in.endArray();
+                    return list;
+                case STRING:
+                    return in.nextString();
+                case NUMBER:
+                    return in.nextDouble();
+                case BOOLEAN:
+                    return in.nextBoolean();
+                case NULL:
+                    in.nextNull();
+                    return null;
+                default:
+                    throw new IllegalStateException("Unexpected token " + in.peek());
+            }
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static String[] readStringArray(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readString(in));
+        }
+        in.endArray();
+        return values.toArray(new String[0]);
+    }
+
+    private static List<JsonObject> readObjectList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<JsonObject> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            JsonElement element = JsonParser.parseReader(in);
+            if (!element.isJsonObject()) {
+                throw new IllegalStateException("Expected an object but was " + element);
+            }
+            values.add(element.getAsJsonObject());
+        }
+        in.endArray();
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof JsonElement) {
+            writeElement(out, (JsonElement) value);
+        } else if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else if (value instanceof Boolean) {
+            out.value((Boolean) value);
+        } else if (value instanceof Map) {
+            out.beginObject();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                out.name(entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+            out.endObject();
+        } else if (value instanceof Iterable) {
+            out.beginArray();
+            for (Object item : (Iterable<Object>) value) {
+                writeValue(out, item);
+            }
+            out.endArray();
+        } else {
+            throw new IllegalArgumentException("Unsupported JSON value type: " + value.getClass());
+        }
+    }
+
+    private static void writeElement(JsonWriter out, JsonElement element) throws IOException {
+        if (element.isJsonObject()) {
+            out.beginObject();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                out.name(entry.getKey());
+                writeElement(out, entry.getValue());
+            }
+            out.endObject();
+        } else if (element.isJsonArray()) {
+            out.beginArray();
+            for (JsonElement item : element.getAsJsonArray()) {
+                writeElement(out, item);
+            }
+            out.endArray();
+        } else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isNumber()) {
+                out.value(primitive.getAsNumber());
+            } else if (primitive.isBoolean()) {
+                out.value(primitive.getAsBoolean());
+            } else {
+                out.value(primitive.getAsString());
+            }
+        } else {
+            out.nullValue();
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.auth0.android.guardian.sdk;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.auth0.android.guardian.sdk.annotations.AuthorizationDetailsType;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -61,18 +67,40 @@ public class GuardianRichConsentRequestedDetails implements RichConsentRequested
             return List.of();
         }
 
-        if (authorizationDetails != null) {
-            return authorizationDetails;
+        if (authorizationDetails == null) {
+            authorizationDetails = new LazyAuthorizationDetails(rawAuthorizationDetails);
         }
+        return authorizationDetails;
+    }
 
-        authorizationDetails = new ArrayList<>();
-        final Type type = new TypeToken<Map<String, Object>>() {
-        }.getType();
+    List<JsonObject> getRawAuthorizationDetails() {
+        return rawAuthorizationDetails;
+    }
 
-        for (JsonObject item : rawAuthorizationDetails) {
-            authorizationDetails.add(JSON.fromJson(item, type));
-        }
-        return authorizationDetails;
+    @Override
+    public int getAuthorizationDetailsCount() {
+        return rawAuthorizationDetails == null ? 0 : rawAuthorizationDetails.size();
+    }
+
+    @Nullable
+    @Override
+    public String getString(int index, @NonNull String path) {
+        JsonPrimitive value = resolvePrimitive(index, path);
+        return value != null ? value.getAsString() : null;
+    }
+
+    @Nullable
+    @Override
+    public Number getNumber(int index, @NonNull String path) {
+        JsonPrimitive value = resolvePrimitive(index, path);
+        return value != null && value.isNumber() ? value.getAsNumber() : null;
+    }
+
+    @Nullable
+    @Override
+    public Boolean getBoolean(int index, @NonNull String path) {
+        JsonPrimitive value = resolvePrimitive(index, path);
+        return value != null && value.isBoolean() ? value.getAsBoolean() : null;
     }
 
     @Override
@@ -88,12 +116,126 @@ public class GuardianRichConsentRequestedDetails implements RichConsentRequested
             return types;
         }
 
+        String type = Objects.requireNonNull(clazz.getAnnotation(AuthorizationDetailsType.class)).value();
         for (JsonObject item : rawAuthorizationDetails) {
-            String type = Objects.requireNonNull(clazz.getAnnotation(AuthorizationDetailsType.class)).value();
             if (Objects.equals(item.get("type").getAsString(), type)) {
                 types.add(JSON.fromJson(item, clazz));
             }
         }
         return types;
     }
+
+    @Nullable
+    private JsonPrimitive resolvePrimitive(int index, @NonNull String path) {
+        if (rawAuthorizationDetails == null) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+        }
+        JsonElement value = resolve(rawAuthorizationDetails.get(index), path);
+        return value != null && value.isJsonPrimitive() ? value.getAsJsonPrimitive() : null;
+    }
+
+    /**
+     * Same as {@link #resolvePrimitive(int, String)} but for items already converted to maps, used
+     * by the default methods of {@link RichConsentRequestedDetails}
+     */
+    @Nullable
+    static JsonPrimitive resolvePrimitive(@Nullable List<Map<String, Object>> details,
+                                          int index, @NonNull String path) {
+        if (details == null) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+        }
+        JsonElement value = resolve(JSON.toJsonTree(details.get(index)), path);
+        return value != null && value.isJsonPrimitive() ? value.getAsJsonPrimitive() : null;
+    }
+
+    /**
+     * Resolves a JSON Pointer (RFC 6901) against an already parsed element, walking the tree
+     * without copying it.
+     */
+    @Nullable
+    static JsonElement resolve(@NonNull JsonElement root, @NonNull String path) {
+        if (path.isEmpty()) {
+            return root;
+        }
+        if (path.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid JSON pointer: " + path);
+        }
+
+        JsonElement current = root;
+        int start = 1;
+        while (current != null) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            String token = path.substring(start, end);
+            if (token.indexOf('~') >= 0) {
+                token = token.replace("~1", "/").replace("~0", "~");
+            }
+
+            if (current.isJsonObject()) {
+                current = current.getAsJsonObject().get(token);
+            } else if (current.isJsonArray()) {
+                JsonArray array = current.getAsJsonArray();
+                int position = parseArrayIndex(token);
+                current = position >= 0 && position < array.size() ? array.get(position) : null;
+            } else {
+                current = null;
+            }
+
+            if (end == path.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        return current == null || current.isJsonNull() ? null : current;
+    }
+
+    private static int parseArrayIndex(String token) {
+        if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && token.charAt(0) == '0')) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * A read-only view over the parsed authorization details that converts each item into a
+     * {@link Map} only the first time it is accessed.
+     */
+    private static class LazyAuthorizationDetails extends AbstractList<Map<String, Object>> {
+        private static final Type TYPE = new TypeToken<Map<String, Object>>() {
+        }.getType();
+
+        private final List<JsonObject> items;
+        // null until the item at the same index is converted
+        private final List<Map<String, Object>> converted;
+
+        LazyAuthorizationDetails(List<JsonObject> items) {
+            this.items = items;
+            this.converted = new ArrayList<>(Collections.<Map<String, Object>>nCopies(items.size(), null));
+        }
+
+        @Override
+        public Map<String, Object> get(int index) {
+            Map<String, Object> item = converted.get(index);
+            if (item == null) {
+                item = JSON.fromJson(items.get(index), TYPE);
+                converted.set(index, item);
+            }
+            return item;
+        }
+
+        @Override
+        public int size() {
+            return converted.size();
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package com.auth0.android.guardian.sdk;
+
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts with AES-GCM using a key generated in, and never exported from, the AndroidKeyStore.
+ * The key is created the first time it's needed, so files written with it can only be read on
+ * the same device and installation of the app.
+ */
+@RequiresApi(Build.VERSION_CODES.M)
+public class KeyStoreStorageCipher implements StorageCipher {
+
+    static final String DEFAULT_ALIAS = "com.auth0.android.guardian.sdk.storage";
+
+    private static final String KEY_STORE = "AndroidKeyStore";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEY_SIZE = 256;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final String alias;
+
+    // guarded by this, loaded or generated on first use
+    private SecretKey key;
+
+    /**
+     * Creates a cipher that uses the key with the given alias, generating it if there's none
+     *
+     * @param alias the alias of the key in the AndroidKeyStore
+     */
+    public KeyStoreStorageCipher(@NonNull String alias) {
+        this.alias = alias;
+    }
+
+    @NonNull
+    @Override
+    public byte[] encrypt(@NonNull byte[] plaintext) throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        // the keystore picks a random IV
+        cipher.init(Cipher.ENCRYPT_MODE, getKey());
+        final byte[] iv = cipher.getIV();
+        final byte[] encrypted = cipher.doFinal(plaintext);
+
+        final byte[] result = new byte[1 + iv.length + encrypted.length];
+        result[0] = (byte) iv.length;
+        System.arraycopy(iv, 0, result, 1, iv.length);
+        System.arraycopy(encrypted, 0, result, 1 + iv.length, encrypted.length);
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public byte[] decrypt(@NonNull byte[] ciphertext) throws GeneralSecurityException {
+        if (ciphertext.length == 0 || ciphertext.length < 1 + (ciphertext[0] & 0xff)) {
+            throw new GeneralSecurityException("The encrypted content is truncated");
+        }
+        final int ivLength = ciphertext[0] & 0xff;
+        final byte[] iv = Arrays.copyOfRange(ciphertext, 1, 1 + ivLength);
+
+        final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, getKey(), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        return cipher.doFinal(ciphertext, 1 + ivLength, ciphertext.length - 1 - ivLength);
+    }
+
+    private synchronized SecretKey getKey() throws GeneralSecurityException {
+        if (key != null) {
+            return key;
+        }
+        final KeyStore keyStore = KeyStore.getInstance(KEY_STORE);
+        try {
+            keyStore.load(null);
+        } catch (IOException e) {
+            throw new KeyStoreException("Unable to load the " + KEY_STORE, e);
+        }
+        final Key existing = keyStore.getKey(alias, null);
+        if (existing instanceof SecretKey) {
+            key = (SecretKey) existing;
+            return key;
+        }
+        final KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEY_STORE);
+        generator.init(new KeyGenParameterSpec.Builder(alias,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(KEY_SIZE)
+                .build());
+        key = generator.generateKey();
+        return key;
+    }
+}
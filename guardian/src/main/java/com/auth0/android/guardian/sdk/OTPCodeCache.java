@@ -0,0 +1,256 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.auth0.android.guardian.sdk.otp.TOTP;
+import com.auth0.android.guardian.sdk.otp.utils.Base32;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Keeps the {@link TOTP} generator of the most recently used enrollments, together with the last
+ * code it generated, so that reading the code of an enrollment several times within the same
+ * period doesn't decode the secret or compute the HMAC again.
+ * <p>
+ * Entries are keyed by enrollment id and validated against the enrollment's OTP data on every
+ * lookup, so changing the secret, algorithm, digits or period of an enrollment is picked up right
+ * away. The least recently used entry is evicted when the cache is full.
+ * <p>
+ * Generators compute the HMAC with a {@link javax.crypto.Mac} from the security providers,
+ * unless the built-in implementation was enabled with {@link #setBuiltInHmac(boolean)}, see
+ * {@link Guardian.Builder#useBuiltInHmac()}.
+ */
+final class OTPCodeCache {
+
+    static final int DEFAULT_MAX_SIZE = 256;
+
+    // batches up to this size are computed on the calling thread
+    static final int BULK_THRESHOLD = 32;
+
+    private final Map<String, Entry> entries;
+
+    private volatile boolean builtInHmac;
+
+    /**
+     * The pool used for large batches. ForkJoinPool.commonPool() only exists from API 24, so the
+     * SDK creates its own the first time it's needed. Its worker threads are daemon threads.
+     */
+    private static class BulkPool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the pool used by {@link Guardian#getOTPCodes(List, String[])}
+     */
+    @NonNull
+    static ForkJoinPool bulkPool() {
+        return BulkPool.INSTANCE;
+    }
+
+    OTPCodeCache(final int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the code of the enrollment for the period that includes the given time
+     *
+     * @param enrollment the enrollment, with non null OTP data
+     * @param timeSecs   the time in seconds since the epoch
+     * @return the OTP code
+     * @throws IllegalArgumentException when the enrollment's OTP data is invalid
+     */
+    @NonNull
+    String getCode(@NonNull Enrollment enrollment, long timeSecs) {
+        final String id = enrollment.getId();
+        final String secret = enrollment.getSecret();
+        final String algorithm = enrollment.getAlgorithm();
+        final int digits = enrollment.getDigits();
+        final int period = enrollment.getPeriod();
+        final long step = timeSecs / period;
+
+        if (id == null) {
+            return createGenerator(algorithm, secret, digits, period).generate(step);
+        }
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+            if (entry != null && entry.matches(secret, algorithm, digits, period)) {
+                if (entry.step == step) {
+                    return entry.code;
+                }
+            } else {
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            entry = new Entry(secret, algorithm, digits, period,
+                    createGenerator(algorithm, secret, digits, period));
+        }
+        final String code = entry.totp.generate(step);
+
+        synchronized (entries) {
+            entry.step = step;
+            entry.code = code;
+            entries.put(id, entry);
+        }
+        return code;
+    }
+
+    /**
+     * Writes the code of every enrollment for the period that includes the given time into the
+     * given array, at the same index. Enrollments without OTP data get a null code.
+     * <p>
+     * Large batches are split in chunks that are computed in parallel in the given pool.
+     *
+     * @param enrollments the enrollments
+     * @param out         the array that receives the codes, at least as long as the enrollments list
+     * @param timeSecs    the time in seconds since the epoch
+     * @param pool        the pool used to compute large batches
+     * @throws IllegalArgumentException when the enrollment's OTP data is invalid
+     */
+    void getCodes(@NonNull List<? extends Enrollment> enrollments, @NonNull String[] out,
+                  long timeSecs, @NonNull ForkJoinPool pool) {
+        if (out.length < enrollments.size()) {
+            throw new IndexOutOfBoundsException(enrollments.size()
+                    + " codes do not fit in an array of " + out.length);
+        }
+        BulkAction action = new BulkAction(enrollments, out, timeSecs, 0, enrollments.size());
+        if (enrollments.size() <= BULK_THRESHOLD) {
+            action.compute();
+        } else {
+            pool.invoke(action);
+        }
+    }
+
+    /**
+     * Same as {@link #getCode(Enrollment, long)}, but returns null for enrollments without OTP data
+     */
+    @Nullable
+    String getCodeIfAvailable(@NonNull Enrollment enrollment, long timeSecs) {
+        if (enrollment.getSecret() == null
+                || enrollment.getAlgorithm() == null
+                || enrollment.getDigits() == null
+                || enrollment.getPeriod() == null) {
+            return null;
+        }
+        return getCode(enrollment, timeSecs);
+    }
+
+    /**
+     * Removes the cached generator of an enrollment
+     *
+     * @param enrollmentId the enrollment id
+     */
+    void invalidate(@Nullable String enrollmentId) {
+        if (enrollmentId == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.remove(enrollmentId);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Sets whether new generators compute the HMAC with the SDK's own implementation. Cached
+     * generators are dropped when it changes, the codes are the same either way.
+     *
+     * @param enabled true to use the built-in implementation, false for the security providers
+     */
+    void setBuiltInHmac(boolean enabled) {
+        synchronized (entries) {
+            if (builtInHmac != enabled) {
+                builtInHmac = enabled;
+                entries.clear();
+            }
+        }
+    }
+
+    boolean isBuiltInHmac() {
+        return builtInHmac;
+    }
+
+    private TOTP createGenerator(String algorithm, String secret, int digits, int period) {
+        try {
+            return new TOTP(algorithm, Base32.decode(secret), digits, period, builtInHmac);
+        } catch (Base32.DecodingException e) {
+            throw new IllegalArgumentException(
+                    "Enrollment's secret is not a valid Base32 encoded TOTP secret", e);
+        }
+    }
+
+    private class BulkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends Enrollment> enrollments;
+        private final String[] out;
+        private final long timeSecs;
+        private final int from;
+        private final int to;
+
+        BulkAction(List<? extends Enrollment> enrollments, String[] out, long timeSecs, int from, int to) {
+            this.enrollments = enrollments;
+            this.out = out;
+            this.timeSecs = timeSecs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BULK_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    out[i] = getCodeIfAvailable(enrollments.get(i), timeSecs);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BulkAction(enrollments, out, timeSecs, from, middle),
+                    new BulkAction(enrollments, out, timeSecs, middle, to));
+        }
+    }
+
+    private static class Entry {
+        final String secret;
+        final String algorithm;
+        final int digits;
+        final int period;
+        final TOTP totp;
+
+        // guarded by the cache's lock
+        long step = -1;
+        String code;
+
+        Entry(String secret, String algorithm, int digits, int period, TOTP totp) {
+            this.secret = secret;
+            this.algorithm = algorithm;
+            this.digits = digits;
+            this.period = period;
+            this.totp = totp;
+        }
+
+        boolean matches(String secret, String algorithm, int digits, int period) {
+            return this.digits == digits
+                    && this.period == period
+                    && this.algorithm.equals(algorithm)
+                    && this.secret.equals(secret);
+        }
+    }
+}
@@ -32,6 +32,9 @@ import android.util.Log;
 
 import org.json.JSONObject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -43,6 +46,10 @@ import okhttp3.HttpUrl;
 /**
  * A Guardian Notification that contains data about an authentication request and implements the
  * {@link Parcelable} interface.
+ * <p>
+ * The source and location of the request are decoded from the payload the first time one of
+ * their getters is called, so notifications that are only handled by transaction token or
+ * challenge never pay for it.
  */
 public class ParcelableNotification implements Notification, Parcelable {
 
@@ -63,17 +70,22 @@ public class ParcelableNotification implements Notification, Parcelable {
     private static final String VERSION_KEY = "v";
     private static final String CHALLENGE_KEY = "c";
 
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    static final long INVALID_DATE = Long.MIN_VALUE;
+
+    // how the source and location are written in parcels and binary records
+    private static final byte DECODED = 0x00;
+    private static final byte RAW = 0x01;
+
     private final String url;
     private final String enrollmentId;
     private final String transactionToken;
     private final Date date;
-    private final String osName;
-    private final String osVersion;
-    private final String browserName;
-    private final String browserVersion;
-    private final String location;
-    private final Double latitude;
-    private final Double longitude;
+    // source ("s") and location ("l") are kept as received and only decoded when needed
+    private final String sourceJson;
+    private final String locationJson;
+    private volatile Source source;
+    private volatile Location location;
     private final String transactionLinkingId;
     private final String challenge;
 
@@ -94,13 +106,28 @@ public class ParcelableNotification implements Notification, Parcelable {
         this.enrollmentId = deviceId;
         this.transactionToken = transactionToken;
         this.date = date;
-        this.osName = osName;
-        this.osVersion = osVersion;
-        this.browserName = browserName;
-        this.browserVersion = browserVersion;
-        this.location = location;
-        this.latitude = latitude;
-        this.longitude = longitude;
+        this.sourceJson = null;
+        this.locationJson = null;
+        this.source = new Source(browserName, browserVersion, osName, osVersion);
+        this.location = new Location(location, latitude, longitude);
+        this.transactionLinkingId = transactionLinkingId;
+        this.challenge = challenge;
+    }
+
+    private ParcelableNotification(@NonNull HttpUrl url,
+                                   @NonNull String deviceId,
+                                   @NonNull String transactionToken,
+                                   @NonNull Date date,
+                                   @Nullable String sourceJson,
+                                   @Nullable String locationJson,
+                                   @Nullable String transactionLinkingId,
+                                   @NonNull String challenge) {
+        this.url = url.toString();
+        this.enrollmentId = deviceId;
+        this.transactionToken = transactionToken;
+        this.date = date;
+        this.sourceJson = sourceJson;
+        this.locationJson = locationJson;
         this.transactionLinkingId = transactionLinkingId;
         this.challenge = challenge;
     }
@@ -116,24 +143,15 @@ public class ParcelableNotification implements Notification, Parcelable {
     @Nullable
     @Deprecated
     public static ParcelableNotification parse(@NonNull Bundle pushNotificationPayload) {
-        String hostname = pushNotificationPayload.getString(HOSTNAME_KEY);
-        String enrollmentId = pushNotificationPayload.getString(ENROLLMENT_ID_KEY);
-        String transactionToken = pushNotificationPayload.getString(TRANSACTION_TOKEN_KEY);
-        String transactionLinkingId = pushNotificationPayload.getString(TRANSACTION_LINKING_ID_KEY);
-        String challenge = pushNotificationPayload.getString(CHALLENGE_KEY);
-        Date date = parseDate(pushNotificationPayload);
-
-        if (hostname == null || enrollmentId == null || transactionToken == null || challenge == null || date == null) {
-            return null;
-        }
-
-        HttpUrl url = parseHostname(hostname);
-        Source source = parseSource(pushNotificationPayload);
-        Location location = parseLocation(pushNotificationPayload);
-
-        return new ParcelableNotification(url, enrollmentId, transactionToken, date,
-                source.osName, source.osVersion, source.browserName, source.browserVersion,
-                location.location, location.latitude, location.longitude, transactionLinkingId, challenge);
+        return parse(
+                pushNotificationPayload.getString(HOSTNAME_KEY),
+                pushNotificationPayload.getString(ENROLLMENT_ID_KEY),
+                pushNotificationPayload.getString(TRANSACTION_TOKEN_KEY),
+                pushNotificationPayload.getString(TRANSACTION_LINKING_ID_KEY),
+                pushNotificationPayload.getString(CHALLENGE_KEY),
+                pushNotificationPayload.getString(DATE_KEY),
+                pushNotificationPayload.getString(SOURCE_KEY),
+                pushNotificationPayload.getString(LOCATION_KEY));
     }
 
     /**
@@ -145,11 +163,38 @@ public class ParcelableNotification implements Notification, Parcelable {
      */
     @Nullable
     public static ParcelableNotification parse(@NonNull Map<String, String> pushNotificationPayload) {
-        Bundle data = new Bundle(pushNotificationPayload.size());
-        for (Map.Entry<String, String> e : pushNotificationPayload.entrySet()) {
-            data.putString(e.getKey(), e.getValue());
+        return parse(
+                pushNotificationPayload.get(HOSTNAME_KEY),
+                pushNotificationPayload.get(ENROLLMENT_ID_KEY),
+                pushNotificationPayload.get(TRANSACTION_TOKEN_KEY),
+                pushNotificationPayload.get(TRANSACTION_LINKING_ID_KEY),
+                pushNotificationPayload.get(CHALLENGE_KEY),
+                pushNotificationPayload.get(DATE_KEY),
+                pushNotificationPayload.get(SOURCE_KEY),
+                pushNotificationPayload.get(LOCATION_KEY));
+    }
+
+    @Nullable
+    private static ParcelableNotification parse(@Nullable String hostname,
+                                                @Nullable String enrollmentId,
+                                                @Nullable String transactionToken,
+                                                @Nullable String transactionLinkingId,
+                                                @Nullable String challenge,
+                                                @Nullable String dateStr,
+                                                @Nullable String sourceJson,
+                                                @Nullable String locationJson) {
+        if (hostname == null || enrollmentId == null || transactionToken == null || challenge == null) {
+            return null;
+        }
+        Date date = parseDate(dateStr);
+        if (date == null) {
+            return null;
         }
-        return parse(data);
+
+        HttpUrl url = parseHostname(hostname);
+
+        return new ParcelableNotification(url, enrollmentId, transactionToken, date,
+                sourceJson, locationJson, transactionLinkingId, challenge);
     }
 
     @NonNull
@@ -179,43 +224,43 @@ public class ParcelableNotification implements Notification, Parcelable {
     @Nullable
     @Override
     public String getOsName() {
-        return osName;
+        return getSource().osName;
     }
 
     @Nullable
     @Override
     public String getOsVersion() {
-        return osVersion;
+        return getSource().osVersion;
     }
 
     @Nullable
     @Override
     public String getBrowserName() {
-        return browserName;
+        return getSource().browserName;
     }
 
     @Nullable
     @Override
     public String getBrowserVersion() {
-        return browserVersion;
+        return getSource().browserVersion;
     }
 
     @Nullable
     @Override
     public String getLocation() {
-        return location;
+        return getDecodedLocation().location;
     }
 
     @Nullable
     @Override
     public Double getLatitude() {
-        return latitude;
+        return getDecodedLocation().latitude;
     }
 
     @Nullable
     @Override
     public Double getLongitude() {
-        return longitude;
+        return getDecodedLocation().longitude;
     }
 
     @Nullable
@@ -230,6 +275,33 @@ public class ParcelableNotification implements Notification, Parcelable {
         return challenge;
     }
 
+    /**
+     * Decodes the source the first time it's needed. Concurrent callers may decode it more than
+     * once, but they all get equal values.
+     */
+    @NonNull
+    private Source getSource() {
+        Source source = this.source;
+        if (source == null) {
+            source = parseSource(sourceJson);
+            this.source = source;
+        }
+        return source;
+    }
+
+    /**
+     * Decodes the location the first time it's needed, same as {@link #getSource()}
+     */
+    @NonNull
+    private Location getDecodedLocation() {
+        Location location = this.location;
+        if (location == null) {
+            location = parseLocation(locationJson);
+            this.location = location;
+        }
+        return location;
+    }
+
     private static HttpUrl parseHostname(String hostname) {
         HttpUrl url;
         if (hostname.toLowerCase().startsWith("http")) {
@@ -243,15 +315,20 @@ public class ParcelableNotification implements Notification, Parcelable {
         return url;
     }
 
-    private static Date parseDate(Bundle pushNotificationPayload) {
-        String dateStr = pushNotificationPayload.getString(DATE_KEY);
+    private static Date parseDate(String dateStr) {
         if (dateStr == null) {
             return null;
         }
 
+        long millis = parseDateMillis(dateStr);
+        if (millis != INVALID_DATE) {
+            return new Date(millis);
+        }
+
+        // not exactly in the expected format, let the (lenient) date formatter try
         // remove warning about date format non "local"
         @SuppressLint("SimpleDateFormat")
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(DATE_FORMAT);
         simpleDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
         Date date = null;
         try {
@@ -263,14 +340,90 @@ public class ParcelableNotification implements Notification, Parcelable {
         return date;
     }
 
-    private static Source parseSource(Bundle pushNotificationPayload) {
+    /**
+     * Parses a UTC date in the {@code yyyy-MM-dd'T'HH:mm:ss.SSS'Z'} format without allocating
+     *
+     * @param value the date
+     * @return the milliseconds since the epoch, or {@link #INVALID_DATE} if the value is not
+     * exactly in that format or is not a valid date
+     */
+    static long parseDateMillis(@NonNull String value) {
+        if (value.length() != 24
+                || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+                || value.charAt(13) != ':' || value.charAt(16) != ':' || value.charAt(19) != '.'
+                || value.charAt(23) != 'Z') {
+            return INVALID_DATE;
+        }
+        final int year = parseDigits(value, 0, 4);
+        final int month = parseDigits(value, 5, 7);
+        final int day = parseDigits(value, 8, 10);
+        final int hour = parseDigits(value, 11, 13);
+        final int minute = parseDigits(value, 14, 16);
+        final int second = parseDigits(value, 17, 19);
+        final int millis = parseDigits(value, 20, 23);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || millis < 0) {
+            return INVALID_DATE;
+        }
+
+        final long days = daysSinceEpoch(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L + millis;
+    }
+
+    /**
+     * @return the value of the digits between start (inclusive) and end (exclusive), or -1 if
+     * there's any other char
+     */
+    private static int parseDigits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days between 1970-01-01 and the given date of the proleptic Gregorian calendar
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        // count years from March, so that the leap day is the last day of the year
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = y / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static Source parseSource(String sourceJson) {
         String browserName = null;
         String browserVersion = null;
         String osName = null;
         String osVersion = null;
 
         // source ("s") arrives as a JSON encoded string
-        String sourceJson = pushNotificationPayload.getString(SOURCE_KEY);
+        if (sourceJson == null) {
+            return new Source(null, null, null, null);
+        }
         try {
             JSONObject sourceData = new JSONObject(sourceJson);
             JSONObject browserData = sourceData.optJSONObject(BROWSER_KEY);
@@ -298,14 +451,13 @@ public class ParcelableNotification implements Notification, Parcelable {
         return new Source(browserName, browserVersion, osName, osVersion);
     }
 
-    private static Location parseLocation(Bundle pushNotificationPayload) {
+    private static Location parseLocation(String locationJson) {
         String location = null;
         Double latitude = null;
         Double longitude = null;
 
         // location ("l") arrives as a JSON encoded string
-        if (pushNotificationPayload.containsKey(LOCATION_KEY)) {
-            String locationJson = pushNotificationPayload.getString(LOCATION_KEY);
+        if (locationJson != null) {
             try {
                 JSONObject locationData = new JSONObject(locationJson);
                 if (locationData.has(NAME_KEY) && !locationData.isNull(NAME_KEY)) {
@@ -353,6 +505,104 @@ public class ParcelableNotification implements Notification, Parcelable {
         }
     }
 
+    // BINARY RECORD, see PendingNotificationStore
+
+    /**
+     * Writes the notification in a compact binary form, keeping the source and location as the
+     * raw JSON when there's one, same as {@link #writeToParcel(Parcel, int)}
+     */
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeUTF(url);
+        out.writeUTF(enrollmentId);
+        out.writeUTF(transactionToken);
+        out.writeLong(date != null ? date.getTime() : -1L);
+        if (sourceJson != null) {
+            out.writeByte(RAW);
+            out.writeUTF(sourceJson);
+        } else {
+            final Source source = getSource();
+            out.writeByte(DECODED);
+            writeNullableString(out, source.osName);
+            writeNullableString(out, source.osVersion);
+            writeNullableString(out, source.browserName);
+            writeNullableString(out, source.browserVersion);
+        }
+        if (locationJson != null) {
+            out.writeByte(RAW);
+            out.writeUTF(locationJson);
+        } else {
+            final Location location = getDecodedLocation();
+            out.writeByte(DECODED);
+            writeNullableString(out, location.location);
+            out.writeBoolean(location.latitude != null);
+            if (location.latitude != null) {
+                out.writeDouble(location.latitude);
+            }
+            out.writeBoolean(location.longitude != null);
+            if (location.longitude != null) {
+                out.writeDouble(location.longitude);
+            }
+        }
+        writeNullableString(out, transactionLinkingId);
+        out.writeUTF(challenge);
+    }
+
+    /**
+     * Reads a notification written by {@link #writeTo(DataOutput)}
+     */
+    @NonNull
+    static ParcelableNotification readFrom(@NonNull DataInput in) throws IOException {
+        final HttpUrl url = HttpUrl.parse(in.readUTF());
+        if (url == null) {
+            throw new IOException("Invalid notification url");
+        }
+        final String enrollmentId = in.readUTF();
+        final String transactionToken = in.readUTF();
+        final long tmpDate = in.readLong();
+        final Date date = tmpDate != -1 ? new Date(tmpDate) : null;
+
+        String sourceJson = null;
+        Source source = null;
+        if (in.readByte() == RAW) {
+            sourceJson = in.readUTF();
+        } else {
+            final String osName = readNullableString(in);
+            final String osVersion = readNullableString(in);
+            final String browserName = readNullableString(in);
+            final String browserVersion = readNullableString(in);
+            source = new Source(browserName, browserVersion, osName, osVersion);
+        }
+        String locationJson = null;
+        Location location = null;
+        if (in.readByte() == RAW) {
+            locationJson = in.readUTF();
+        } else {
+            final String name = readNullableString(in);
+            final Double latitude = in.readBoolean() ? in.readDouble() : null;
+            final Double longitude = in.readBoolean() ? in.readDouble() : null;
+            location = new Location(name, latitude, longitude);
+        }
+        final String transactionLinkingId = readNullableString(in);
+        final String challenge = in.readUTF();
+
+        final ParcelableNotification notification = new ParcelableNotification(url, enrollmentId,
+                transactionToken, date, sourceJson, locationJson, transactionLinkingId, challenge);
+        notification.source = source;
+        notification.location = location;
+        return notification;
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     // PARCELABLE
     private ParcelableNotification(Parcel in) {
         url = in.readString();
@@ -360,13 +610,25 @@ public class ParcelableNotification implements Notification, Parcelable {
         transactionToken = in.readString();
         long tmpDate = in.readLong();
         date = tmpDate != -1 ? new Date(tmpDate) : null;
-        osName = in.readString();
-        osVersion = in.readString();
-        browserName = in.readString();
-        browserVersion = in.readString();
-        location = in.readString();
-        latitude = in.readByte() == 0x00 ? null : in.readDouble();
-        longitude = in.readByte() == 0x00 ? null : in.readDouble();
+        if (in.readByte() == RAW) {
+            sourceJson = in.readString();
+        } else {
+            sourceJson = null;
+            final String osName = in.readString();
+            final String osVersion = in.readString();
+            final String browserName = in.readString();
+            final String browserVersion = in.readString();
+            source = new Source(browserName, browserVersion, osName, osVersion);
+        }
+        if (in.readByte() == RAW) {
+            locationJson = in.readString();
+        } else {
+            locationJson = null;
+            final String name = in.readString();
+            final Double latitude = in.readByte() == 0x00 ? null : in.readDouble();
+            final Double longitude = in.readByte() == 0x00 ? null : in.readDouble();
+            location = new Location(name, latitude, longitude);
+        }
         transactionLinkingId = in.readString();
         challenge = in.readString();
     }
@@ -382,22 +644,37 @@ public class ParcelableNotification implements Notification, Parcelable {
         dest.writeString(enrollmentId);
         dest.writeString(transactionToken);
         dest.writeLong(date != null ? date.getTime() : -1L);
-        dest.writeString(osName);
-        dest.writeString(osVersion);
-        dest.writeString(browserName);
-        dest.writeString(browserVersion);
-        dest.writeString(location);
-        if (latitude == null) {
-            dest.writeByte((byte) (0x00));
+        // keep the raw JSON when there's one, so the receiver also decodes it only if needed
+        if (sourceJson != null) {
+            dest.writeByte(RAW);
+            dest.writeString(sourceJson);
         } else {
-            dest.writeByte((byte) (0x01));
-            dest.writeDouble(latitude);
+            final Source source = getSource();
+            dest.writeByte(DECODED);
+            dest.writeString(source.osName);
+            dest.writeString(source.osVersion);
+            dest.writeString(source.browserName);
+            dest.writeString(source.browserVersion);
         }
-        if (longitude == null) {
-            dest.writeByte((byte) (0x00));
+        if (locationJson != null) {
+            dest.writeByte(RAW);
+            dest.writeString(locationJson);
         } else {
-            dest.writeByte((byte) (0x01));
-            dest.writeDouble(longitude);
+            final Location location = getDecodedLocation();
+            dest.writeByte(DECODED);
+            dest.writeString(location.location);
+            if (location.latitude == null) {
+                dest.writeByte((byte) (0x00));
+            } else {
+                dest.writeByte((byte) (0x01));
+                dest.writeDouble(location.latitude);
+            }
+            if (location.longitude == null) {
+                dest.writeByte((byte) (0x00));
+            } else {
+                dest.writeByte((byte) (0x01));
+                dest.writeDouble(location.longitude);
+            }
         }
         dest.writeString(transactionLinkingId);
         dest.writeString(challenge);
@@ -0,0 +1,360 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the notifications that were received but not allowed or rejected yet in a file, so that
+ * they can be listed right away when the app starts again, even if it was killed after the push
+ * was received.
+ * <p>
+ * The file is an append-only log of compact binary records: adding a notification appends it,
+ * resolving it appends a small record with its transaction token, so no operation rewrites the
+ * file. Notifications are dropped when their transaction token expires (or, when it doesn't
+ * include its expiration, some minutes after their date), following the server time of
+ * {@link Guardian#getServerClock()} with an extra minute while its offset is not known. The file
+ * is compacted to only the pending notifications when most of its records are not needed
+ * anymore. Loading reads the whole file at once.
+ * <p>
+ * The file is read the first time the store is used, so every method does I/O and should not be
+ * called on the main thread. Instances are thread safe, but only one instance should use a given
+ * file.
+ */
+public class PendingNotificationStore {
+
+    // used when the transaction token doesn't say when it expires
+    static final long DEFAULT_MAX_AGE_MILLIS = 10 * 60 * 1000;
+    // compact when there are more unneeded records than this, and more than the pending ones
+    static final int MIN_RECORDS_TO_COMPACT = 16;
+
+    private static final int MAGIC = 0x47504e53; // "GPNS"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+
+    private static final byte RECORD_ADD = 'A';
+    private static final byte RECORD_RESOLVE = 'R';
+
+    private static final Comparator<Entry> BY_DATE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            final long d1 = e1.notification.getDate().getTime();
+            final long d2 = e2.notification.getDate().getTime();
+            return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
+        }
+    };
+
+    private final File file;
+    private final ServerClock clock;
+
+    // guarded by this, pending notifications by transaction token, null until loaded
+    private Map<String, Entry> pending;
+    // records in the file that don't belong to a pending notification
+    private int unneededRecords;
+
+    /**
+     * Creates a store that uses the given file, usually in the app's private files directory
+     *
+     * @param file the file where notifications are kept
+     */
+    public PendingNotificationStore(@NonNull File file) {
+        this(file, Guardian.SERVER_CLOCK);
+    }
+
+    @VisibleForTesting
+    PendingNotificationStore(@NonNull File file, @NonNull ServerClock clock) {
+        this.file = file;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a notification, unless its transaction already expired or it's already in the store
+     *
+     * @param notification the notification
+     * @return true if the notification was added
+     * @throws IOException when the file can't be read or written
+     */
+    @WorkerThread
+    public synchronized boolean add(@NonNull ParcelableNotification notification) throws IOException {
+        load();
+        final long expiresAt = getExpiration(notification);
+        if (clock.hasPassed(expiresAt)
+                || pending.containsKey(notification.getTransactionToken())) {
+            return false;
+        }
+
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+        final DataOutputStream out = new DataOutputStream(record);
+        out.writeLong(expiresAt);
+        notification.writeTo(out);
+        append(RECORD_ADD, record.toByteArray());
+
+        pending.put(notification.getTransactionToken(), new Entry(notification, expiresAt));
+        return true;
+    }
+
+    /**
+     * Removes a notification, usually after allowing or rejecting it
+     *
+     * @param notification the notification
+     * @return true if the notification was in the store
+     * @throws IOException when the file can't be read or written
+     */
+    @WorkerThread
+    public synchronized boolean remove(@NonNull Notification notification) throws IOException {
+        load();
+        if (pending.remove(notification.getTransactionToken()) == null) {
+            return false;
+        }
+
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        new DataOutputStream(record).writeUTF(notification.getTransactionToken());
+        append(RECORD_RESOLVE, record.toByteArray());
+
+        // the add record and this one
+        unneededRecords += 2;
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Returns the pending notifications whose transaction didn't expire yet, oldest first
+     *
+     * @return the notifications
+     * @throws IOException when the file can't be read or written
+     */
+    @NonNull
+    @WorkerThread
+    public synchronized List<ParcelableNotification> getPending() throws IOException {
+        load();
+        removeExpired();
+
+        final List<Entry> entries = new ArrayList<>(pending.values());
+        Collections.sort(entries, BY_DATE);
+        final List<ParcelableNotification> notifications = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            notifications.add(entry.notification);
+        }
+        return notifications;
+    }
+
+    /**
+     * Removes every notification and deletes the file
+     *
+     * @throws IOException when the file can't be deleted
+     */
+    @WorkerThread
+    public synchronized void clear() throws IOException {
+        pending = new LinkedHashMap<>();
+        unneededRecords = 0;
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getUnneededRecords() {
+        return unneededRecords;
+    }
+
+    /**
+     * Reads the file the first time, must be called holding the lock
+     */
+    private void load() throws IOException {
+        if (pending != null) {
+            return;
+        }
+        final Map<String, Entry> loaded = new LinkedHashMap<>();
+        unneededRecords = 0;
+        if (!file.exists()) {
+            pending = loaded;
+            return;
+        }
+
+        final byte[] content = readFully(file);
+        pending = loaded;
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        boolean valid = content.length >= HEADER_SIZE
+                && in.readInt() == MAGIC
+                && in.readByte() == VERSION;
+        while (valid && in.available() > 0) {
+            valid = readRecord(in);
+        }
+        removeExpired();
+
+        if (!valid) {
+            // unknown format or a record was partially written, appending after it would make
+            // the following records unreadable too
+            compact();
+        } else {
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * @return false if the record is incomplete or can't be read
+     */
+    private boolean readRecord(DataInputStream in) throws IOException {
+        try {
+            final byte type = in.readByte();
+            final int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                return false;
+            }
+            final byte[] payload = new byte[length];
+            in.readFully(payload);
+            final DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            if (type == RECORD_ADD) {
+                final long expiresAt = record.readLong();
+                final ParcelableNotification notification = ParcelableNotification.readFrom(record);
+                final Entry replaced = pending.put(notification.getTransactionToken(),
+                        new Entry(notification, expiresAt));
+                if (replaced != null) {
+                    unneededRecords++;
+                }
+            } else if (type == RECORD_RESOLVE) {
+                final Entry removed = pending.remove(record.readUTF());
+                unneededRecords += removed != null ? 2 : 1;
+            } else {
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            // truncated or not written by this class
+            return false;
+        }
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private void removeExpired() {
+        final Iterator<Entry> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            if (clock.hasPassed(iterator.next().expiresAt)) {
+                iterator.remove();
+                unneededRecords++;
+            }
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (unneededRecords > MIN_RECORDS_TO_COMPACT && unneededRecords > pending.size()) {
+            removeExpired();
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the file with only the pending notifications. The new file is written next to the
+     * current one and then renamed, so the current one is kept if anything fails.
+     */
+    private void compact() throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream(HEADER_SIZE + pending.size() * 512);
+            final DataOutputStream data = new DataOutputStream(content);
+            data.writeInt(MAGIC);
+            data.writeByte(VERSION);
+            final ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+            final DataOutputStream recordData = new DataOutputStream(record);
+            for (Entry entry : pending.values()) {
+                record.reset();
+                recordData.writeLong(entry.expiresAt);
+                entry.notification.writeTo(recordData);
+                data.writeByte(RECORD_ADD);
+                data.writeInt(record.size());
+                record.writeTo(data);
+            }
+            content.writeTo(out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Unable to replace " + file);
+        }
+        unneededRecords = 0;
+    }
+
+    private void append(byte type, byte[] payload) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            compact();
+        }
+        final ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length + 5);
+        final DataOutputStream data = new DataOutputStream(record);
+        data.writeByte(type);
+        data.writeInt(payload.length);
+        data.write(payload);
+
+        // a single write, so a crash leaves at most one incomplete record at the end
+        final OutputStream out = new FileOutputStream(file, true);
+        try {
+            record.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private long getExpiration(ParcelableNotification notification) {
+        final long expiresAt = TransactionTokens.getExpirationMillis(notification.getTransactionToken());
+        if (expiresAt != TransactionTokens.NO_EXPIRATION) {
+            return expiresAt;
+        }
+        return notification.getDate().getTime() + DEFAULT_MAX_AGE_MILLIS;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] content = new byte[(int) file.length()];
+            int read = 0;
+            while (read < content.length) {
+                final int count = in.read(content, read, content.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            if (read < content.length) {
+                final byte[] truncated = new byte[read];
+                System.arraycopy(content, 0, truncated, 0, read);
+                return truncated;
+            }
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Entry {
+        final ParcelableNotification notification;
+        final long expiresAt;
+
+        Entry(ParcelableNotification notification, long expiresAt) {
+            this.notification = notification;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
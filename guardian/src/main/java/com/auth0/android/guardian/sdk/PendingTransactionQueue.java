@@ -0,0 +1,197 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Holds the authentication requests received in a burst, for example when the device reconnects
+ * and several pushes arrive at once, and hands them to the app one at a time (or a few at a time)
+ * in the order they were initiated.
+ * <p>
+ * Notifications are ordered by {@link Notification#getDate()}. The expiration of the transaction
+ * token is read locally, so transactions that already expired are dropped without any request,
+ * both when they are offered and when they are about to be handed to the app. Expirations follow
+ * the server time, see {@link Guardian#getServerClock()}, and while its offset is not known yet
+ * transactions are kept for an extra minute in case the device clock is ahead.
+ * <p>
+ * The queue is bounded: {@link #offer(Notification)} rejects new notifications when it's full.
+ * Notifications taken from the queue count as in flight until {@link #done(Notification)} is
+ * called, and no more than the given maximum are in flight at the same time, so the app is
+ * never asked to handle more requests than it can show.
+ * <p>
+ * Instances are thread safe.
+ */
+public class PendingTransactionQueue {
+
+    private static final Comparator<Entry> BY_DATE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            final int byDate = e1.date < e2.date ? -1 : (e1.date > e2.date ? 1 : 0);
+            if (byDate != 0) {
+                return byDate;
+            }
+            return e1.sequence < e2.sequence ? -1 : (e1.sequence > e2.sequence ? 1 : 0);
+        }
+    };
+
+    private final int capacity;
+    private final int maxInFlight;
+    private final ServerClock clock;
+
+    // guarded by this
+    private final PriorityQueue<Entry> queue;
+    private final Map<Notification, Boolean> inFlight = new IdentityHashMap<>();
+    private long nextSequence;
+
+    /**
+     * Creates a queue
+     *
+     * @param capacity    the maximum number of notifications waiting in the queue
+     * @param maxInFlight the maximum number of notifications taken from the queue and not yet
+     *                    marked as done
+     * @throws IllegalArgumentException when the capacity or the maximum in flight is not positive
+     */
+    public PendingTransactionQueue(int capacity, int maxInFlight) {
+        this(capacity, maxInFlight, Guardian.SERVER_CLOCK);
+    }
+
+    @VisibleForTesting
+    PendingTransactionQueue(int capacity, int maxInFlight, @NonNull ServerClock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive (was: " + capacity + ")");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum in flight must be positive (was: " + maxInFlight + ")");
+        }
+        this.capacity = capacity;
+        this.maxInFlight = maxInFlight;
+        this.clock = clock;
+        this.queue = new PriorityQueue<>(capacity, BY_DATE);
+    }
+
+    /**
+     * Adds a notification to the queue, unless its transaction already expired, the same
+     * transaction is already queued, or the queue is full
+     *
+     * @param notification the notification
+     * @return true if the notification was added
+     */
+    public boolean offer(@NonNull Notification notification) {
+        final long expiresAt = TransactionTokens.getExpirationMillis(notification.getTransactionToken());
+        if (clock.hasPassed(expiresAt)) {
+            return false;
+        }
+        synchronized (this) {
+            removeExpired();
+            if (queue.size() >= capacity) {
+                return false;
+            }
+            for (Entry entry : queue) {
+                if (entry.notification.getTransactionToken().equals(notification.getTransactionToken())) {
+                    return false;
+                }
+            }
+            queue.add(new Entry(notification, expiresAt, nextSequence++));
+            notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Takes the oldest notification whose transaction didn't expire, if there's one and less than
+     * the maximum are in flight
+     *
+     * @return the notification, or null if none can be taken right now
+     */
+    @Nullable
+    public synchronized Notification poll() {
+        if (inFlight.size() >= maxInFlight) {
+            return null;
+        }
+        removeExpired();
+        final Entry entry = queue.poll();
+        if (entry == null) {
+            return null;
+        }
+        inFlight.put(entry.notification, Boolean.TRUE);
+        return entry.notification;
+    }
+
+    /**
+     * Takes the oldest notification whose transaction didn't expire, waiting until there's one
+     * and less than the maximum are in flight
+     *
+     * @return the notification
+     * @throws InterruptedException when the thread is interrupted while waiting
+     */
+    @NonNull
+    public synchronized Notification take() throws InterruptedException {
+        Notification notification;
+        while ((notification = poll()) == null) {
+            // woken up by offer() and done()
+            wait();
+        }
+        return notification;
+    }
+
+    /**
+     * Marks a notification returned by {@link #poll()} or {@link #take()} as handled, so another
+     * one can be taken
+     *
+     * @param notification the notification
+     */
+    public synchronized void done(@NonNull Notification notification) {
+        if (inFlight.remove(notification) != null) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of notifications waiting in the queue, including the ones whose
+     * transaction expired and were not dropped yet
+     */
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of notifications taken and not yet marked as done
+     */
+    public synchronized int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Must be called holding the lock
+     */
+    private void removeExpired() {
+        final Iterator<Entry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (clock.hasPassed(iterator.next().expiresAt)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        final Notification notification;
+        final long date;
+        final long expiresAt;
+        final long sequence;
+
+        Entry(Notification notification, long expiresAt, long sequence) {
+            this.notification = notification;
+            this.date = notification.getDate().getTime();
+            this.expiresAt = expiresAt;
+            this.sequence = sequence;
+        }
+    }
+}
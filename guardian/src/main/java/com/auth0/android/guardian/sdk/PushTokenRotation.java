@@ -0,0 +1,391 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates the push notification token of every enrollment in an {@link EnrollmentStore} when the
+ * token changes, usually from {@code FirebaseMessagingService.onNewToken}.
+ * <p>
+ * Tokens received in quick succession are coalesced: the update starts some seconds after the
+ * last change, and only for the last token. Enrollments are updated a few at a time, all through
+ * the same HTTP client of the {@link Guardian} instance, and each one is saved in the store with
+ * the new token as soon as the server accepts it. The token being rotated is saved in a file, so
+ * if the app is killed before every enrollment was updated, calling {@link #resume()} when it
+ * starts again updates only the ones that are still missing it.
+ * <p>
+ * Updates that fail because of connection problems or server errors are retried, waiting longer
+ * after every failure. Enrollments the server refuses to update are not retried until the token changes again
+ * or the app restarts.
+ * <p>
+ * Everything runs on a background thread, so every method can be called from any thread.
+ */
+public class PushTokenRotation {
+
+    // wait for the token to settle before updating anything
+    static final long DEBOUNCE_MILLIS = 5 * 1000;
+    static final int DEFAULT_MAX_CONCURRENT_UPDATES = 4;
+    static final long MIN_RETRY_DELAY_MILLIS = 30 * 1000;
+    static final long MAX_RETRY_DELAY_MILLIS = 60 * 60 * 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final GuardianAPIClient apiClient;
+    private final EnrollmentStore enrollments;
+    private final File file;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxConcurrentUpdates;
+
+    private final Runnable scheduledRun = new Runnable() {
+        @Override
+        public void run() {
+            nextRun = null;
+            retryLater.clear();
+            rotate();
+        }
+    };
+
+    // only used on the executor's thread
+    private String token;
+    private ScheduledFuture<?> nextRun;
+    private long retryDelayMillis;
+    private final Set<String> inFlight = new HashSet<>();
+    // failed with a connection problem or server error, retried on the next scheduled run
+    private final Set<String> retryLater = new HashSet<>();
+    // refused by the server, not retried for the current token
+    private final Set<String> rejected = new HashSet<>();
+
+    /**
+     * Creates a rotation that updates the enrollments of the store
+     *
+     * @param guardian    the Guardian instance used to update the enrollments
+     * @param enrollments the enrollments of the device
+     * @param file        the file where the token being rotated is kept, usually in the app's
+     *                    private files directory
+     */
+    public PushTokenRotation(@NonNull Guardian guardian,
+                             @NonNull EnrollmentStore enrollments,
+                             @NonNull File file) {
+        this(guardian, enrollments, file, DEFAULT_MAX_CONCURRENT_UPDATES);
+    }
+
+    /**
+     * Creates a rotation that updates the enrollments of the store
+     *
+     * @param guardian             the Guardian instance used to update the enrollments
+     * @param enrollments          the enrollments of the device
+     * @param file                 the file where the token being rotated is kept, usually in the
+     *                             app's private files directory
+     * @param maxConcurrentUpdates how many enrollments can be updated at the same time
+     * @throws IllegalArgumentException when maxConcurrentUpdates is not positive
+     */
+    public PushTokenRotation(@NonNull Guardian guardian,
+                             @NonNull EnrollmentStore enrollments,
+                             @NonNull File file,
+                             int maxConcurrentUpdates) {
+        this(guardian.getAPIClient(), enrollments, file,
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Guardian push token rotation");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }), true, maxConcurrentUpdates);
+    }
+
+    @VisibleForTesting
+    PushTokenRotation(@NonNull GuardianAPIClient apiClient,
+                      @NonNull EnrollmentStore enrollments,
+                      @NonNull File file,
+                      @NonNull ScheduledExecutorService executor,
+                      boolean ownsExecutor,
+                      int maxConcurrentUpdates) {
+        if (maxConcurrentUpdates < 1) {
+            throw new IllegalArgumentException(
+                    "At least one update must be allowed (was: " + maxConcurrentUpdates + ")");
+        }
+        this.apiClient = apiClient;
+        this.enrollments = enrollments;
+        this.file = file;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.maxConcurrentUpdates = maxConcurrentUpdates;
+    }
+
+    /**
+     * Updates every enrollment to the new token, once the token stops changing
+     *
+     * @param token the new push notification token
+     */
+    public void onNewToken(@NonNull final String token) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (token.equals(PushTokenRotation.this.token)) {
+                    return;
+                }
+                PushTokenRotation.this.token = token;
+                rejected.clear();
+                retryDelayMillis = 0;
+                // saved right away, so the token is not lost if the app is killed while waiting
+                save(token);
+                schedule(DEBOUNCE_MILLIS);
+            }
+        });
+    }
+
+    /**
+     * Resumes a rotation that didn't finish the last time the app ran, if any. Should be called
+     * when the app starts.
+     */
+    public void resume() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (token != null) {
+                    return;
+                }
+                token = load();
+                if (token != null) {
+                    schedule(0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the rotation. Updates that already started still finish on the server, but are not
+     * saved in the store, so they are repeated by {@link #resume()}. If the rotation created its
+     * own thread it's also stopped.
+     */
+    public void shutdown() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                schedule(-1);
+                token = null;
+                if (ownsExecutor) {
+                    executor.shutdown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts the updates of the enrollments that don't have the token yet, up to the maximum
+     */
+    private void rotate() {
+        if (token == null) {
+            return;
+        }
+        final List<Enrollment> all;
+        try {
+            all = enrollments.getAll();
+        } catch (IOException e) {
+            retry();
+            return;
+        }
+
+        for (Enrollment enrollment : all) {
+            if (inFlight.size() >= maxConcurrentUpdates) {
+                // continues when one of them finishes
+                return;
+            }
+            final String id = enrollment.getId();
+            if (!token.equals(enrollment.getNotificationToken())
+                    && !inFlight.contains(id)
+                    && !retryLater.contains(id)
+                    && !rejected.contains(id)) {
+                update(StoredEnrollment.copyOf(enrollment), token);
+            }
+        }
+
+        if (!inFlight.isEmpty()) {
+            return;
+        }
+        if (!retryLater.isEmpty()) {
+            retry();
+        } else {
+            // every enrollment has the token, or the server refused it
+            token = null;
+            retryDelayMillis = 0;
+            rejected.clear();
+            delete();
+        }
+    }
+
+    private void update(final StoredEnrollment enrollment, final String token) {
+        final GuardianAPIRequest<Map<String, Object>> request;
+        try {
+            request = apiClient
+                    .device(enrollment.getId(), enrollment.getUserId(), enrollment.getSigningKey())
+                    .update(null, null, token);
+        } catch (RuntimeException e) {
+            // the key is not valid, it will never be possible to update it
+            rejected.add(enrollment.getId());
+            return;
+        }
+
+        inFlight.add(enrollment.getId());
+        request.start(new Callback<Map<String, Object>>() {
+            @Override
+            public void onSuccess(Map<String, Object> response) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onUpdated(enrollment, token);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final Throwable exception) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFailed(enrollment, token, exception);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onUpdated(StoredEnrollment enrollment, String updatedToken) {
+        inFlight.remove(enrollment.getId());
+        try {
+            // also when the token changed in the meantime, the store must match the server
+            enrollments.replace(enrollment.withNotificationToken(updatedToken));
+        } catch (IOException e) {
+            // updating the server again is harmless
+            if (updatedToken.equals(token)) {
+                retryLater.add(enrollment.getId());
+            }
+        }
+        continueRotation();
+    }
+
+    private void onFailed(StoredEnrollment enrollment, String failedToken, Throwable exception) {
+        inFlight.remove(enrollment.getId());
+        if (failedToken.equals(token)) {
+            if (exception instanceof GuardianException && !((GuardianException) exception).isRetryable()) {
+                rejected.add(enrollment.getId());
+            } else {
+                retryLater.add(enrollment.getId());
+            }
+        }
+        continueRotation();
+    }
+
+    private void continueRotation() {
+        // when a run is scheduled (the token changed or it's waiting to retry) it continues then
+        if (nextRun == null) {
+            rotate();
+        }
+    }
+
+    private void retry() {
+        retryDelayMillis = retryDelayMillis == 0
+                ? MIN_RETRY_DELAY_MILLIS
+                : Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+        schedule(retryDelayMillis);
+    }
+
+    /**
+     * Replaces the scheduled run
+     *
+     * @param delayMillis the delay of the next run, or -1 to not schedule any
+     */
+    private void schedule(long delayMillis) {
+        if (nextRun != null) {
+            nextRun.cancel(false);
+            nextRun = null;
+        }
+        if (delayMillis >= 0) {
+            nextRun = executor.schedule(scheduledRun, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void post(Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            // shut down, resume() will continue the rotation
+        }
+    }
+
+    // PROGRESS FILE, just the token that is being rotated
+
+    @Nullable
+    private String load() {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                final byte[] content = new byte[(int) file.length()];
+                int read = 0;
+                while (read < content.length) {
+                    final int count = in.read(content, read, content.length - read);
+                    if (count < 0) {
+                        break;
+                    }
+                    read += count;
+                }
+                return read > 0 ? new String(content, 0, read, UTF_8) : null;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void save(String token) {
+        final File tmp = new File(file.getPath() + ".tmp");
+        try {
+            final FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(token.getBytes(UTF_8));
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            // the rotation still happens, it just can't be resumed
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    private void delete() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
@@ -1,6 +1,9 @@
 package com.auth0.android.guardian.sdk;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonPrimitive;
 
 import java.util.List;
 import java.util.Map;
@@ -29,6 +32,67 @@ public interface RichConsentRequestedDetails {
      */
     List<Map<String, Object>> getAuthorizationDetails();
 
+    /**
+     * Number of Rich Authorization Details items in the consent record.
+     *
+     * @return the amount of items, or 0 if the consent record did not include authorization details
+     */
+    default int getAuthorizationDetailsCount() {
+        List<Map<String, Object>> details = getAuthorizationDetails();
+        return details == null ? 0 : details.size();
+    }
+
+    /**
+     * Reads a string value from a Rich Authorization Details item without converting the whole item.
+     * The default implementation reads it from the item returned by {@link #getAuthorizationDetails()}.
+     *
+     * @param index the position of the item in the authorization details list
+     * @param path  a JSON Pointer (<a href="https://datatracker.ietf.org/doc/html/rfc6901">RFC 6901</a>)
+     *              relative to the item, for example {@code /instructedAmount/amount}
+     * @return the value as a string, or null if the path does not resolve to a primitive value
+     * @throws IndexOutOfBoundsException when the index is not valid
+     */
+    @Nullable
+    default String getString(int index, @NonNull String path) {
+        JsonPrimitive value = GuardianRichConsentRequestedDetails.resolvePrimitive(
+                getAuthorizationDetails(), index, path);
+        return value != null ? value.getAsString() : null;
+    }
+
+    /**
+     * Reads a numeric value from a Rich Authorization Details item without converting the whole item.
+     * The default implementation reads it from the item returned by {@link #getAuthorizationDetails()}.
+     *
+     * @param index the position of the item in the authorization details list
+     * @param path  a JSON Pointer (<a href="https://datatracker.ietf.org/doc/html/rfc6901">RFC 6901</a>)
+     *              relative to the item, for example {@code /instructedAmount/amount}
+     * @return the value as a number, or null if the path does not resolve to a number
+     * @throws IndexOutOfBoundsException when the index is not valid
+     */
+    @Nullable
+    default Number getNumber(int index, @NonNull String path) {
+        JsonPrimitive value = GuardianRichConsentRequestedDetails.resolvePrimitive(
+                getAuthorizationDetails(), index, path);
+        return value != null && value.isNumber() ? value.getAsNumber() : null;
+    }
+
+    /**
+     * Reads a boolean value from a Rich Authorization Details item without converting the whole item.
+     * The default implementation reads it from the item returned by {@link #getAuthorizationDetails()}.
+     *
+     * @param index the position of the item in the authorization details list
+     * @param path  a JSON Pointer (<a href="https://datatracker.ietf.org/doc/html/rfc6901">RFC 6901</a>)
+     *              relative to the item
+     * @return the value as a boolean, or null if the path does not resolve to a boolean
+     * @throws IndexOutOfBoundsException when the index is not valid
+     */
+    @Nullable
+    default Boolean getBoolean(int index, @NonNull String path) {
+        JsonPrimitive value = GuardianRichConsentRequestedDetails.resolvePrimitive(
+                getAuthorizationDetails(), index, path);
+        return value != null && value.isBoolean() ? value.getAsBoolean() : null;
+    }
+
     /**
      * Rich Authorization Details ([RFC 9396](https://datatracker.ietf.org/doc/html/rfc9396)) filtered
      * by the provided type key and converted to the provided class.
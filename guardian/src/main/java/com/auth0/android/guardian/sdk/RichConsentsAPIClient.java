@@ -10,9 +10,7 @@ import androidx.annotation.NonNull;
 import com.auth0.android.guardian.sdk.networking.RequestFactory;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.interfaces.RSAPrivateKey;
@@ -102,9 +100,6 @@ public class RichConsentsAPIClient {
      */
 
     public GuardianAPIRequest<RichConsent> fetch(@NonNull String consentId, @NonNull String transactionToken, PrivateKey privateKey, PublicKey publicKey) {
-        final Type type = new TypeToken<GuardianRichConsent>() {
-        }.getType();
-
         final HttpUrl url = baseUrl.newBuilder()
                 .addPathSegment(consentId)
                 .build();
@@ -117,7 +112,7 @@ public class RichConsentsAPIClient {
         );
 
         return requestFactory
-                .<RichConsent>newRequest("GET", url, type)
+                .<RichConsent>newRequest("GET", url, GuardianRichConsent.class)
                 .setHeader("Auth0-Client", this.clientInfo.toBase64())
                 .setHeader("Authorization", "MFA-DPoP ".concat(transactionToken))
                 .setHeader("MFA-DPoP", dpopAssertion);
@@ -0,0 +1,122 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the notifications received recently, so that the copies of a push delivered more
+ * than once can be recognized without any network request.
+ * <p>
+ * A notification is identified by its enrollment id, challenge and transaction token. Entries
+ * expire after a fixed time, and the oldest one is evicted when the maximum size is reached.
+ */
+final class SeenNotifications {
+
+    static final int DEFAULT_MAX_SIZE = 128;
+    // longer than a transaction can stay pending, so every copy of a push is recognized
+    static final long DEFAULT_EXPIRATION_MILLIS = 10 * 60 * 1000;
+
+    private final int maxSize;
+    private final long expirationMillis;
+    private final ServerClock.DeviceClock clock;
+
+    // in the order they were first seen, guarded by itself
+    private final LinkedHashMap<Key, Long> expirations = new LinkedHashMap<>();
+
+    SeenNotifications(int maxSize, long expirationMillis) {
+        this(maxSize, expirationMillis, new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    SeenNotifications(int maxSize, long expirationMillis, @NonNull ServerClock.DeviceClock clock) {
+        this.maxSize = maxSize;
+        this.expirationMillis = expirationMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Records the notification as seen
+     *
+     * @param notification the notification
+     * @return true if the same notification was already seen and didn't expire yet
+     */
+    boolean markSeen(@NonNull Notification notification) {
+        final Key key = new Key(notification.getEnrollmentId(), notification.getChallenge(),
+                notification.getTransactionToken());
+        final long now = clock.currentTimeMillis();
+        synchronized (expirations) {
+            removeExpired(now);
+            if (expirations.containsKey(key)) {
+                return true;
+            }
+            if (expirations.size() >= maxSize) {
+                final Iterator<Key> eldest = expirations.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            expirations.put(key, now + expirationMillis);
+            return false;
+        }
+    }
+
+    int size() {
+        synchronized (expirations) {
+            return expirations.size();
+        }
+    }
+
+    /**
+     * Entries are in insertion order and share the same lifetime, so the expired ones are always
+     * at the beginning. Must be called holding the lock.
+     */
+    private void removeExpired(long now) {
+        final Iterator<Map.Entry<Key, Long>> iterator = expirations.entrySet().iterator();
+        while (iterator.hasNext() && iterator.next().getValue() <= now) {
+            iterator.remove();
+        }
+    }
+
+    private static class Key {
+        final String enrollmentId;
+        final String challenge;
+        final String transactionToken;
+        final int hash;
+
+        Key(String enrollmentId, String challenge, String transactionToken) {
+            this.enrollmentId = enrollmentId;
+            this.challenge = challenge;
+            this.transactionToken = transactionToken;
+            this.hash = (enrollmentId.hashCode() * 31 + challenge.hashCode()) * 31
+                    + transactionToken.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hash == other.hash
+                    && transactionToken.equals(other.transactionToken)
+                    && challenge.equals(other.challenge)
+                    && enrollmentId.equals(other.enrollmentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
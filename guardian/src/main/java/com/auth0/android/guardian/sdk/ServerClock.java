@@ -0,0 +1,161 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.IOException;
+import java.util.Date;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Keeps the offset between the device clock and the Guardian server clock, so that OTP codes
+ * match the ones expected by the server even when the device clock drifts.
+ * <p>
+ * The offset is learned from the {@code Date} header of the Guardian API responses and smoothed
+ * over several requests. To have it right from the start after the app restarts, store
+ * {@link #getOffsetMillis()} and restore it with {@link #setOffsetMillis(long)}.
+ */
+public class ServerClock {
+
+    // a new sample moves the offset a quarter of the way
+    private static final int SMOOTHING_FACTOR = 4;
+    // bigger differences mean the device clock was changed, so the new sample replaces the offset
+    @VisibleForTesting
+    static final long MAX_SMOOTHED_DIFFERENCE_MILLIS = 30 * 1000;
+    // with longer round trips the sample is too imprecise to be useful
+    @VisibleForTesting
+    static final long MAX_ROUND_TRIP_MILLIS = 10 * 1000;
+    // the Date header has a resolution of one second
+    private static final long DATE_RESOLUTION_MILLIS = 1000;
+    // until the offset is known the device clock may be this much ahead of the server
+    @VisibleForTesting
+    static final long UNKNOWN_OFFSET_MARGIN_MILLIS = 60 * 1000;
+
+    interface DeviceClock {
+        long currentTimeMillis();
+    }
+
+    private final DeviceClock deviceClock;
+    private volatile long offsetMillis;
+    // guarded by this
+    private boolean hasOffset;
+
+    ServerClock() {
+        this(new DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    ServerClock(@NonNull DeviceClock deviceClock) {
+        this.deviceClock = deviceClock;
+    }
+
+    /**
+     * @return the current time of the server, in milliseconds since the epoch
+     */
+    public long currentTimeMillis() {
+        return deviceClock.currentTimeMillis() + offsetMillis;
+    }
+
+    /**
+     * @return how far ahead the server clock is from the device clock, in milliseconds. Negative
+     * when the device clock is ahead.
+     */
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    /**
+     * Whether the offset is known, because it was learned from a response or restored with
+     * {@link #setOffsetMillis(long)}. Until then {@link #currentTimeMillis()} is just the device
+     * time, which can be minutes away from the server time.
+     *
+     * @return true if the offset is known
+     */
+    public synchronized boolean hasOffset() {
+        return hasOffset;
+    }
+
+    /**
+     * Whether a server time already passed. Until the offset is known it's only considered passed
+     * after an extra margin, because the device clock could be ahead of the server.
+     *
+     * @param serverTimeMillis a server time, e.g. an expiration, in milliseconds since the epoch
+     * @return true if the time passed, never for {@link Long#MAX_VALUE}
+     */
+    boolean hasPassed(long serverTimeMillis) {
+        final long margin = hasOffset() ? 0 : UNKNOWN_OFFSET_MARGIN_MILLIS;
+        if (serverTimeMillis > Long.MAX_VALUE - margin) {
+            // adding the margin would overflow, and times this far never pass anyway
+            return false;
+        }
+        return serverTimeMillis + margin <= currentTimeMillis();
+    }
+
+    /**
+     * Sets the offset, usually to restore a value previously obtained with
+     * {@link #getOffsetMillis()}. Later responses keep refining it.
+     *
+     * @param offsetMillis how far ahead the server clock is from the device clock, in milliseconds
+     */
+    public synchronized void setOffsetMillis(long offsetMillis) {
+        this.offsetMillis = offsetMillis;
+        this.hasOffset = true;
+    }
+
+    /**
+     * Adds a sample of the server time
+     *
+     * @param serverDateMillis   the value of the response's Date header
+     * @param sentAtMillis       device time when the request was sent
+     * @param receivedAtMillis   device time when the response was received
+     */
+    synchronized void addSample(long serverDateMillis, long sentAtMillis, long receivedAtMillis) {
+        final long roundTrip = receivedAtMillis - sentAtMillis;
+        if (roundTrip < 0 || roundTrip > MAX_ROUND_TRIP_MILLIS) {
+            return;
+        }
+        // the server time is somewhere in the second after the date, and it was read somewhere
+        // during the round trip, so compare the middle points
+        final long sample = serverDateMillis + DATE_RESOLUTION_MILLIS / 2
+                - (sentAtMillis + roundTrip / 2);
+
+        final long difference = sample - offsetMillis;
+        if (!hasOffset || Math.abs(difference) > MAX_SMOOTHED_DIFFERENCE_MILLIS) {
+            offsetMillis = sample;
+            hasOffset = true;
+        } else {
+            offsetMillis += difference / SMOOTHING_FACTOR;
+        }
+    }
+
+    /**
+     * Samples the Date header of every network response
+     */
+    static class SamplingInterceptor implements Interceptor {
+
+        private final ServerClock clock;
+
+        SamplingInterceptor(@NonNull ServerClock clock) {
+            this.clock = clock;
+        }
+
+        @NonNull
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            Date date = response.headers().getDate("Date");
+            if (date != null) {
+                clock.addSample(date.getTime(),
+                        response.sentRequestAtMillis(), response.receivedResponseAtMillis());
+            }
+            return response;
+        }
+    }
+}
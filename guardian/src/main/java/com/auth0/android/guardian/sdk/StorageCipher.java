@@ -0,0 +1,37 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts the files where the SDK keeps enrollments, which include the private signing key and
+ * the TOTP secret, see {@link EnrollmentStore} and {@link DeviceAccountOutbox}.
+ * <p>
+ * By default they use a {@link KeyStoreStorageCipher}, whose key never leaves the
+ * AndroidKeyStore. Implement this to use a different protection, e.g. a key bound to the user's
+ * authentication.
+ */
+public interface StorageCipher {
+
+    /**
+     * Encrypts the content of a file before it's written
+     *
+     * @param plaintext the content
+     * @return the encrypted content, including anything needed to decrypt it (e.g. the IV)
+     * @throws GeneralSecurityException when it can't be encrypted
+     */
+    @NonNull
+    byte[] encrypt(@NonNull byte[] plaintext) throws GeneralSecurityException;
+
+    /**
+     * Decrypts the content of a file returned by {@link #encrypt(byte[])}
+     *
+     * @param ciphertext the encrypted content
+     * @return the content
+     * @throws GeneralSecurityException when it can't be decrypted, e.g. it was modified or the
+     *                                  key is not the same
+     */
+    @NonNull
+    byte[] decrypt(@NonNull byte[] ciphertext) throws GeneralSecurityException;
+}
@@ -0,0 +1,50 @@
+package com.auth0.android.guardian.sdk;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * The ciphers used by the stores when the app doesn't give one
+ */
+final class StorageCiphers {
+
+    /**
+     * Keeps the content as is
+     */
+    static final StorageCipher NONE = new StorageCipher() {
+        @NonNull
+        @Override
+        public byte[] encrypt(@NonNull byte[] plaintext) {
+            return plaintext;
+        }
+
+        @NonNull
+        @Override
+        public byte[] decrypt(@NonNull byte[] ciphertext) {
+            return ciphertext;
+        }
+    };
+
+    private StorageCiphers() {
+    }
+
+    /**
+     * @return the AndroidKeyStore cipher, shared so the key is generated only once, or
+     * {@link #NONE} before Android 6.0, whose keystore can't keep AES keys
+     */
+    @NonNull
+    static StorageCipher defaultCipher() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return KeyStoreCipher.INSTANCE;
+        }
+        return NONE;
+    }
+
+    // created on first use, only on versions that support it
+    @RequiresApi(Build.VERSION_CODES.M)
+    private static class KeyStoreCipher {
+        static final StorageCipher INSTANCE = new KeyStoreStorageCipher(KeyStoreStorageCipher.DEFAULT_ALIAS);
+    }
+}
@@ -0,0 +1,310 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * An enrollment kept by the {@link EnrollmentStore}. The keys are kept encoded and decoded only
+ * once, the first time they are needed.
+ */
+class StoredEnrollment implements Enrollment {
+
+    private final String id;
+    private final String userId;
+    private final Integer period;
+    private final Integer digits;
+    private final String algorithm;
+    private final String secret;
+    private final String deviceIdentifier;
+    private final String deviceName;
+    private final String notificationToken;
+    private final String deviceToken;
+    // PKCS#8 and X.509 encoded, the public key is empty when it was not stored
+    private final byte[] encodedPrivateKey;
+    private final byte[] encodedPublicKey;
+
+    private volatile PrivateKey privateKey;
+    private volatile PublicKey publicKey;
+
+    private StoredEnrollment(@NonNull String id,
+                             @NonNull String userId,
+                             @Nullable Integer period,
+                             @Nullable Integer digits,
+                             @Nullable String algorithm,
+                             @Nullable String secret,
+                             @NonNull String deviceIdentifier,
+                             @NonNull String deviceName,
+                             @NonNull String notificationToken,
+                             @NonNull String deviceToken,
+                             @NonNull byte[] encodedPrivateKey,
+                             @NonNull byte[] encodedPublicKey) {
+        this.id = id;
+        this.userId = userId;
+        this.period = period;
+        this.digits = digits;
+        this.algorithm = algorithm;
+        this.secret = secret;
+        this.deviceIdentifier = deviceIdentifier;
+        this.deviceName = deviceName;
+        this.notificationToken = notificationToken;
+        this.deviceToken = deviceToken;
+        this.encodedPrivateKey = encodedPrivateKey;
+        this.encodedPublicKey = encodedPublicKey;
+    }
+
+    /**
+     * Copies an enrollment, keeping its (already decoded) keys
+     *
+     * @throws IllegalArgumentException when the signing key can't be exported, e.g. it's kept in
+     *                                  the AndroidKeyStore
+     */
+    @NonNull
+    static StoredEnrollment copyOf(@NonNull Enrollment enrollment) {
+        if (enrollment instanceof StoredEnrollment) {
+            return (StoredEnrollment) enrollment;
+        }
+        final PrivateKey privateKey = enrollment.getSigningKey();
+        final PublicKey publicKey = enrollment.getPublicKey();
+        final byte[] encodedPrivateKey = privateKey.getEncoded();
+        if (encodedPrivateKey == null) {
+            throw new IllegalArgumentException("The signing key of enrollment " + enrollment.getId()
+                    + " can't be stored because it's not exportable (e.g. it's kept in the"
+                    + " AndroidKeyStore)");
+        }
+        // an empty public key is derived from the private one when loaded
+        final byte[] encodedPublicKey = publicKey.getEncoded() != null
+                ? publicKey.getEncoded() : new byte[0];
+        final StoredEnrollment copy = new StoredEnrollment(enrollment.getId(),
+                enrollment.getUserId(), enrollment.getPeriod(), enrollment.getDigits(),
+                enrollment.getAlgorithm(), enrollment.getSecret(),
+                enrollment.getDeviceIdentifier(), enrollment.getDeviceName(),
+                enrollment.getNotificationToken(), enrollment.getDeviceToken(),
+                encodedPrivateKey, encodedPublicKey);
+        copy.privateKey = privateKey;
+        copy.publicKey = publicKey;
+        return copy;
+    }
+
+    /**
+     * Copies this enrollment with a new push notification token, keeping the decoded keys
+     */
+    @NonNull
+    StoredEnrollment withNotificationToken(@NonNull String notificationToken) {
+        final StoredEnrollment copy = new StoredEnrollment(id, userId, period, digits, algorithm,
+                secret, deviceIdentifier, deviceName, notificationToken, deviceToken,
+                encodedPrivateKey, encodedPublicKey);
+        copy.privateKey = privateKey;
+        copy.publicKey = publicKey;
+        return copy;
+    }
+
+    @NonNull
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @NonNull
+    @Override
+    public String getUserId() {
+        return userId;
+    }
+
+    @Nullable
+    @Override
+    public Integer getPeriod() {
+        return period;
+    }
+
+    @Nullable
+    @Override
+    public Integer getDigits() {
+        return digits;
+    }
+
+    @Nullable
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Nullable
+    @Override
+    public String getSecret() {
+        return secret;
+    }
+
+    @NonNull
+    @Override
+    public String getDeviceIdentifier() {
+        return deviceIdentifier;
+    }
+
+    @NonNull
+    @Override
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    @NonNull
+    @Override
+    public String getNotificationToken() {
+        return notificationToken;
+    }
+
+    @NonNull
+    @Override
+    public String getDeviceToken() {
+        return deviceToken;
+    }
+
+    /**
+     * @throws IllegalStateException when the stored key is not a valid RSA private key
+     */
+    @NonNull
+    @Override
+    public PrivateKey getSigningKey() {
+        PrivateKey key = privateKey;
+        if (key == null) {
+            try {
+                key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encodedPrivateKey));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Invalid private key", e);
+            }
+            privateKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * @throws IllegalStateException when the stored key is not a valid RSA public key, or there's
+     *                               no stored public key and it can't be obtained from the private
+     *                               key
+     */
+    @NonNull
+    @Override
+    public PublicKey getPublicKey() {
+        PublicKey key = publicKey;
+        if (key == null) {
+            try {
+                final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+                if (encodedPublicKey.length > 0) {
+                    key = keyFactory.generatePublic(new X509EncodedKeySpec(encodedPublicKey));
+                } else {
+                    key = derivePublicKey(keyFactory, getSigningKey());
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Invalid public key", e);
+            }
+            publicKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Decodes both keys, so that later calls don't have to
+     *
+     * @return false if any of them is invalid
+     */
+    boolean decodeKeys() {
+        try {
+            getSigningKey();
+            getPublicKey();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static PublicKey derivePublicKey(KeyFactory keyFactory, PrivateKey privateKey)
+            throws GeneralSecurityException {
+        if (!(privateKey instanceof RSAPrivateCrtKey)) {
+            throw new IllegalStateException("The public key can't be obtained from the private key");
+        }
+        final RSAPrivateCrtKey crtKey = (RSAPrivateCrtKey) privateKey;
+        return keyFactory.generatePublic(new RSAPublicKeySpec(crtKey.getModulus(), crtKey.getPublicExponent()));
+    }
+
+    // BINARY RECORD, see EnrollmentStore
+
+    void writeTo(@NonNull DataOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeUTF(userId);
+        writeNullableInt(out, period);
+        writeNullableInt(out, digits);
+        writeNullableString(out, algorithm);
+        writeNullableString(out, secret);
+        out.writeUTF(deviceIdentifier);
+        out.writeUTF(deviceName);
+        out.writeUTF(notificationToken);
+        out.writeUTF(deviceToken);
+        out.writeInt(encodedPrivateKey.length);
+        out.write(encodedPrivateKey);
+        out.writeInt(encodedPublicKey.length);
+        out.write(encodedPublicKey);
+    }
+
+    @NonNull
+    static StoredEnrollment readFrom(@NonNull DataInput in) throws IOException {
+        final String id = in.readUTF();
+        final String userId = in.readUTF();
+        final Integer period = readNullableInt(in);
+        final Integer digits = readNullableInt(in);
+        final String algorithm = readNullableString(in);
+        final String secret = readNullableString(in);
+        final String deviceIdentifier = in.readUTF();
+        final String deviceName = in.readUTF();
+        final String notificationToken = in.readUTF();
+        final String deviceToken = in.readUTF();
+        final byte[] encodedPrivateKey = readBytes(in);
+        final byte[] encodedPublicKey = readBytes(in);
+        return new StoredEnrollment(id, userId, period, digits, algorithm, secret,
+                deviceIdentifier, deviceName, notificationToken, deviceToken,
+                encodedPrivateKey, encodedPublicKey);
+    }
+
+    private static void writeNullableInt(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readNullableInt(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        final int length = in.readInt();
+        // RSA keys are a few KB at most
+        if (length < 0 || length > 64 * 1024) {
+            throw new IOException("Invalid key length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
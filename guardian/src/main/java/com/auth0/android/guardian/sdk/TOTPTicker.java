@@ -0,0 +1,255 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the OTP codes of enrollments to the registered listeners, so that several views can
+ * display them without each one running its own timer.
+ * <p>
+ * The ticker wakes up only when something changes for one of its subscriptions: at every period
+ * boundary, when the listener receives the new code, and when the code is about to expire
+ * according to the threshold given on subscription, when the listener receives the same code
+ * again with the remaining time. Codes are obtained from the same cache used by
+ * {@link Guardian#getOTPCode(Enrollment)}, so the code of an enrollment is computed once per
+ * period no matter how many listeners it has.
+ * <p>
+ * Periods follow the server time, see {@link Guardian#getServerClock()}. Listeners are called on
+ * the ticker's thread, never on the main thread.
+ */
+public class TOTPTicker {
+
+    /**
+     * Receives the code of an enrollment
+     */
+    public interface Listener {
+
+        /**
+         * Called when subscribing, when the code changes and when it's about to expire
+         *
+         * @param code            the current OTP code
+         * @param millisRemaining the time until the code changes, in milliseconds
+         */
+        void onCode(@NonNull String code, long millisRemaining);
+    }
+
+    interface Clock {
+        long currentTimeMillis();
+    }
+
+    private static final Clock SERVER_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return Guardian.SERVER_CLOCK.currentTimeMillis();
+        }
+    };
+
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final OTPCodeCache codes;
+    private final Clock clock;
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    // guarded by this
+    private ScheduledFuture<?> nextTick;
+    private boolean shutdown;
+
+    /**
+     * Creates a ticker that runs on its own background thread
+     */
+    public TOTPTicker() {
+        this(Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "Guardian TOTP ticker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true, Guardian.OTP_CODES, SERVER_CLOCK);
+    }
+
+    /**
+     * Creates a ticker that runs on the given executor. The executor is not shut down by
+     * {@link #shutdown()}.
+     *
+     * @param executor the executor used to schedule the wake-ups and call the listeners
+     */
+    public TOTPTicker(@NonNull ScheduledExecutorService executor) {
+        this(executor, false, Guardian.OTP_CODES, SERVER_CLOCK);
+    }
+
+    @VisibleForTesting
+    TOTPTicker(@NonNull ScheduledExecutorService executor, boolean ownsExecutor,
+               @NonNull OTPCodeCache codes, @NonNull Clock clock) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.codes = codes;
+        this.clock = clock;
+    }
+
+    /**
+     * Subscribes a listener to the codes of an enrollment. The listener receives the current code
+     * right away.
+     *
+     * @param enrollment          the enrollment, which must include OTP data
+     * @param aboutToExpireMillis how long before the code changes the listener should be called
+     *                            again with the remaining time, or 0 to only be called when the
+     *                            code changes
+     * @param listener            the listener
+     * @throws IllegalArgumentException when the enrollment doesn't include valid OTP data or the
+     *                                  threshold is negative
+     * @throws IllegalStateException    when the ticker was shut down
+     */
+    public void subscribe(@NonNull Enrollment enrollment, long aboutToExpireMillis,
+                          @NonNull Listener listener) {
+        if (enrollment.getSecret() == null
+                || enrollment.getAlgorithm() == null
+                || enrollment.getDigits() == null
+                || enrollment.getPeriod() == null) {
+            throw new IllegalArgumentException("The enrollment doesn't include OTP data");
+        }
+        if (aboutToExpireMillis < 0) {
+            throw new IllegalArgumentException(
+                    "The about to expire threshold can't be negative (was: " + aboutToExpireMillis + ")");
+        }
+        // fail here rather than on the ticker's thread if the OTP data is not valid
+        codes.getCode(enrollment, clock.currentTimeMillis() / 1000);
+
+        synchronized (this) {
+            if (shutdown) {
+                throw new IllegalStateException("The ticker was shut down");
+            }
+            subscriptions.add(new Subscription(enrollment, aboutToExpireMillis, listener));
+            schedule(0);
+        }
+    }
+
+    /**
+     * Removes every subscription of the listener
+     *
+     * @param listener the listener
+     */
+    public void unsubscribe(@NonNull Listener listener) {
+        synchronized (this) {
+            for (int i = subscriptions.size() - 1; i >= 0; i--) {
+                if (subscriptions.get(i).listener == listener) {
+                    subscriptions.remove(i);
+                }
+            }
+            if (subscriptions.isEmpty()) {
+                schedule(-1);
+            }
+        }
+    }
+
+    /**
+     * Removes all the subscriptions and stops the ticker. If the ticker created its own thread
+     * it's also stopped.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            subscriptions.clear();
+            schedule(-1);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    @VisibleForTesting
+    void tick() {
+        final List<Subscription> notify = new ArrayList<>();
+        final List<String> notifyCodes = new ArrayList<>();
+        final List<Long> notifyRemaining = new ArrayList<>();
+
+        final long now = clock.currentTimeMillis();
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            long nextWakeUp = Long.MAX_VALUE;
+            for (Subscription subscription : subscriptions) {
+                final long periodMillis = subscription.enrollment.getPeriod() * 1000L;
+                final long step = now / periodMillis;
+                final long remaining = periodMillis - now % periodMillis;
+
+                final boolean changed = step != subscription.step;
+                final boolean aboutToExpire = remaining <= subscription.aboutToExpireMillis;
+                if (changed || (aboutToExpire && !subscription.aboutToExpireNotified)) {
+                    subscription.step = step;
+                    subscription.aboutToExpireNotified = aboutToExpire;
+                    notify.add(subscription);
+                    notifyCodes.add(codes.getCode(subscription.enrollment, now / 1000));
+                    notifyRemaining.add(remaining);
+                }
+
+                final long nextEvent = subscription.aboutToExpireNotified
+                        ? now + remaining
+                        : now + remaining - subscription.aboutToExpireMillis;
+                nextWakeUp = Math.min(nextWakeUp, nextEvent);
+            }
+            schedule(subscriptions.isEmpty() ? -1 : nextWakeUp - now);
+        }
+
+        // a failing listener shouldn't prevent the others from receiving their code
+        RuntimeException failure = null;
+        for (int i = 0; i < notify.size(); i++) {
+            try {
+                notify.get(i).listener.onCode(notifyCodes.get(i), notifyRemaining.get(i));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Replaces the pending wake-up, must be called holding the lock
+     *
+     * @param delayMillis the delay of the next wake-up, or -1 to not schedule any
+     */
+    private void schedule(long delayMillis) {
+        if (nextTick != null) {
+            nextTick.cancel(false);
+            nextTick = null;
+        }
+        if (delayMillis >= 0) {
+            nextTick = executor.schedule(tick, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class Subscription {
+        final Enrollment enrollment;
+        final long aboutToExpireMillis;
+        final Listener listener;
+
+        long step = -1;
+        boolean aboutToExpireNotified;
+
+        Subscription(Enrollment enrollment, long aboutToExpireMillis, Listener listener) {
+            this.enrollment = enrollment;
+            this.aboutToExpireMillis = aboutToExpireMillis;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.auth0.android.guardian.sdk;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import okio.ByteString;
+
+/**
+ * Reads the claims of the transaction token ("txtkn") sent in the push notifications.
+ * <p>
+ * The token is only decoded, not verified: the server verifies it anyway, this only allows to
+ * skip the requests that are going to fail because the transaction already expired.
+ */
+final class TransactionTokens {
+
+    /**
+     * Returned when the token doesn't have a (readable) expiration
+     */
+    static final long NO_EXPIRATION = Long.MAX_VALUE;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String EXPIRATION_CLAIM = "exp";
+
+    private TransactionTokens() {
+    }
+
+    /**
+     * Returns the expiration of the transaction token
+     *
+     * @param transactionToken the JWT
+     * @return the expiration time in milliseconds since the epoch, or {@link #NO_EXPIRATION} if
+     * the token is not a JWT or doesn't have a numeric "exp" claim
+     */
+    static long getExpirationMillis(@Nullable String transactionToken) {
+        final String payload = getPayload(transactionToken);
+        if (payload == null) {
+            return NO_EXPIRATION;
+        }
+        try {
+            JsonReader reader = new JsonReader(new StringReader(payload));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (EXPIRATION_CLAIM.equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+                    final double expiration = reader.nextDouble();
+                    return expiration * 1000 < NO_EXPIRATION ? (long) (expiration * 1000) : NO_EXPIRATION;
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // not a JSON object, same as a token without expiration
+        }
+        return NO_EXPIRATION;
+    }
+
+    @Nullable
+    private static String getPayload(@Nullable String jwt) {
+        if (jwt == null) {
+            return null;
+        }
+        final int start = jwt.indexOf('.');
+        final int end = jwt.indexOf('.', start + 1);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        // okio accepts both the standard and the URL safe alphabets, with or without padding
+        final ByteString payload = ByteString.decodeBase64(jwt.substring(start + 1, end));
+        return payload != null ? payload.string(UTF_8) : null;
+    }
+}
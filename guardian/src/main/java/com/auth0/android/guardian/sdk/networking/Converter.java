@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.networking;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * Converts request bodies into JSON and JSON responses into objects.
+ * <p>
+ * Implement this interface to plug a different JSON library into the networking layer, for
+ * example one that is already shared by the rest of the app. The SDK uses {@link GsonConverter}
+ * by default.
+ */
+public interface Converter {
+
+    /**
+     * Serializes the request body into its JSON representation, writing it straight into the
+     * given writer
+     *
+     * @param body   the object to serialize
+     * @param writer the writer that receives the JSON
+     * @throws IOException when writing fails
+     */
+    void serialize(@NonNull Object body, @NonNull Writer writer) throws IOException;
+
+    /**
+     * Parses a JSON response into an object of the requested type
+     *
+     * @param typeOfT the type of the expected object
+     * @param reader  the reader of the JSON response
+     * @param <T>     the type of the expected object
+     * @return the parsed object
+     */
+    <T> T parse(@NonNull Type typeOfT, @NonNull Reader reader);
+}
@@ -27,21 +27,30 @@ import androidx.annotation.NonNull;
 import com.google.gson.Gson;
 
 import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
 
-class GsonConverter {
+/**
+ * A {@link Converter} backed by {@link Gson}.
+ * <p>
+ * Any type adapter registered in the given instance will be used, so models that have one never go
+ * through Gson's reflective deserialization.
+ */
+public class GsonConverter implements Converter {
 
     private final Gson gson;
 
-    GsonConverter(@NonNull Gson gson) {
+    public GsonConverter(@NonNull Gson gson) {
         this.gson = gson;
     }
 
-    String serialize(@NonNull Object body) {
-        return gson.toJson(body);
+    @Override
+    public void serialize(@NonNull Object body, @NonNull Writer writer) {
+        gson.toJson(body, writer);
     }
 
-    <T> T parse(@NonNull Type typeOfT, @NonNull Reader reader) {
+    @Override
+    public <T> T parse(@NonNull Type typeOfT, @NonNull Reader reader) {
         return gson.fromJson(reader, typeOfT);
     }
 }
@@ -32,34 +32,37 @@ import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 import java.io.Reader;
 import java.lang.reflect.Type;
-import java.util.HashMap;
 import java.util.Map;
 
 import okhttp3.Call;
 import okhttp3.HttpUrl;
-import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
 
 public class Request<T> implements GuardianAPIRequest<T> {
 
-    private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+    private static final long MAX_DRAIN_BYTES = 8 * 1024;
+    private static final long MAX_ERROR_BODY_BYTES = 64 * 1024;
+    private static final Type ERROR_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
 
-    private final GsonConverter converter;
+    private final Converter converter;
     private final OkHttpClient client;
     private final Type typeOfT;
     private final HttpUrl url;
     private final String method;
 
     private Object body;
-    private final Map<String, String> headers;
-    private final Map<String, Object> bodyParameters;
-    private final Map<String, String> queryParameters;
+    private RequestBody encodedBody;
+    private final CompactMap<String> headers;
+    private final CompactMap<Object> bodyParameters;
+    private final CompactMap<String> queryParameters;
 
     Request(@NonNull String method,
             @NonNull HttpUrl url,
-            @NonNull GsonConverter converter,
+            @NonNull Converter converter,
             @NonNull OkHttpClient client,
             @NonNull Type typeOfT) {
         this.method = method;
@@ -68,9 +71,9 @@ public class Request<T> implements GuardianAPIRequest<T> {
         this.client = client;
         this.typeOfT = typeOfT;
 
-        this.headers = new HashMap<>();
-        this.bodyParameters = new HashMap<>();
-        this.queryParameters = new HashMap<>();
+        this.headers = new CompactMap<>();
+        this.bodyParameters = new CompactMap<>();
+        this.queryParameters = new CompactMap<>();
     }
 
     public Request<T> setParameter(@NonNull String name, @Nullable Object value) throws IllegalArgumentException {
@@ -82,6 +85,7 @@ public class Request<T> implements GuardianAPIRequest<T> {
         } else {
             bodyParameters.remove(name);
         }
+        encodedBody = null;
         return this;
     }
 
@@ -107,37 +111,45 @@ public class Request<T> implements GuardianAPIRequest<T> {
         return setHeader("Authorization", "Bearer " + token);
     }
 
+    /**
+     * Sets the object sent as the JSON body. The object is encoded the first time the request is
+     * executed, and the same bytes are sent by any later execution, so changes made to it after
+     * that are not sent. Call this method again to send the changes.
+     *
+     * @param body the object to send
+     * @return this request
+     */
     public Request<T> setBody(@NonNull Object body) {
         this.body = body;
+        this.encodedBody = null;
         return this;
     }
 
     @Override
     public T execute() throws IOException {
-        Response response = buildCall().execute();
-        if (response.isSuccessful()) {
-            return payloadFromResponse(response);
-        }
-
-        throw exceptionFromErrorResponse(response);
+        return handleResponse(buildCall().execute());
     }
 
     @Override
     public void start(@NonNull final Callback<T> callback) {
-        buildCall().enqueue(new okhttp3.Callback() {
+        final Call call;
+        try {
+            call = buildCall();
+        } catch (IOException exception) {
+            callback.onFailure(exception);
+            return;
+        }
+        call.enqueue(new okhttp3.Callback() {
             @Override
             public void onResponse(Call call, Response response) {
+                final T data;
                 try {
-                    if (response.isSuccessful()) {
-                        final T data = payloadFromResponse(response);
-                        callback.onSuccess(data);
-                    } else {
-                        GuardianException exception = exceptionFromErrorResponse(response);
-                        callback.onFailure(exception);
-                    }
+                    data = handleResponse(response);
                 } catch (GuardianException exception) {
                     callback.onFailure(exception);
+                    return;
                 }
+                callback.onSuccess(data);
             }
 
             @Override
@@ -147,35 +159,55 @@ public class Request<T> implements GuardianAPIRequest<T> {
         });
     }
 
-    private Call buildCall() {
-        HttpUrl.Builder urlBuilder = url.newBuilder();
-
-        for (Map.Entry<String, String> entry : queryParameters.entrySet()) {
-            urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
+    private Call buildCall() throws IOException {
+        HttpUrl requestUrl = url;
+        if (!queryParameters.isEmpty()) {
+            HttpUrl.Builder urlBuilder = url.newBuilder();
+            for (int i = 0; i < queryParameters.size(); i++) {
+                urlBuilder.addQueryParameter(queryParameters.keyAt(i), queryParameters.valueAt(i));
+            }
+            requestUrl = urlBuilder.build();
         }
 
         okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder()
-                .url(urlBuilder.build());
+                .url(requestUrl);
 
         if (body == null && bodyParameters.isEmpty()) {
             requestBuilder.method(method, null);
-        } else if (body != null) {
-            requestBuilder.method(method, RequestBody.create(MEDIA_TYPE, converter.serialize(body)));
         } else {
-            requestBuilder.method(method, RequestBody.create(MEDIA_TYPE, converter.serialize(bodyParameters)));
+            if (encodedBody == null) {
+                encodedBody = JsonRequestBody.encode(converter, body != null ? body : bodyParameters);
+            }
+            requestBuilder.method(method, encodedBody);
         }
 
-        for (Map.Entry<String, String> entry : headers.entrySet()) {
-            requestBuilder.addHeader(entry.getKey(), entry.getValue());
+        for (int i = 0; i < headers.size(); i++) {
+            requestBuilder.addHeader(headers.keyAt(i), headers.valueAt(i));
         }
 
         return client.newCall(requestBuilder.build());
     }
 
+    /**
+     * Parses the response and always closes it. Small bodies are read to the end before closing so
+     * the connection goes back to the pool and can be reused by the next request.
+     */
+    private T handleResponse(Response response) throws GuardianException {
+        try {
+            if (response.isSuccessful()) {
+                return payloadFromResponse(response);
+            }
+            throw exceptionFromErrorResponse(response);
+        } finally {
+            drain(response);
+            response.close();
+        }
+    }
+
     private T payloadFromResponse(Response response) throws GuardianException {
+        if (typeOfT == Void.class) return null;
         try {
             final Reader reader = response.body().charStream();
-            if (typeOfT == Void.class) return null;
             return converter.parse(typeOfT, reader);
         } catch (Exception e) {
             throw new GuardianException("Error parsing server response", e);
@@ -184,12 +216,30 @@ public class Request<T> implements GuardianAPIRequest<T> {
 
     private GuardianException exceptionFromErrorResponse(Response response) {
         try {
+            final BufferedSource source = response.body().source();
+            if (source.request(MAX_ERROR_BODY_BYTES + 1)) {
+                return new GuardianException("Server error response is too large", response.code(), null);
+            }
             final Reader reader = response.body().charStream();
-            Type type = new TypeToken<Map<String, Object>>() {}.getType();
-            Map<String, Object> error = converter.parse(type, reader);
+            Map<String, Object> error = converter.parse(ERROR_TYPE, reader);
             return new GuardianException(error, response.code());
         } catch (Exception e) {
             return new GuardianException("Error parsing server error response", response.code(), e);
         }
     }
+
+    private static void drain(Response response) {
+        final ResponseBody body = response.body();
+        if (body == null) {
+            return;
+        }
+        try {
+            final BufferedSource source = body.source();
+            if (!source.request(MAX_DRAIN_BYTES + 1)) {
+                source.skip(source.getBuffer().size());
+            }
+        } catch (Exception ignored) {
+            // the body was already consumed or the connection failed, closing is enough
+        }
+    }
 }
@@ -33,11 +33,15 @@ import okhttp3.OkHttpClient;
 
 public class RequestFactory {
 
-    private final GsonConverter converter;
+    private final Converter converter;
     private final OkHttpClient client;
 
     public RequestFactory(@NonNull Gson gson, @NonNull OkHttpClient client) {
-        this.converter = new GsonConverter(gson);
+        this(new GsonConverter(gson), client);
+    }
+
+    public RequestFactory(@NonNull Converter converter, @NonNull OkHttpClient client) {
+        this.converter = converter;
         this.client = client;
     }
 
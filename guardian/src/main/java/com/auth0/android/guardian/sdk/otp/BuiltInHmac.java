@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.otp;
+
+/**
+ * {@link Hmac} implemented in Java for SHA-1, SHA-256 and SHA-512, as described in RFC 2104 and
+ * FIPS 180-4.
+ * <p>
+ * It doesn't go through the security providers, so creating an instance is cheap, and the hash
+ * state after the inner and outer padded keys is computed once per key. The HMAC of a message that
+ * fits in a single block, like a HOTP counter, costs just two runs of the compression function.
+ */
+abstract class BuiltInHmac extends Hmac {
+
+    private static final int INNER = 0;
+    private static final int OUTER = 1;
+
+    private final int blockLength;
+    private final int macLength;
+    // bytes used to encode the message length in the last block
+    private final int lengthBytes;
+
+    final byte[] block;
+
+    BuiltInHmac(int blockLength, int macLength, int lengthBytes) {
+        this.blockLength = blockLength;
+        this.macLength = macLength;
+        this.lengthBytes = lengthBytes;
+        this.block = new byte[blockLength];
+    }
+
+    /**
+     * Creates an instance for the given algorithm and key
+     *
+     * @param algorithm one of sha1, sha256 or sha512 (case insensitive)
+     * @param secret    the key
+     * @return the instance, or null if the algorithm is not supported
+     * @throws IllegalArgumentException when the key is null or empty
+     */
+    static BuiltInHmac create(String algorithm, byte[] secret) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("The key/secret is not valid");
+        }
+        final BuiltInHmac hmac;
+        switch (algorithm.toLowerCase()) {
+            case "sha1":
+                hmac = new Sha1();
+                break;
+            case "sha256":
+                hmac = new Sha256();
+                break;
+            case "sha512":
+                hmac = new Sha512();
+                break;
+            default:
+                return null;
+        }
+        hmac.setKey(secret);
+        return hmac;
+    }
+
+    /**
+     * Sets the working state to the initial hash value
+     */
+    abstract void reset();
+
+    /**
+     * Processes {@link #block} updating the working state
+     */
+    abstract void compress();
+
+    /**
+     * Stores the working state in the given slot
+     */
+    abstract void saveState(int slot);
+
+    /**
+     * Sets the working state to the one stored in the given slot
+     */
+    abstract void restoreState(int slot);
+
+    /**
+     * Writes the working state as the big endian hash value
+     */
+    abstract void writeState(byte[] out);
+
+    /**
+     * Copies the stored states into another instance of the same algorithm
+     */
+    abstract void copyStatesTo(BuiltInHmac other);
+
+    abstract BuiltInHmac newInstance();
+
+    @Override
+    int getMacLength() {
+        return macLength;
+    }
+
+    @Override
+    void compute(byte[] message, byte[] out) {
+        restoreState(INNER);
+        update(message, blockLength + message.length);
+        writeState(out);
+
+        restoreState(OUTER);
+        // the inner hash is copied into the block before the buffer is overwritten
+        update(out, macLength, blockLength + macLength);
+        writeState(out);
+    }
+
+    @Override
+    Hmac copy() {
+        BuiltInHmac copy = newInstance();
+        copyStatesTo(copy);
+        return copy;
+    }
+
+    private void setKey(byte[] secret) {
+        byte[] key = secret;
+        if (key.length > blockLength) {
+            key = new byte[macLength];
+            reset();
+            update(secret, secret.length);
+            writeState(key);
+        }
+
+        for (int i = 0; i < blockLength; i++) {
+            block[i] = (byte) ((i < key.length ? key[i] : 0) ^ 0x36);
+        }
+        reset();
+        compress();
+        saveState(INNER);
+
+        for (int i = 0; i < blockLength; i++) {
+            block[i] = (byte) ((i < key.length ? key[i] : 0) ^ 0x5c);
+        }
+        reset();
+        compress();
+        saveState(OUTER);
+    }
+
+    private void update(byte[] data, long totalLength) {
+        update(data, data.length, totalLength);
+    }
+
+    /**
+     * Processes the last part of a message, including the padding
+     *
+     * @param data        the remaining data of the message
+     * @param length      the amount of bytes of data to process
+     * @param totalLength the length of the whole message in bytes, including the parts that were
+     *                    already processed
+     */
+    private void update(byte[] data, int length, long totalLength) {
+        int offset = 0;
+        while (length - offset >= blockLength) {
+            System.arraycopy(data, offset, block, 0, blockLength);
+            compress();
+            offset += blockLength;
+        }
+
+        int remaining = length - offset;
+        System.arraycopy(data, offset, block, 0, remaining);
+        block[remaining] = (byte) 0x80;
+        if (remaining + 1 > blockLength - lengthBytes) {
+            fill(remaining + 1, blockLength);
+            compress();
+            fill(0, blockLength - 8);
+        } else {
+            fill(remaining + 1, blockLength - 8);
+        }
+
+        long bits = totalLength << 3;
+        for (int i = blockLength - 1; i >= blockLength - 8; i--) {
+            block[i] = (byte) bits;
+            bits >>>= 8;
+        }
+        compress();
+    }
+
+    private void fill(int from, int to) {
+        for (int i = from; i < to; i++) {
+            block[i] = 0;
+        }
+    }
+
+    static class Sha1 extends BuiltInHmac {
+
+        private final int[] state = new int[5];
+        private final int[] w = new int[80];
+        private final int[][] saved = new int[2][5];
+
+        Sha1() {
+            super(64, 20, 8);
+        }
+
+        @Override
+        void reset() {
+            state[0] = 0x67452301;
+            state[1] = 0xefcdab89;
+            state[2] = 0x98badcfe;
+            state[3] = 0x10325476;
+            state[4] = 0xc3d2e1f0;
+        }
+
+        @Override
+        void compress() {
+            final int[] w = this.w;
+            for (int t = 0; t < 16; t++) {
+                w[t] = readInt(block, t << 2);
+            }
+            for (int t = 16; t < 80; t++) {
+                w[t] = Integer.rotateLeft(w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16], 1);
+            }
+
+            int a = state[0];
+            int b = state[1];
+            int c = state[2];
+            int d = state[3];
+            int e = state[4];
+            for (int t = 0; t < 80; t++) {
+                final int f;
+                if (t < 20) {
+                    f = ((b & c) | (~b & d)) + 0x5a827999;
+                } else if (t < 40) {
+                    f = (b ^ c ^ d) + 0x6ed9eba1;
+                } else if (t < 60) {
+                    f = ((b & c) | (b & d) | (c & d)) + 0x8f1bbcdc;
+                } else {
+                    f = (b ^ c ^ d) + 0xca62c1d6;
+                }
+                final int temp = Integer.rotateLeft(a, 5) + f + e + w[t];
+                e = d;
+                d = c;
+                c = Integer.rotateLeft(b, 30);
+                b = a;
+                a = temp;
+            }
+            state[0] += a;
+            state[1] += b;
+            state[2] += c;
+            state[3] += d;
+            state[4] += e;
+        }
+
+        @Override
+        void saveState(int slot) {
+            System.arraycopy(state, 0, saved[slot], 0, state.length);
+        }
+
+        @Override
+        void restoreState(int slot) {
+            System.arraycopy(saved[slot], 0, state, 0, state.length);
+        }
+
+        @Override
+        void writeState(byte[] out) {
+            for (int i = 0; i < state.length; i++) {
+                writeInt(state[i], out, i << 2);
+            }
+        }
+
+        @Override
+        void copyStatesTo(BuiltInHmac other) {
+            for (int slot = 0; slot < saved.length; slot++) {
+                System.arraycopy(saved[slot], 0, ((Sha1) other).saved[slot], 0, state.length);
+            }
+        }
+
+        @Override
+        BuiltInHmac newInstance() {
+            return new Sha1();
+        }
+    }
+
+    static class Sha256 extends BuiltInHmac {
+
+        private static final int[] IV = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+            0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+        };
+
+        private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+        };
+
+        private final int[] state = new int[8];
+        private final int[] w = new int[64];
+        private final int[][] saved = new int[2][8];
+
+        Sha256() {
+            super(64, 32, 8);
+        }
+
+        @Override
+        void reset() {
+            System.arraycopy(IV, 0, state, 0, state.length);
+        }
+
+        @Override
+        void compress() {
+            final int[] w = this.w;
+            for (int t = 0; t < 16; t++) {
+                w[t] = readInt(block, t << 2);
+            }
+            for (int t = 16; t < 64; t++) {
+                final int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+                final int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+                w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+            }
+
+            int a = state[0];
+            int b = state[1];
+            int c = state[2];
+            int d = state[3];
+            int e = state[4];
+            int f = state[5];
+            int g = state[6];
+            int h = state[7];
+            for (int t = 0; t < 64; t++) {
+                final int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+                final int ch = (e & f) ^ (~e & g);
+                final int temp1 = h + s1 + ch + K[t] + w[t];
+                final int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+                final int maj = (a & b) ^ (a & c) ^ (b & c);
+                final int temp2 = s0 + maj;
+                h = g;
+                g = f;
+                f = e;
+                e = d + temp1;
+                d = c;
+                c = b;
+                b = a;
+                a = temp1 + temp2;
+            }
+            state[0] += a;
+            state[1] += b;
+            state[2] += c;
+            state[3] += d;
+            state[4] += e;
+            state[5] += f;
+            state[6] += g;
+            state[7] += h;
+        }
+
+        @Override
+        void saveState(int slot) {
+            System.arraycopy(state, 0, saved[slot], 0, state.length);
+        }
+
+        @Override
+        void restoreState(int slot) {
+            System.arraycopy(saved[slot], 0, state, 0, state.length);
+        }
+
+        @Override
+        void writeState(byte[] out) {
+            for (int i = 0; i < state.length; i++) {
+                writeInt(state[i], out, i << 2);
+            }
+        }
+
+        @Override
+        void copyStatesTo(BuiltInHmac other) {
+            for (int slot = 0; slot < saved.length; slot++) {
+                System.arraycopy(saved[slot], 0, ((Sha256) other).saved[slot], 0, state.length);
+            }
+        }
+
+        @Override
+        BuiltInHmac newInstance() {
+            return new Sha256();
+        }
+    }
+
+    static class Sha512 extends BuiltInHmac {
+
+        private static final long[] IV = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL,
+            0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL,
+            0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+        };
+
+        private static final long[] K = {
+            0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+            0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+            0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+            0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+            0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+            0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+            0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+            0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+            0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+            0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+            0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+            0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+            0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+            0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+            0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+            0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+            0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+            0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+            0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+            0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+        };
+
+        private final long[] state = new long[8];
+        private final long[] w = new long[80];
+        private final long[][] saved = new long[2][8];
+
+        Sha512() {
+            super(128, 64, 16);
+        }
+
+        @Override
+        void reset() {
+            System.arraycopy(IV, 0, state, 0, state.length);
+        }
+
+        @Override
+        void compress() {
+            final long[] w = this.w;
+            for (int t = 0; t < 16; t++) {
+                w[t] = readLong(block, t << 3);
+            }
+            for (int t = 16; t < 80; t++) {
+                final long s0 = Long.rotateRight(w[t - 15], 1) ^ Long.rotateRight(w[t - 15], 8) ^ (w[t - 15] >>> 7);
+                final long s1 = Long.rotateRight(w[t - 2], 19) ^ Long.rotateRight(w[t - 2], 61) ^ (w[t - 2] >>> 6);
+                w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+            }
+
+            long a = state[0];
+            long b = state[1];
+            long c = state[2];
+            long d = state[3];
+            long e = state[4];
+            long f = state[5];
+            long g = state[6];
+            long h = state[7];
+            for (int t = 0; t < 80; t++) {
+                final long s1 = Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41);
+                final long ch = (e & f) ^ (~e & g);
+                final long temp1 = h + s1 + ch + K[t] + w[t];
+                final long s0 = Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39);
+                final long maj = (a & b) ^ (a & c) ^ (b & c);
+                final long temp2 = s0 + maj;
+                h = g;
+                g = f;
+                f = e;
+                e = d + temp1;
+                d = c;
+                c = b;
+                b = a;
+                a = temp1 + temp2;
+            }
+            state[0] += a;
+            state[1] += b;
+            state[2] += c;
+            state[3] += d;
+            state[4] += e;
+            state[5] += f;
+            state[6] += g;
+            state[7] += h;
+        }
+
+        @Override
+        void saveState(int slot) {
+            System.arraycopy(state, 0, saved[slot], 0, state.length);
+        }
+
+        @Override
+        void restoreState(int slot) {
+            System.arraycopy(saved[slot], 0, state, 0, state.length);
+        }
+
+        @Override
+        void writeState(byte[] out) {
+            for (int i = 0; i < state.length; i++) {
+                writeInt((int) (state[i] >>> 32), out, i << 3);
+                writeInt((int) state[i], out, (i << 3) + 4);
+            }
+        }
+
+        @Override
+        void copyStatesTo(BuiltInHmac other) {
+            for (int slot = 0; slot < saved.length; slot++) {
+                System.arraycopy(saved[slot], 0, ((Sha512) other).saved[slot], 0, state.length);
+            }
+        }
+
+        @Override
+        BuiltInHmac newInstance() {
+            return new Sha512();
+        }
+    }
+
+    private static int readInt(byte[] in, int offset) {
+        return (in[offset] << 24)
+                | ((in[offset + 1] & 0xff) << 16)
+                | ((in[offset + 2] & 0xff) << 8)
+                | (in[offset + 3] & 0xff);
+    }
+
+    private static long readLong(byte[] in, int offset) {
+        return ((long) readInt(in, offset) << 32) | (readInt(in, offset + 4) & 0xffffffffL);
+    }
+
+    private static void writeInt(int value, byte[] out, int offset) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+}
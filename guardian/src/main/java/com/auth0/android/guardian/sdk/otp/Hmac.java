@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.otp;
+
+/**
+ * Computes the HMAC of a message with a fixed key.
+ * <p>
+ * Instances are not thread-safe, use {@link #copy()} to get an independent instance with the same
+ * key for another thread.
+ */
+abstract class Hmac {
+
+    /**
+     * @return the length of the MAC in bytes
+     */
+    abstract int getMacLength();
+
+    /**
+     * Computes the HMAC of the message
+     *
+     * @param message the message
+     * @param out     the buffer that receives the MAC, of at least {@link #getMacLength()} bytes
+     */
+    abstract void compute(byte[] message, byte[] out);
+
+    /**
+     * @return a new instance with the same algorithm and key
+     */
+    abstract Hmac copy();
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.otp;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link Hmac} backed by a {@link Mac} from the installed security providers
+ */
+class JceHmac extends Hmac {
+
+    private final Mac mac;
+    private final SecretKeySpec key;
+
+    private JceHmac(Mac mac, SecretKeySpec key) {
+        this.mac = mac;
+        this.key = key;
+    }
+
+    /**
+     * Creates an instance for the given JCE algorithm name and key
+     *
+     * @param algorithm the JCE algorithm name, e.g. HmacSHA1
+     * @param secret    the key
+     * @return the initialized instance
+     * @throws NoSuchAlgorithmException when no provider supports the algorithm
+     * @throws InvalidKeyException      when the key is not valid
+     */
+    static JceHmac create(String algorithm, byte[] secret)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        Mac mac = Mac.getInstance(algorithm);
+        SecretKeySpec key = new SecretKeySpec(secret, "RAW");
+        mac.init(key);
+        return new JceHmac(mac, key);
+    }
+
+    @Override
+    int getMacLength() {
+        return mac.getMacLength();
+    }
+
+    @Override
+    void compute(byte[] message, byte[] out) {
+        mac.update(message);
+        try {
+            mac.doFinal(out, 0);
+        } catch (ShortBufferException e) {
+            // callers size the buffer with the mac length, so this can't happen
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    Hmac copy() {
+        try {
+            return new JceHmac((Mac) mac.clone(), key);
+        } catch (CloneNotSupportedException e) {
+            // the provider doesn't support cloning, initialize a new instance with the same key
+            try {
+                Mac copy = Mac.getInstance(mac.getAlgorithm(), mac.getProvider());
+                copy.init(key);
+                return new JceHmac(copy, key);
+            } catch (NoSuchAlgorithmException | InvalidKeyException e1) {
+                throw new IllegalStateException("Unable to create a new " + mac.getAlgorithm() + " instance", e1);
+            }
+        }
+    }
+}
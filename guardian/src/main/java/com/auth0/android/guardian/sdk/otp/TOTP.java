@@ -22,11 +22,12 @@
 
 package com.auth0.android.guardian.sdk.otp;
 
+import androidx.annotation.NonNull;
+
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 /**
  * This class generates One-Time-Passwords following the TOTP algorithm. It is an extension of the
@@ -34,6 +35,12 @@ import javax.crypto.spec.SecretKeySpec;
  * <p>
  * The supported crypto algorithms are 'sha1', 'sha256' and 'sha512'.
  * <p>
+ * The HMAC is computed with a {@link Mac} from the security providers or, when requested, with the
+ * SDK's own implementation of the supported algorithms, which avoids looking up the providers.
+ * <p>
+ * Instances are thread-safe: every thread computes codes with its own copy of the initialized
+ * HMAC, so sharing a generator between threads doesn't require any locking.
+ * <p>
  * The code is based on the sample implementation provided in the spec.
  * <p>
  * See <a href=https://tools.ietf.org/html/rfc4226>https://tools.ietf.org/html/rfc4226</a> and
@@ -53,7 +60,14 @@ public class TOTP {
     private final int digits;
     private final int period;
     private final SystemClock clock;
-    private final Mac hmac;
+    // initialized once and only used as the template for the per thread instances
+    private final Hmac prototype;
+    private final ThreadLocal<Generator> generators = new ThreadLocal<Generator>() {
+        @Override
+        protected Generator initialValue() {
+            return new Generator(prototype.copy());
+        }
+    };
 
     /**
      * TOTP class constructor
@@ -65,34 +79,36 @@ public class TOTP {
      * @param period    the time period (in seconds) used to obtain the counter value
      */
     public TOTP(String algorithm, byte[] secret, int digits, int period) {
-        this(algorithm, secret, digits, period, new SystemClock());
+        this(algorithm, secret, digits, period, false);
+    }
+
+    /**
+     * TOTP class constructor
+     *
+     * @param algorithm   the crypto algorithm to use.
+     *                    Supported values are 'sha1', 'sha256' and 'sha512'
+     * @param secret      the seed for the crypto algorithm, as a byte array
+     * @param digits      the number of digits that the generated codes should have
+     * @param period      the time period (in seconds) used to obtain the counter value
+     * @param builtInHmac whether to compute the HMAC with the SDK's own implementation instead of
+     *                    a {@link Mac} from the security providers. The first {@link Mac} lookup
+     *                    can be slow on some devices.
+     */
+    public TOTP(String algorithm, byte[] secret, int digits, int period, boolean builtInHmac) {
+        this(algorithm, secret, digits, period, builtInHmac, new SystemClock());
     }
 
     TOTP(String algorithm, byte[] secret, int digits, int period, SystemClock clock) {
-        try {
-            switch (algorithm.toLowerCase()) {
-                case "sha1":
-                    hmac = Mac.getInstance(HMAC_SHA1);
-                    break;
-                case "sha256":
-                    hmac = Mac.getInstance(HMAC_SHA256);
-                    break;
-                case "sha512":
-                    hmac = Mac.getInstance(HMAC_SHA512);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
-            }
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalArgumentException("The specified crypto algorithm is not available", e);
-        }
+        this(algorithm, secret, digits, period, false, clock);
+    }
 
-        try {
-            SecretKeySpec macKey = new SecretKeySpec(secret, "RAW");
-            hmac.init(macKey);
-        } catch (InvalidKeyException e) {
-            throw new IllegalArgumentException("The key/secret is not valid", e);
+    TOTP(String algorithm, byte[] secret, int digits, int period, boolean builtInHmac, SystemClock clock) {
+        Hmac hmac = null;
+        if (builtInHmac) {
+            hmac = BuiltInHmac.create(algorithm, secret);
         }
+        // fall back to the security providers
+        prototype = hmac != null ? hmac : createJceHmac(algorithm, secret);
 
         if (digits >= DIGITS_POWER.length) {
             throw new IllegalArgumentException(
@@ -122,37 +138,147 @@ public class TOTP {
      * @return the OTP code as a string
      */
     public String generate(long eventCount) {
+        char[] code = new char[digits];
+        generate(eventCount, code, 0);
+        return new String(code);
+    }
+
+    /**
+     * Generates the code corresponding to the current date and time, writing its digits into the
+     * given buffer. Unlike {@link #generate()} this does not allocate.
+     *
+     * @param out    the buffer that receives the code
+     * @param offset the position in the buffer where the first digit is written
+     * @return the amount of digits written, i.e. the code length
+     * @throws IndexOutOfBoundsException when the code doesn't fit in the buffer
+     */
+    public int generate(@NonNull char[] out, int offset) {
+        long timeSecs = clock.getCurrentTimeSecs();
+        return generate(timeSecs / period, out, offset);
+    }
+
+    /**
+     * Generates the code for the specified counter value, writing its digits into the given
+     * buffer. Unlike {@link #generate(long)} this does not allocate.
+     *
+     * @param eventCount the counter value
+     * @param out        the buffer that receives the code
+     * @param offset     the position in the buffer where the first digit is written
+     * @return the amount of digits written, i.e. the code length
+     * @throws IndexOutOfBoundsException when the code doesn't fit in the buffer
+     */
+    public int generate(long eventCount, @NonNull char[] out, int offset) {
+        if (offset < 0 || out.length - offset < digits) {
+            throw new IndexOutOfBoundsException(
+                    "A code of " + digits + " digits does not fit at offset " + offset);
+        }
+
+        writeCode(generators.get(), eventCount, out, offset);
+        return digits;
+    }
+
+    /**
+     * Generates the codes for {@code count} consecutive counter values starting at
+     * {@code startStep}, writing them one after the other into the given buffer. The code for
+     * {@code startStep + i} starts at position {@code i * digits}.
+     * <p>
+     * Useful to compute a window of codes (e.g. the previous, current and next ones) in a single
+     * pass and without allocating.
+     *
+     * @param startStep the counter value of the first code
+     * @param count     the amount of consecutive codes to generate
+     * @param out       the buffer that receives the codes, of at least {@code count * digits} chars
+     * @return the amount of chars written
+     * @throws IllegalArgumentException  when count is negative
+     * @throws IndexOutOfBoundsException when the codes don't fit in the buffer
+     */
+    public int generate(long startStep, int count, @NonNull char[] out) {
+        if (count < 0) {
+            throw new IllegalArgumentException("The amount of codes can't be negative (was: " + count + ")");
+        }
+        final long length = (long) count * digits;
+        if (out.length < length) {
+            throw new IndexOutOfBoundsException(
+                    count + " codes of " + digits + " digits do not fit in a buffer of " + out.length);
+        }
+
+        final Generator generator = generators.get();
+        for (int i = 0; i < count; i++) {
+            writeCode(generator, startStep + i, out, i * digits);
+        }
+        return (int) length;
+    }
+
+    private void writeCode(Generator generator, long eventCount, char[] out, int offset) {
+        final byte[] counter = generator.counter;
+        final byte[] hash = generator.hash;
+
         // convert to byte array
         long movingFactor = eventCount;
-        byte[] counter = new byte[8]; // 64 bits
         for (int i = counter.length - 1; i >= 0; i--) {
             counter[i] = (byte) (movingFactor & 0xff);
             movingFactor >>= 8;
         }
 
-        // This method uses the JCE to provide the crypto.
         // HMAC computes a Hashed Message Authentication Code with the crypto hash as a parameter.
-        byte[] hash = hmac.doFinal(counter);
+        generator.hmac.compute(counter, hash);
 
         // put selected bytes into result int
-        int offset = hash[hash.length - 1] & 0xf;
+        int offsetInHash = hash[hash.length - 1] & 0xf;
 
         int binary =
-                ((hash[offset] & 0x7f) << 24) |
-                        ((hash[offset + 1] & 0xff) << 16) |
-                        ((hash[offset + 2] & 0xff) << 8) |
-                        (hash[offset + 3] & 0xff);
+                ((hash[offsetInHash] & 0x7f) << 24) |
+                        ((hash[offsetInHash + 1] & 0xff) << 16) |
+                        ((hash[offsetInHash + 2] & 0xff) << 8) |
+                        (hash[offsetInHash + 3] & 0xff);
 
         int otp = binary % DIGITS_POWER[digits];
 
-        String result = Integer.toString(otp);
+        // write the digits from the last one, padding with zeros to complete code length
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + otp % 10);
+            otp /= 10;
+        }
+    }
+
+    private static Hmac createJceHmac(String algorithm, byte[] secret) {
+        final String jceAlgorithm;
+        switch (algorithm.toLowerCase()) {
+            case "sha1":
+                jceAlgorithm = HMAC_SHA1;
+                break;
+            case "sha256":
+                jceAlgorithm = HMAC_SHA256;
+                break;
+            case "sha512":
+                jceAlgorithm = HMAC_SHA512;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+        }
 
-        // padding with zeros to complete code length
-        while (result.length() < digits) {
-            result = "0" + result;
+        try {
+            return JceHmac.create(jceAlgorithm, secret);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("The specified crypto algorithm is not available", e);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("The key/secret is not valid", e);
         }
+    }
 
-        return result;
+    /**
+     * The state used by a single thread to compute codes: its own HMAC and the buffers reused on
+     * every call so that generating a code does not allocate.
+     */
+    private static class Generator {
+        final Hmac hmac;
+        final byte[] counter = new byte[8]; // 64 bits
+        final byte[] hash;
+
+        Generator(Hmac hmac) {
+            this.hmac = hmac;
+            this.hash = new byte[hmac.getMacLength()];
+        }
     }
 
     static class SystemClock {
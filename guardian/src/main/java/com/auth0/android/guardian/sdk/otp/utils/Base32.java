@@ -18,8 +18,7 @@
 
 package com.auth0.android.guardian.sdk.otp.utils;
 
-import java.util.HashMap;
-import java.util.Locale;
+import java.util.Arrays;
 
 /**
  * Encodes arbitrary byte arrays as case-insensitive base-32 strings.
@@ -30,6 +29,9 @@ import java.util.Locale;
  * byte array, for example, string of sixteen 7s ("7...7") and seventeen 7s both
  * decode to the same byte array.
  * TODO(sarvar): Revisit this encoding and whether this ambiguity needs fixing.
+ * <p>
+ * When decoding, whitespace and separators ('-') are ignored wherever they are, and the
+ * trailing padding ('=') is optional.
  *
  * @author sweis@google.com (Steve Weis)
  * @author Neal Gafter
@@ -44,12 +46,18 @@ public class Base32 {
         return INSTANCE;
     }
 
+    // values of the lookup table that are not digits
+    private static final byte INVALID = -1;
+    private static final byte SKIP = -2;
+    private static final byte PADDING = -3;
+
     // 32 alpha-numeric characters.
     private String ALPHABET;
     private char[] DIGITS;
     private int MASK;
     private int SHIFT;
-    private HashMap<Character, Integer> CHAR_MAP;
+    // the value of every ASCII char, either a digit (in both cases) or one of the values above
+    private byte[] LOOKUP;
 
     static final String SEPARATOR = "-";
 
@@ -58,9 +66,16 @@ public class Base32 {
         DIGITS = ALPHABET.toCharArray();
         MASK = DIGITS.length - 1;
         SHIFT = Integer.numberOfTrailingZeros(DIGITS.length);
-        CHAR_MAP = new HashMap<Character, Integer>();
+        LOOKUP = new byte[128];
+        Arrays.fill(LOOKUP, INVALID);
+        for (char c = 0; c <= ' '; c++) {
+            LOOKUP[c] = SKIP;
+        }
+        LOOKUP[SEPARATOR.charAt(0)] = SKIP;
+        LOOKUP['='] = PADDING;
         for (int i = 0; i < DIGITS.length; i++) {
-            CHAR_MAP.put(DIGITS[i], i);
+            LOOKUP[Character.toUpperCase(DIGITS[i])] = (byte) i;
+            LOOKUP[Character.toLowerCase(DIGITS[i])] = (byte) i;
         }
     }
 
@@ -68,44 +83,70 @@ public class Base32 {
         return getInstance().decodeInternal(encoded);
     }
 
+    /**
+     * Decodes into the given buffer, without allocating
+     *
+     * @param encoded the base-32 string
+     * @param out     the buffer that receives the decoded bytes
+     * @param offset  the position in the buffer where the first byte is written
+     * @return the amount of bytes written
+     * @throws DecodingException         when the string is not valid base-32
+     * @throws IndexOutOfBoundsException when the decoded bytes don't fit in the buffer
+     */
+    public static int decode(CharSequence encoded, byte[] out, int offset) throws DecodingException {
+        return getInstance().decodeInternal(encoded, out, offset);
+    }
+
     protected byte[] decodeInternal(String encoded) throws DecodingException {
-        // Remove whitespace and separators
-        encoded = encoded.trim().replaceAll(SEPARATOR, "").replaceAll(" ", "");
-
-        // Remove padding. Note: the padding is used as hint to determine how many
-        // bits to decode from the last incomplete chunk (which is commented out
-        // below, so this may have been wrong to start with).
-        encoded = encoded.replaceFirst("[=]*$", "");
-
-        // Canonicalize to all upper case
-        encoded = encoded.toUpperCase(Locale.US);
-        if (encoded.length() == 0) {
-            return new byte[0];
-        }
-        int encodedLength = encoded.length();
-        int outLength = encodedLength * SHIFT / 8;
-        byte[] result = new byte[outLength];
+        // a first pass validates the input and finds the exact length of the result
+        byte[] result = new byte[decodeInternal(encoded, null, 0)];
+        decodeInternal(encoded, result, 0);
+        return result;
+    }
+
+    /**
+     * Decodes the string, or only validates it and returns the decoded length if out is null
+     */
+    protected int decodeInternal(CharSequence encoded, byte[] out, int offset) throws DecodingException {
+        final byte[] lookup = LOOKUP;
+        final int length = encoded.length();
         int buffer = 0;
-        int next = 0;
+        int next = offset;
         int bitsLeft = 0;
-        for (char c : encoded.toCharArray()) {
-            if (!CHAR_MAP.containsKey(c)) {
+        boolean padding = false;
+        for (int i = 0; i < length; i++) {
+            char c = encoded.charAt(i);
+            int value = c < lookup.length ? lookup[c] : INVALID;
+            if (value >= 0 && !padding) {
+                buffer <<= SHIFT;
+                buffer |= value & MASK;
+                bitsLeft += SHIFT;
+                if (bitsLeft >= 8) {
+                    if (out != null) {
+                        if (next >= out.length) {
+                            throw new IndexOutOfBoundsException(
+                                    "The decoded bytes do not fit in a buffer of " + out.length);
+                        }
+                        out[next] = (byte) (buffer >> (bitsLeft - 8));
+                    }
+                    next++;
+                    bitsLeft -= 8;
+                }
+            } else if (value == PADDING) {
+                // Remove padding. Note: the padding is used as hint to determine how many
+                // bits to decode from the last incomplete chunk, which we ignore.
+                padding = true;
+            } else if (value != SKIP) {
+                // digits after the padding are not valid either
                 throw new DecodingException("Illegal character: " + c);
             }
-            buffer <<= SHIFT;
-            buffer |= CHAR_MAP.get(c) & MASK;
-            bitsLeft += SHIFT;
-            if (bitsLeft >= 8) {
-                result[next++] = (byte) (buffer >> (bitsLeft - 8));
-                bitsLeft -= 8;
-            }
         }
         // We'll ignore leftover bits for now.
         //
         // if (next != outLength || bitsLeft >= SHIFT) {
         //  throw new DecodingException("Bits left: " + bitsLeft);
         // }
-        return result;
+        return next - offset;
     }
 
     public static String encode(byte[] data) {
@@ -125,28 +166,23 @@ public class Base32 {
         }
 
         int outputLength = (data.length * 8 + SHIFT - 1) / SHIFT;
-        StringBuilder result = new StringBuilder(outputLength);
-
-        int buffer = data[0];
-        int next = 1;
-        int bitsLeft = 8;
-        while (bitsLeft > 0 || next < data.length) {
-            if (bitsLeft < SHIFT) {
-                if (next < data.length) {
-                    buffer <<= 8;
-                    buffer |= (data[next++] & 0xff);
-                    bitsLeft += 8;
-                } else {
-                    int pad = SHIFT - bitsLeft;
-                    buffer <<= pad;
-                    bitsLeft += pad;
-                }
+        char[] result = new char[outputLength];
+
+        int buffer = 0;
+        int bitsLeft = 0;
+        int next = 0;
+        for (byte b : data) {
+            buffer = (buffer << 8) | (b & 0xff);
+            bitsLeft += 8;
+            while (bitsLeft >= SHIFT) {
+                bitsLeft -= SHIFT;
+                result[next++] = DIGITS[MASK & (buffer >> bitsLeft)];
             }
-            int index = MASK & (buffer >> (bitsLeft - SHIFT));
-            bitsLeft -= SHIFT;
-            result.append(DIGITS[index]);
         }
-        return result.toString();
+        if (bitsLeft > 0) {
+            result[next] = DIGITS[MASK & (buffer << (SHIFT - bitsLeft))];
+        }
+        return new String(result);
     }
 
     public static class DecodingException extends Exception {
@@ -0,0 +1,222 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import androidx.annotation.NonNull;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BulkRequestTest {
+
+    List<String> started;
+    List<Callback<String>> callbacks;
+    List<String> succeeded;
+    BulkRequest.Operation<String> operation;
+
+    @Before
+    public void setUp() {
+        started = new ArrayList<>();
+        callbacks = new ArrayList<>();
+        succeeded = new ArrayList<>();
+        operation = new BulkRequest.Operation<String>() {
+            @NonNull
+            @Override
+            public GuardianAPIRequest<String> create(@NonNull final Enrollment enrollment) {
+                if (enrollment.getId().equals("invalid")) {
+                    throw new GuardianException("Unable to generate the signed JWT", null);
+                }
+                return new GuardianAPIRequest<String>() {
+                    @Override
+                    public String execute() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public void start(@NonNull Callback<String> callback) {
+                        started.add(enrollment.getId());
+                        callbacks.add(callback);
+                    }
+                };
+            }
+
+            @Override
+            public void onSuccess(@NonNull Enrollment enrollment) {
+                succeeded.add(enrollment.getId());
+            }
+        };
+    }
+
+    @Test
+    public void shouldLimitConcurrentRequests() {
+        BulkRequest<String> request = new BulkRequest<>(
+                enrollments("dev_1", "dev_2", "dev_3", "dev_4"), operation, 2);
+
+        AtomicReference<BulkResult<String>> result = start(request);
+        assertThat(started, contains("dev_1", "dev_2"));
+
+        callbacks.get(1).onSuccess("response_2");
+        assertThat(started, contains("dev_1", "dev_2", "dev_3"));
+        callbacks.get(0).onSuccess("response_1");
+        callbacks.get(2).onSuccess("response_3");
+        assertThat(started, contains("dev_1", "dev_2", "dev_3", "dev_4"));
+        assertThat(result.get(), is(nullValue()));
+
+        callbacks.get(3).onSuccess("response_4");
+        assertThat(result.get().getSuccessCount(), is(4));
+        assertThat(succeeded, contains("dev_2", "dev_1", "dev_3", "dev_4"));
+    }
+
+    @Test
+    public void shouldReportEveryItemInOrder() {
+        BulkRequest<String> request = new BulkRequest<>(
+                enrollments("dev_1", "dev_2", "dev_3"), operation, 4);
+        IOException failure = new IOException("offline");
+
+        AtomicReference<BulkResult<String>> result = start(request);
+        callbacks.get(2).onSuccess("response_3");
+        callbacks.get(1).onFailure(failure);
+        callbacks.get(0).onSuccess("response_1");
+
+        List<BulkResult.Item<String>> items = result.get().getItems();
+        assertThat(items, hasSize(3));
+        assertThat(items.get(0).getEnrollment().getId(), is(equalTo("dev_1")));
+        assertThat(items.get(0).isSuccessful(), is(true));
+        assertThat(items.get(0).getResponse(), is(equalTo("response_1")));
+        assertThat(items.get(1).isSuccessful(), is(false));
+        assertThat(items.get(1).getError(), is(sameInstance((Throwable) failure)));
+        assertThat(items.get(2).getResponse(), is(equalTo("response_3")));
+
+        assertThat(result.get().getSuccessCount(), is(2));
+        assertThat(result.get().getFailures(), contains(items.get(1)));
+        assertThat(succeeded, contains("dev_3", "dev_1"));
+    }
+
+    @Test
+    public void shouldContinueWhenRequestCantBeCreated() {
+        BulkRequest<String> request = new BulkRequest<>(
+                enrollments("invalid", "dev_1"), operation, 1);
+
+        AtomicReference<BulkResult<String>> result = start(request);
+        assertThat(started, contains("dev_1"));
+        callbacks.get(0).onSuccess("response_1");
+
+        BulkResult.Item<String> invalid = result.get().getItems().get(0);
+        assertThat(invalid.isSuccessful(), is(false));
+        assertThat(invalid.getError() instanceof GuardianException, is(true));
+        assertThat(result.get().getSuccessCount(), is(1));
+    }
+
+    @Test
+    public void shouldStartEveryRequestWhenTheyFailRightAway() {
+        Enrollment invalid = enrollment("invalid");
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            enrollments.add(invalid);
+        }
+
+        AtomicReference<BulkResult<String>> result = start(new BulkRequest<>(enrollments, operation, 1));
+
+        assertThat(result.get().getItems(), hasSize(10000));
+        assertThat(result.get().getFailures(), hasSize(10000));
+    }
+
+    @Test
+    public void shouldFinishRightAwayWithoutEnrollments() throws Exception {
+        BulkResult<String> result = new BulkRequest<>(
+                Collections.<Enrollment>emptyList(), operation, 4).execute();
+
+        assertThat(result.getItems(), hasSize(0));
+        assertThat(result.getTotalMillis(), is(greaterThanOrEqualTo(0L)));
+        assertThat(result.getAverageMillis(), is(0L));
+        assertThat(result.getSlowestMillis(), is(0L));
+    }
+
+    @Test
+    public void shouldBlockUntilEveryRequestFinishes() throws Exception {
+        BulkRequest<String> request = new BulkRequest<>(
+                enrollments("dev_1", "dev_2"), new BulkRequest.Operation<String>() {
+            @NonNull
+            @Override
+            public GuardianAPIRequest<String> create(@NonNull final Enrollment enrollment) {
+                return new GuardianAPIRequest<String>() {
+                    @Override
+                    public String execute() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public void start(@NonNull final Callback<String> callback) {
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onSuccess("response_" + enrollment.getId());
+                            }
+                        }).start();
+                    }
+                };
+            }
+
+            @Override
+            public void onSuccess(@NonNull Enrollment enrollment) {
+            }
+        }, 1);
+
+        BulkResult<String> result = request.execute();
+
+        assertThat(result.getSuccessCount(), is(2));
+        assertThat(result.getItems().get(1).getResponse(), is(equalTo("response_dev_2")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireAtLeastOneRequest() {
+        new BulkRequest<>(enrollments("dev_1"), operation, 0);
+    }
+
+    private static AtomicReference<BulkResult<String>> start(BulkRequest<String> request) {
+        final AtomicReference<BulkResult<String>> result = new AtomicReference<>();
+        request.start(new Callback<BulkResult<String>>() {
+            @Override
+            public void onSuccess(BulkResult<String> response) {
+                result.set(response);
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                throw new AssertionError("Bulk requests never fail", exception);
+            }
+        });
+        return result;
+    }
+
+    private static List<Enrollment> enrollments(String... ids) {
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (String id : ids) {
+            enrollments.add(enrollment(id));
+        }
+        return enrollments;
+    }
+
+    private static Enrollment enrollment(String id) {
+        Enrollment enrollment = mock(Enrollment.class);
+        when(enrollment.getId()).thenReturn(id);
+        return enrollment;
+    }
+}
@@ -0,0 +1,89 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class DeleteRequestTest {
+
+    private static final String DEVICE_ID = "DEVICE_ID";
+
+    private GuardianAPIRequest<Void> request;
+    private GuardianAPIClient client;
+    private Callback<Void> callback;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        request = mock(GuardianAPIRequest.class);
+        client = mock(GuardianAPIClient.class);
+        callback = mock(Callback.class);
+    }
+
+    @Test
+    public void shouldInvalidateDeviceTokenAfterExecute() throws Exception {
+        new DeleteRequest(request, client, DEVICE_ID).execute();
+
+        verify(request).execute();
+        verify(client).invalidateDeviceToken(DEVICE_ID);
+    }
+
+    @Test
+    public void shouldKeepDeviceTokenWhenExecuteFails() throws Exception {
+        final GuardianException exception = new GuardianException("failed");
+        when(request.execute()).thenThrow(exception);
+
+        try {
+            new DeleteRequest(request, client, DEVICE_ID).execute();
+            fail("expected GuardianException");
+        } catch (GuardianException e) {
+            verify(client, never()).invalidateDeviceToken(any(String.class));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldInvalidateDeviceTokenWhenStartSucceeds() throws Exception {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Callback<Void>) invocation.getArgument(0)).onSuccess(null);
+                return null;
+            }
+        }).when(request).start(any(Callback.class));
+
+        new DeleteRequest(request, client, DEVICE_ID).start(callback);
+
+        verify(client).invalidateDeviceToken(DEVICE_ID);
+        verify(callback).onSuccess(null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldKeepDeviceTokenWhenStartFails() throws Exception {
+        final GuardianException exception = new GuardianException("failed");
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Callback<Void>) invocation.getArgument(0)).onFailure(exception);
+                return null;
+            }
+        }).when(request).start(any(Callback.class));
+
+        new DeleteRequest(request, client, DEVICE_ID).start(callback);
+
+        verify(client, never()).invalidateDeviceToken(any(String.class));
+        verify(callback).onFailure(exception);
+    }
+}
@@ -0,0 +1,394 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class DeviceAccountOutboxTest {
+
+    private static KeyPair keyPair;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    GuardianAPIClient apiClient;
+    ScheduledExecutorService executor;
+    File file;
+    StorageCipher cipher;
+
+    // the executor only runs what the test asks for
+    List<Runnable> posted;
+    List<Runnable> scheduled;
+    List<Long> delays;
+    // requests sent, and what the next ones do
+    List<String> sent;
+    List<Exception> failures;
+    List<String> results;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "outbox");
+        // enough to tell that the content goes through the cipher
+        cipher = new StorageCipher() {
+            @Override
+            public byte[] encrypt(byte[] plaintext) {
+                return reversed(plaintext);
+            }
+
+            @Override
+            public byte[] decrypt(byte[] ciphertext) {
+                return reversed(ciphertext);
+            }
+        };
+
+        posted = new ArrayList<>();
+        scheduled = new ArrayList<>();
+        delays = new ArrayList<>();
+        executor = mock(ScheduledExecutorService.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                posted.add((Runnable) invocation.getArgument(0));
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
+        doAnswer(new Answer<ScheduledFuture<?>>() {
+            @Override
+            public ScheduledFuture<?> answer(InvocationOnMock invocation) {
+                scheduled.add((Runnable) invocation.getArgument(0));
+                delays.add((Long) invocation.getArgument(1));
+                return mock(ScheduledFuture.class);
+            }
+        }).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+        sent = new ArrayList<>();
+        failures = new ArrayList<>();
+        results = new ArrayList<>();
+        apiClient = mock(GuardianAPIClient.class);
+        doAnswer(new Answer<DeviceAPIClient>() {
+            @Override
+            public DeviceAPIClient answer(InvocationOnMock invocation) throws Exception {
+                final String id = invocation.getArgument(0);
+                DeviceAPIClient device = mock(DeviceAPIClient.class);
+                GuardianAPIRequest<Void> delete = mock(GuardianAPIRequest.class);
+                when(delete.execute()).thenAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) throws Exception {
+                        send("delete " + id);
+                        return null;
+                    }
+                });
+                when(device.delete()).thenReturn(delete);
+                doAnswer(new Answer<GuardianAPIRequest<?>>() {
+                    @Override
+                    public GuardianAPIRequest<?> answer(InvocationOnMock invocation) throws Exception {
+                        final String description = "update " + id + " "
+                                + invocation.getArgument(1) + " " + invocation.getArgument(2);
+                        GuardianAPIRequest<Object> update = mock(GuardianAPIRequest.class);
+                        when(update.execute()).thenAnswer(new Answer<Object>() {
+                            @Override
+                            public Object answer(InvocationOnMock invocation) throws Exception {
+                                send(description);
+                                return null;
+                            }
+                        });
+                        return update;
+                    }
+                }).when(device).update(any(), any(), any());
+                return device;
+            }
+        }).when(apiClient).device(anyString(), anyString(), any(PrivateKey.class));
+    }
+
+    @Test
+    public void shouldSendChangesInTheBackground() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+
+        outbox.update(enrollment("dev_1"), "name", "token");
+        outbox.delete(enrollment("dev_2"));
+        assertThat(sent, hasSize(0));
+        assertThat(outbox.size(), is(2));
+
+        runPosted();
+        assertThat(sent, contains("update dev_1 name token", "delete dev_2"));
+        assertThat(results, contains("sent dev_1 false", "sent dev_2 true"));
+        assertThat(outbox.size(), is(0));
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void shouldMergeUpdates() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+
+        outbox.update(enrollment("dev_1"), "name", "first");
+        outbox.update(enrollment("dev_1"), null, "second");
+        runPosted();
+
+        assertThat(sent, contains("update dev_1 name second"));
+    }
+
+    @Test
+    public void shouldOnlySendDeleteAfterUpdate() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+
+        outbox.update(enrollment("dev_1"), "name", "token");
+        outbox.delete(enrollment("dev_1"));
+        outbox.update(enrollment("dev_1"), "other", null);
+        assertThat(outbox.size(), is(1));
+        runPosted();
+
+        assertThat(sent, contains("delete dev_1"));
+    }
+
+    @Test
+    public void shouldKeepChangesAfterRestart() throws Exception {
+        outbox().update(enrollment("dev_1"), "name", "token");
+        outbox().delete(enrollment("dev_2"));
+        posted.clear();
+
+        DeviceAccountOutbox restarted = outbox();
+        assertThat(restarted.size(), is(2));
+        restarted.flush();
+        runPosted();
+
+        assertThat(sent, contains("update dev_1 name token", "delete dev_2"));
+    }
+
+    @Test
+    public void shouldRetryWithBackoffWhenOffline() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+        outbox.delete(enrollment("dev_1"));
+
+        failures.add(new IOException("offline"));
+        runPosted();
+        assertThat(delays, contains(DeviceAccountOutbox.MIN_RETRY_DELAY_MILLIS));
+
+        // new changes wait for the retry
+        outbox.update(enrollment("dev_2"), "name", null);
+        assertThat(posted, hasSize(0));
+
+        failures.add(new IOException("offline"));
+        runScheduled();
+        assertThat(delays, contains(DeviceAccountOutbox.MIN_RETRY_DELAY_MILLIS,
+                DeviceAccountOutbox.MIN_RETRY_DELAY_MILLIS * 2));
+
+        runScheduled();
+        assertThat(sent, contains("delete dev_1", "update dev_2 name null"));
+        assertThat(outbox.size(), is(0));
+    }
+
+    @Test
+    public void shouldSendRightAwayOnFlush() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+        outbox.delete(enrollment("dev_1"));
+        failures.add(new IOException("offline"));
+        runPosted();
+
+        outbox.flush();
+        runPosted();
+
+        assertThat(sent, contains("delete dev_1"));
+        assertThat(outbox.size(), is(0));
+    }
+
+    @Test
+    public void shouldKeepChangesThatFailWithServerErrors() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+        outbox.delete(enrollment("dev_1"));
+
+        failures.add(rejection("server_error", 503));
+        runPosted();
+        assertThat(results, hasSize(0));
+        assertThat(outbox.size(), is(1));
+        assertThat(delays, contains(DeviceAccountOutbox.MIN_RETRY_DELAY_MILLIS));
+
+        runScheduled();
+        assertThat(sent, contains("delete dev_1"));
+        assertThat(results, contains("sent dev_1 true"));
+        assertThat(outbox.size(), is(0));
+    }
+
+    @Test
+    public void shouldDropRejectedChanges() throws Exception {
+        DeviceAccountOutbox outbox = outbox();
+        outbox.delete(enrollment("dev_1"));
+        outbox.delete(enrollment("dev_2"));
+
+        failures.add(rejection("device_account_not_found", 404));
+        runPosted();
+
+        assertThat(sent, contains("delete dev_2"));
+        assertThat(results, contains("rejected dev_1 true", "sent dev_2 true"));
+        assertThat(outbox.size(), is(0));
+        assertThat(scheduled, hasSize(0));
+    }
+
+    @Test
+    public void shouldWriteTheFileThroughTheCipher() throws Exception {
+        outbox().update(enrollment("dev_1"), "name", "token");
+
+        byte[] content = readFile();
+        assertThat(new String(content, "ISO-8859-1").contains("token_dev_1"), is(false));
+        assertThat(new String(reversed(content), "ISO-8859-1").contains("token_dev_1"), is(true));
+    }
+
+    @Test
+    public void shouldDiscardFileThatCantBeParsed() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("garbage".getBytes());
+        out.close();
+
+        DeviceAccountOutbox outbox = outbox();
+        assertThat(outbox.size(), is(0));
+        assertThat(file.exists(), is(false));
+        assertThat(new File(file.getPath() + ".corrupt").exists(), is(true));
+        runPosted();
+        assertThat(results, contains("discarded"));
+
+        outbox.delete(enrollment("dev_1"));
+        runPosted();
+        assertThat(sent, contains("delete dev_1"));
+    }
+
+    @Test
+    public void shouldDiscardTruncatedFile() throws Exception {
+        DeviceAccountOutbox first = outbox();
+        first.update(enrollment("dev_1"), "name", "token");
+        first.delete(enrollment("dev_2"));
+        posted.clear();
+        byte[] content = readFile();
+        FileOutputStream out = new FileOutputStream(file);
+        // a valid header, but the content ends in the middle of the first change
+        byte[] decrypted = cipher.decrypt(Arrays.copyOfRange(content, 5, content.length));
+        out.write(content, 0, 5);
+        out.write(cipher.encrypt(Arrays.copyOf(decrypted, 40)));
+        out.close();
+
+        DeviceAccountOutbox restarted = outbox();
+        assertThat(restarted.size(), is(0));
+        restarted.flush();
+        runPosted();
+
+        assertThat(sent, hasSize(0));
+        assertThat(results, contains("discarded"));
+    }
+
+    private DeviceAccountOutbox outbox() {
+        DeviceAccountOutbox outbox = new DeviceAccountOutbox(apiClient, file, cipher, executor, false);
+        outbox.setListener(new DeviceAccountOutbox.Listener() {
+            @Override
+            public void onSent(String enrollmentId, boolean deleted) {
+                results.add("sent " + enrollmentId + " " + deleted);
+            }
+
+            @Override
+            public void onRejected(String enrollmentId, boolean deleted, GuardianException exception) {
+                results.add("rejected " + enrollmentId + " " + deleted);
+            }
+
+            @Override
+            public void onDiscarded(IOException reason) {
+                results.add("discarded");
+            }
+        });
+        return outbox;
+    }
+
+    private void send(String description) throws Exception {
+        if (!failures.isEmpty()) {
+            throw failures.remove(0);
+        }
+        sent.add(description);
+    }
+
+    private void runPosted() {
+        List<Runnable> runnables = new ArrayList<>(posted);
+        posted.clear();
+        for (Runnable runnable : runnables) {
+            runnable.run();
+        }
+    }
+
+    private void runScheduled() {
+        Runnable last = scheduled.remove(scheduled.size() - 1);
+        last.run();
+    }
+
+    private static GuardianException rejection(String errorCode, int statusCode) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("errorCode", errorCode);
+        return new GuardianException(error, statusCode);
+    }
+
+    private byte[] readFile() throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] content = new byte[(int) file.length()];
+            in.readFully(content);
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] reversed(byte[] bytes) {
+        byte[] result = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i] = bytes[bytes.length - 1 - i];
+        }
+        return result;
+    }
+
+    private static Enrollment enrollment(String id) {
+        Enrollment enrollment = mock(Enrollment.class);
+        when(enrollment.getId()).thenReturn(id);
+        when(enrollment.getUserId()).thenReturn("user_" + id);
+        when(enrollment.getDeviceIdentifier()).thenReturn("identifier");
+        when(enrollment.getDeviceName()).thenReturn("name");
+        when(enrollment.getNotificationToken()).thenReturn("fcm_token");
+        when(enrollment.getDeviceToken()).thenReturn("token_" + id);
+        when(enrollment.getSigningKey()).thenReturn(keyPair.getPrivate());
+        when(enrollment.getPublicKey()).thenReturn(keyPair.getPublic());
+        return enrollment;
+    }
+}
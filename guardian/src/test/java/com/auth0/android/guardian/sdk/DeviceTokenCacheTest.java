@@ -0,0 +1,83 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.PrivateKey;
+
+public class DeviceTokenCacheTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long EXPIRES_AT = NOW + 2 * 60 * 60 * 1000;
+
+    DeviceTokenCache cache;
+    PrivateKey key;
+
+    @Before
+    public void setUp() {
+        cache = new DeviceTokenCache(2);
+        key = mock(PrivateKey.class);
+    }
+
+    @Test
+    public void shouldReuseToken() {
+        cache.put("dev_1", "user_1", key, "token_1", EXPIRES_AT);
+
+        assertThat(cache.get("dev_1", "user_1", key, NOW), is(equalTo("token_1")));
+        assertThat(cache.get("dev_1", "user_1", key, NOW + 60 * 60 * 1000), is(equalTo("token_1")));
+    }
+
+    @Test
+    public void shouldNotReuseTokenAboutToExpire() {
+        cache.put("dev_1", "user_1", key, "token_1", EXPIRES_AT);
+
+        long almostExpired = EXPIRES_AT - DeviceTokenCache.MIN_REMAINING_MILLIS + 1;
+        assertThat(cache.get("dev_1", "user_1", key, almostExpired), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotReuseTokenOfOtherSubjectOrKey() {
+        cache.put("dev_1", "user_1", key, "token_1", EXPIRES_AT);
+
+        assertThat(cache.get("dev_1", "user_2", key, NOW), is(nullValue()));
+        assertThat(cache.get("dev_1", "user_1", mock(PrivateKey.class), NOW), is(nullValue()));
+        assertThat(cache.get("dev_2", "user_1", key, NOW), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReplaceToken() {
+        cache.put("dev_1", "user_1", key, "token_1", EXPIRES_AT);
+        cache.put("dev_1", "user_1", key, "token_2", EXPIRES_AT);
+
+        assertThat(cache.get("dev_1", "user_1", key, NOW), is(equalTo("token_2")));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        cache.put("dev_1", "user_1", key, "token_1", EXPIRES_AT);
+        cache.put("dev_2", "user_2", key, "token_2", EXPIRES_AT);
+        cache.get("dev_1", "user_1", key, NOW);
+        cache.put("dev_3", "user_3", key, "token_3", EXPIRES_AT);
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("dev_1", "user_1", key, NOW), is(equalTo("token_1")));
+        assertThat(cache.get("dev_2", "user_2", key, NOW), is(nullValue()));
+    }
+
+    @Test
+    public void shouldInvalidateToken() {
+        cache.put("dev_1", "user_1", key, "token_1", EXPIRES_AT);
+
+        cache.invalidate("dev_1");
+        cache.invalidate(null);
+
+        assertThat(cache.get("dev_1", "user_1", key, NOW), is(nullValue()));
+    }
+}
@@ -0,0 +1,327 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+public class EnrollmentStoreTest {
+
+    private static KeyPair keyPair;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File file;
+    StorageCipher cipher;
+    Executor directExecutor;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "enrollments");
+        cipher = aesCipher();
+        directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+    }
+
+    @Test
+    public void shouldKeepEnrollmentsAfterRestart() throws Exception {
+        EnrollmentStore store = new EnrollmentStore(file, cipher, directExecutor);
+        store.put(enrollment("dev_1", "SECRET1"));
+        store.put(enrollment("dev_2", null));
+
+        EnrollmentStore reloaded = new EnrollmentStore(file, cipher, directExecutor);
+        Enrollment first = reloaded.get("dev_1");
+        Enrollment second = reloaded.get("dev_2");
+
+        assertThat(first.getId(), is(equalTo("dev_1")));
+        assertThat(first.getUserId(), is(equalTo("user_dev_1")));
+        assertThat(first.getPeriod(), is(equalTo(30)));
+        assertThat(first.getDigits(), is(equalTo(6)));
+        assertThat(first.getAlgorithm(), is(equalTo("SHA1")));
+        assertThat(first.getSecret(), is(equalTo("SECRET1")));
+        assertThat(first.getDeviceIdentifier(), is(equalTo("identifier")));
+        assertThat(first.getDeviceName(), is(equalTo("name")));
+        assertThat(first.getNotificationToken(), is(equalTo("fcm_token")));
+        assertThat(first.getDeviceToken(), is(equalTo("token_dev_1")));
+        assertThat(first.getSigningKey().getEncoded(), is(equalTo(keyPair.getPrivate().getEncoded())));
+        assertThat(first.getPublicKey().getEncoded(), is(equalTo(keyPair.getPublic().getEncoded())));
+
+        assertThat(second.getPeriod(), is(nullValue()));
+        assertThat(second.getDigits(), is(nullValue()));
+        assertThat(second.getAlgorithm(), is(nullValue()));
+        assertThat(second.getSecret(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCacheDecodedKeys() throws Exception {
+        new EnrollmentStore(file, cipher, directExecutor).put(enrollment("dev_1", "SECRET1"));
+
+        Enrollment enrollment = new EnrollmentStore(file, cipher, directExecutor).get("dev_1");
+
+        assertThat(enrollment.getSigningKey(), is(sameInstance(enrollment.getSigningKey())));
+        assertThat(enrollment.getPublicKey(), is(sameInstance(enrollment.getPublicKey())));
+    }
+
+    @Test
+    public void shouldKeepKeysOfAddedEnrollment() throws Exception {
+        Enrollment enrollment = enrollment("dev_1", "SECRET1");
+
+        Enrollment stored = new EnrollmentStore(file, cipher, directExecutor).put(enrollment);
+
+        assertThat(stored.getSigningKey(), is(sameInstance(keyPair.getPrivate())));
+        assertThat(stored.getPublicKey(), is(sameInstance(keyPair.getPublic())));
+    }
+
+    @Test
+    public void shouldRouteNotificationsByEnrollmentId() throws Exception {
+        EnrollmentStore store = new EnrollmentStore(file, cipher, directExecutor);
+        store.put(enrollment("dev_1", "SECRET1"));
+        store.put(enrollment("dev_2", "SECRET2"));
+        Notification notification = mock(Notification.class);
+        when(notification.getEnrollmentId()).thenReturn("dev_2");
+        Notification unknown = mock(Notification.class);
+        when(unknown.getEnrollmentId()).thenReturn("dev_3");
+
+        assertThat(store.get(notification).getSecret(), is(equalTo("SECRET2")));
+        assertThat(store.get(unknown), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReplaceEnrollmentWithSameId() throws Exception {
+        EnrollmentStore store = new EnrollmentStore(file, cipher, directExecutor);
+        store.put(enrollment("dev_1", "SECRET1"));
+        store.put(enrollment("dev_2", "SECRET2"));
+        store.put(enrollment("dev_1", "SECRET3"));
+
+        List<Enrollment> all = new EnrollmentStore(file, cipher, directExecutor).getAll();
+
+        assertThat(all, hasSize(2));
+        assertThat(all.get(0).getSecret(), is(equalTo("SECRET3")));
+        assertThat(all.get(1).getSecret(), is(equalTo("SECRET2")));
+    }
+
+    @Test
+    public void shouldRemoveEnrollment() throws Exception {
+        EnrollmentStore store = new EnrollmentStore(file, cipher, directExecutor);
+        store.put(enrollment("dev_1", "SECRET1"));
+        store.put(enrollment("dev_2", "SECRET2"));
+
+        assertThat(store.remove("dev_1"), is(equalTo(true)));
+        assertThat(store.remove("dev_1"), is(equalTo(false)));
+
+        EnrollmentStore reloaded = new EnrollmentStore(file, cipher, directExecutor);
+        assertThat(reloaded.get("dev_1"), is(nullValue()));
+        assertThat(reloaded.getAll(), hasSize(1));
+    }
+
+    @Test
+    public void shouldLoadInBackground() throws Exception {
+        new EnrollmentStore(file, cipher, directExecutor).put(enrollment("dev_1", "SECRET1"));
+        final AtomicReference<Runnable> task = new AtomicReference<>();
+        EnrollmentStore store = new EnrollmentStore(file, cipher, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                task.set(command);
+            }
+        });
+        final AtomicReference<List<Enrollment>> result = new AtomicReference<>();
+
+        store.load(new Callback<List<Enrollment>>() {
+            @Override
+            public void onSuccess(List<Enrollment> response) {
+                result.set(response);
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                throw new AssertionError(exception);
+            }
+        });
+
+        assertThat(store.isLoaded(), is(equalTo(false)));
+        task.get().run();
+        assertThat(store.isLoaded(), is(equalTo(true)));
+        assertThat(result.get(), hasSize(1));
+        assertThat(result.get().get(0).getId(), is(equalTo("dev_1")));
+    }
+
+    @Test
+    public void shouldLoadEmptyStoreWithoutFile() throws Exception {
+        EnrollmentStore store = new EnrollmentStore(file, cipher, directExecutor);
+
+        assertThat(store.getAll(), hasSize(0));
+        assertThat(file.exists(), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldFailToLoadUnknownFile() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("{\"id\":\"dev_1\"}".getBytes());
+        out.close();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        new EnrollmentStore(file, cipher, directExecutor).load(new Callback<List<Enrollment>>() {
+            @Override
+            public void onSuccess(List<Enrollment> response) {
+                throw new AssertionError("Expected the load to fail");
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                failure.set(exception);
+            }
+        });
+
+        assertThat(failure.get(), is(notNullValue()));
+        assertThat(failure.get() instanceof IOException, is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldDerivePublicKeyWhenNotStored() throws Exception {
+        Enrollment enrollment = enrollment("dev_1", "SECRET1");
+        PublicKey emptyKey = mock(PublicKey.class);
+        when(emptyKey.getEncoded()).thenReturn(new byte[0]);
+        when(enrollment.getPublicKey()).thenReturn(emptyKey);
+        new EnrollmentStore(file, cipher, directExecutor).put(enrollment);
+
+        Enrollment loaded = new EnrollmentStore(file, cipher, directExecutor).get("dev_1");
+
+        assertThat(loaded.getPublicKey().getEncoded(), is(equalTo(keyPair.getPublic().getEncoded())));
+    }
+
+    @Test
+    public void shouldRejectKeysThatCantBeExported() throws Exception {
+        Enrollment enrollment = enrollment("dev_1", "SECRET1");
+        // like keys kept in the AndroidKeyStore
+        PrivateKey keyStoreKey = mock(PrivateKey.class);
+        when(keyStoreKey.getEncoded()).thenReturn(null);
+        when(enrollment.getSigningKey()).thenReturn(keyStoreKey);
+        EnrollmentStore store = new EnrollmentStore(file, cipher, directExecutor);
+
+        try {
+            store.put(enrollment);
+            throw new AssertionError("Expected the enrollment to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage().contains("exportable"), is(equalTo(true)));
+        }
+        assertThat(store.getAll(), hasSize(0));
+        assertThat(file.exists(), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldEncryptTheFile() throws Exception {
+        new EnrollmentStore(file, cipher, directExecutor).put(enrollment("dev_1", "SECRET1"));
+
+        String content = new String(readFile(), "ISO-8859-1");
+        assertThat(content.contains("SECRET1"), is(equalTo(false)));
+        assertThat(content.contains("dev_1"), is(equalTo(false)));
+        assertThat(content.contains(new String(keyPair.getPrivate().getEncoded(), "ISO-8859-1")), is(equalTo(false)));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailToLoadWithOtherKey() throws Exception {
+        new EnrollmentStore(file, cipher, directExecutor).put(enrollment("dev_1", "SECRET1"));
+
+        new EnrollmentStore(file, aesCipher(), directExecutor).getAll();
+    }
+
+    private byte[] readFile() throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] content = new byte[(int) file.length()];
+            in.readFully(content);
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static StorageCipher aesCipher() throws Exception {
+        final SecretKey key = KeyGenerator.getInstance("AES").generateKey();
+        final SecureRandom random = new SecureRandom();
+        return new StorageCipher() {
+            @Override
+            public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+                byte[] iv = new byte[12];
+                random.nextBytes(iv);
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                byte[] encrypted = cipher.doFinal(plaintext);
+                byte[] result = Arrays.copyOf(iv, iv.length + encrypted.length);
+                System.arraycopy(encrypted, 0, result, iv.length, encrypted.length);
+                return result;
+            }
+
+            @Override
+            public byte[] decrypt(byte[] ciphertext) throws GeneralSecurityException {
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, ciphertext, 0, 12));
+                return cipher.doFinal(ciphertext, 12, ciphertext.length - 12);
+            }
+        };
+    }
+
+    private static Enrollment enrollment(String id, String secret) {
+        Enrollment enrollment = mock(Enrollment.class);
+        when(enrollment.getId()).thenReturn(id);
+        when(enrollment.getUserId()).thenReturn("user_" + id);
+        when(enrollment.getPeriod()).thenReturn(secret != null ? 30 : null);
+        when(enrollment.getDigits()).thenReturn(secret != null ? 6 : null);
+        when(enrollment.getAlgorithm()).thenReturn(secret != null ? "SHA1" : null);
+        when(enrollment.getSecret()).thenReturn(secret);
+        when(enrollment.getDeviceIdentifier()).thenReturn("identifier");
+        when(enrollment.getDeviceName()).thenReturn("name");
+        when(enrollment.getNotificationToken()).thenReturn("fcm_token");
+        when(enrollment.getDeviceToken()).thenReturn("token_" + id);
+        PrivateKey privateKey = keyPair.getPrivate();
+        when(enrollment.getSigningKey()).thenReturn(privateKey);
+        when(enrollment.getPublicKey()).thenReturn(keyPair.getPublic());
+        return enrollment;
+    }
+}
@@ -0,0 +1,50 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FailedRequestTest {
+
+    @Test(expected = GuardianException.class)
+    public void shouldThrowOnExecute() throws Exception {
+        new FailedRequest<Void>(GuardianException.transactionExpired(0)).execute();
+    }
+
+    @Test
+    public void shouldCallBackOnAnotherThread() throws Exception {
+        final GuardianException exception = GuardianException.transactionExpired(0);
+        final CountDownLatch called = new CountDownLatch(1);
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        new FailedRequest<Void>(exception).start(new Callback<Void>() {
+            @Override
+            public void onSuccess(Void response) {
+                throw new AssertionError("Expected the request to fail");
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                thread.set(Thread.currentThread());
+                error.set(e);
+                called.countDown();
+            }
+        });
+
+        assertThat(called.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(thread.get(), is(not(nullValue())));
+        assertThat(thread.get(), is(not(sameInstance(Thread.currentThread()))));
+        assertThat(error.get(), is(sameInstance((Throwable) exception)));
+    }
+}
@@ -613,6 +613,24 @@ public class GuardianAPIClientTest {
         verifyBasicJWT(jwt);
     }
 
+    @Test
+    public void shouldReuseDeviceAccountJWT() throws Exception {
+        mockAPI.willReturnSuccess(200);
+        mockAPI.willReturnSuccess(200);
+
+        apiClient.device(ENROLLMENT_ID, ENROLLMENT_USER, keyPair.getPrivate())
+                .delete()
+                .start(new MockCallback<Void>());
+        String first = mockAPI.takeRequest().getHeader("Authorization");
+        apiClient.device(ENROLLMENT_ID, ENROLLMENT_USER, keyPair.getPrivate())
+                .delete()
+                .start(new MockCallback<Void>());
+        String second = mockAPI.takeRequest().getHeader("Authorization");
+
+        assertThat(second, is(equalTo(first)));
+        verifyBasicJWT(second.split("Bearer ")[1]);
+    }
+
     @Test
     public void shouldCreateValidRichConsentsAPI() throws Exception {
         String consentId = "cns_00000001";
@@ -192,6 +192,44 @@ public class GuardianExceptionTest {
 
     }
 
+    @Test
+    public void shouldBeTransactionExpired() throws Exception {
+        GuardianException exception = GuardianException.transactionExpired(1700000000000L);
+
+        assertThat(exception.getErrorCode(), is(equalTo("transaction_expired")));
+        assertThat(exception.getStatusCode(), is(equalTo(-1)));
+
+        assertThat(exception.isTransactionExpired(), is(equalTo(true)));
+        assertThat(exception.isLoginTransactionNotFound(), is(equalTo(false)));
+
+        assertThat(exception.isInvalidOTP(), is(equalTo(false)));
+        assertThat(exception.isInvalidToken(), is(equalTo(false)));
+        assertThat(exception.isEnrollmentNotFound(), is(equalTo(false)));
+        assertThat(exception.isEnrollmentTransactionNotFound(), is(equalTo(false)));
+        assertThat(exception.isResourceNotFound(), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldNotBeTransactionExpiredForServerErrors() throws Exception {
+        GuardianException exception = new GuardianException(createErrorMap("login_transaction_not_found"), 404);
+
+        assertThat(exception.isLoginTransactionNotFound(), is(equalTo(true)));
+        assertThat(exception.isTransactionExpired(), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldRetryOnlyWithoutResponseOrTransientStatus() throws Exception {
+        assertThat(new GuardianException("Error parsing server response", null).isRetryable(), is(equalTo(true)));
+        assertThat(new GuardianException("Server error", 503, null).isRetryable(), is(equalTo(true)));
+        assertThat(new GuardianException("Server error", 500, null).isRetryable(), is(equalTo(true)));
+        assertThat(new GuardianException(createErrorMap("too_many_requests"), 429).isRetryable(), is(equalTo(true)));
+        assertThat(new GuardianException(createErrorMap("request_timeout"), 408).isRetryable(), is(equalTo(true)));
+
+        assertThat(new GuardianException(createErrorMap("device_account_not_found"), 404).isRetryable(), is(equalTo(false)));
+        assertThat(new GuardianException(createErrorMap("invalid_token"), 401).isRetryable(), is(equalTo(false)));
+        assertThat(GuardianException.transactionExpired(0).isRetryable(), is(equalTo(false)));
+    }
+
     private Map<String, Object> createErrorMap(String errorCode) {
         Map<String, Object> errorMap = new HashMap<>();
         errorMap.put("errorCode", errorCode);
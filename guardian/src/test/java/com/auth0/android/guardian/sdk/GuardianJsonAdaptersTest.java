@@ -0,0 +1,112 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.auth0.android.guardian.sdk.networking.GsonConverter;
+import com.google.gson.GsonBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+public class GuardianJsonAdaptersTest {
+
+    private static final String CONSENT_JSON = "{" +
+            "\"id\":\"cns_123\"," +
+            "\"unknown\":{\"nested\":[1,2,3]}," +
+            "\"requested_details\":{" +
+            "\"audience\":\"https://api.com\"," +
+            "\"scope\":[\"openid\",\"profile\"]," +
+            "\"binding_message\":\"ABC-123\"," +
+            "\"authorization_details\":[{\"type\":\"payment\",\"instructedAmount\":{\"amount\":10.5}}]" +
+            "}," +
+            "\"created_at\":1700000000," +
+            "\"expires_at\":\"2023-11-14T22:18:20Z\"" +
+            "}";
+
+    GsonConverter converter;
+
+    @Before
+    public void setUp() {
+        converter = new GsonConverter(GuardianJsonAdapters.register(new GsonBuilder()).create());
+    }
+
+    @Test
+    public void shouldParseRichConsent() {
+        GuardianRichConsent consent = converter.parse(GuardianRichConsent.class, new StringReader(CONSENT_JSON));
+
+        assertThat(consent.getId(), is(equalTo("cns_123")));
+        assertThat(consent.getCreatedAt(), is(equalTo("1700000000")));
+        assertThat(consent.getExpiresAt(), is(equalTo("2023-11-14T22:18:20Z")));
+        RichConsentRequestedDetails details = consent.getRequestedDetails();
+        assertThat(details.getAudience(), is(equalTo("https://api.com")));
+        assertThat(details.getScope(), is(equalTo(new String[]{"openid", "profile"})));
+        assertThat(details.getBindingMessage(), is(equalTo("ABC-123")));
+        assertThat(details.getAuthorizationDetailsCount(), is(equalTo(1)));
+        assertThat(details.getString(0, "/type"), is(equalTo("payment")));
+        assertThat(details.getNumber(0, "/instructedAmount/amount").doubleValue(), is(equalTo(10.5)));
+    }
+
+    @Test
+    public void shouldParseRichConsentWithoutAuthorizationDetails() {
+        String json = "{\"id\":\"cns_123\",\"requested_details\":{\"audience\":\"https://api.com\",\"scope\":[\"openid\"],\"binding_message\":null}}";
+
+        GuardianRichConsent consent = converter.parse(GuardianRichConsent.class, new StringReader(json));
+
+        assertThat(consent.getRequestedDetails().getBindingMessage(), is(nullValue()));
+        assertThat(consent.getRequestedDetails().getAuthorizationDetails().isEmpty(), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldSerializeRichConsentBackToTheSameModel() {
+        GuardianRichConsent consent = converter.parse(GuardianRichConsent.class, new StringReader(CONSENT_JSON));
+
+        StringWriter writer = new StringWriter();
+        converter.serialize(consent, writer);
+        String json = writer.toString();
+        GuardianRichConsent parsed = converter.parse(GuardianRichConsent.class, new StringReader(json));
+
+        assertThat(parsed.getId(), is(equalTo(consent.getId())));
+        assertThat(parsed.getRequestedDetails().getScope(), is(equalTo(consent.getRequestedDetails().getScope())));
+        assertThat(parsed.getRequestedDetails().getAuthorizationDetails(),
+                is(equalTo(consent.getRequestedDetails().getAuthorizationDetails())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldParseMapsWithDefaultGsonValueTypes() {
+        String json = "{\"id\":\"dev_1\",\"totp\":{\"digits\":6,\"period\":30},\"list\":[true,null,\"x\"],\"missing\":null}";
+
+        Map<String, Object> parsed = converter.parse(GuardianJsonAdapters.MAP_TYPE, new StringReader(json));
+
+        assertThat(parsed, hasEntry("id", (Object) "dev_1"));
+        Map<String, Object> totp = (Map<String, Object>) parsed.get("totp");
+        assertThat(totp.get("digits"), is(instanceOf(Double.class)));
+        assertThat(totp, hasEntry("period", (Object) 30.0));
+        List<Object> list = (List<Object>) parsed.get("list");
+        assertThat(list.size(), is(equalTo(3)));
+        assertThat(list.get(0), is(equalTo((Object) true)));
+        assertThat(list.get(1), is(nullValue()));
+        assertThat(parsed.containsKey("missing"), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldParseErrorBody() {
+        String json = "{\"error\":\"Not found\",\"errorCode\":\"device_account_not_found\",\"statusCode\":404}";
+
+        Map<String, Object> parsed = converter.parse(GuardianJsonAdapters.MAP_TYPE, new StringReader(json));
+        GuardianException exception = new GuardianException(parsed, 404);
+
+        assertThat(exception.getMessage(), is(equalTo("Not found")));
+        assertThat(exception.isEnrollmentNotFound(), is(equalTo(true)));
+    }
+}
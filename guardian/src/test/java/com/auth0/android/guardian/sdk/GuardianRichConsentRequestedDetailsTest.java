@@ -3,14 +3,21 @@ package com.auth0.android.guardian.sdk;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import androidx.annotation.NonNull;
 
 import com.auth0.android.guardian.sdk.utils.NotAnnotatedPaymentIntentTestingAuthorizationDetailsType;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class GuardianRichConsentRequestedDetailsTest {
     GuardianRichConsentRequestedDetails subject;
@@ -20,6 +27,15 @@ public class GuardianRichConsentRequestedDetailsTest {
         JsonObject authzDetailsType = new JsonObject();
         authzDetailsType.addProperty("type", "payment");
         authzDetailsType.addProperty("amount", "100.00");
+        JsonObject instructedAmount = new JsonObject();
+        instructedAmount.addProperty("amount", 42.5);
+        instructedAmount.addProperty("currency", "EUR");
+        authzDetailsType.add("instructedAmount", instructedAmount);
+        JsonArray actions = new JsonArray();
+        actions.add("initiate");
+        actions.add("status");
+        authzDetailsType.add("actions", actions);
+        authzDetailsType.addProperty("a/b", true);
         subject = new GuardianRichConsentRequestedDetails(
                 "https://api.com",
                 new String[]{"openid"},
@@ -38,6 +54,101 @@ public class GuardianRichConsentRequestedDetailsTest {
         assertThat(subject.getAuthorizationDetails().get(0).get("amount"), is(equalTo("100.00")));
     }
 
+    @Test
+    public void shouldReturnSameConvertedItemOnEveryAccess() {
+        assertThat(subject.getAuthorizationDetails().get(0),
+                is(sameInstance(subject.getAuthorizationDetails().get(0))));
+    }
+
+    @Test
+    public void shouldCountAuthorizationDetails() {
+        assertThat(subject.getAuthorizationDetailsCount(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldResolveValuesByPath() {
+        assertThat(subject.getString(0, "/type"), is(equalTo("payment")));
+        assertThat(subject.getString(0, "/instructedAmount/currency"), is(equalTo("EUR")));
+        assertThat(subject.getString(0, "/instructedAmount/amount"), is(equalTo("42.5")));
+        assertThat(subject.getNumber(0, "/instructedAmount/amount").doubleValue(), is(equalTo(42.5)));
+        assertThat(subject.getString(0, "/actions/1"), is(equalTo("status")));
+        assertThat(subject.getBoolean(0, "/a~1b"), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldReturnNullForMissingOrNonPrimitivePaths() {
+        assertThat(subject.getString(0, "/missing"), is(nullValue()));
+        assertThat(subject.getString(0, "/instructedAmount"), is(nullValue()));
+        assertThat(subject.getString(0, "/actions/2"), is(nullValue()));
+        assertThat(subject.getString(0, "/actions/01"), is(nullValue()));
+        assertThat(subject.getString(0, "/type/nested"), is(nullValue()));
+        assertThat(subject.getNumber(0, "/type"), is(nullValue()));
+        assertThat(subject.getBoolean(0, "/type"), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailWithInvalidPath() {
+        subject.getString(0, "type");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldFailWithInvalidIndex() {
+        subject.getString(1, "/type");
+    }
+
+    @Test
+    public void shouldHandleMissingAuthorizationDetails() {
+        GuardianRichConsentRequestedDetails details = new GuardianRichConsentRequestedDetails(
+                "https://api.com",
+                new String[]{"openid"},
+                "binding_message",
+                null
+        );
+        assertThat(details.getAuthorizationDetails().isEmpty(), is(equalTo(true)));
+        assertThat(details.getAuthorizationDetailsCount(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldReadValuesWithDefaultMethodsOfOtherImplementations() {
+        // implements only the methods that existed before the JSON Pointer accessors
+        final List<Map<String, Object>> details = subject.getAuthorizationDetails();
+        RichConsentRequestedDetails other = new RichConsentRequestedDetails() {
+            @NonNull
+            @Override
+            public String getAudience() {
+                return "https://api.com";
+            }
+
+            @NonNull
+            @Override
+            public String[] getScope() {
+                return new String[]{"openid"};
+            }
+
+            @Override
+            public String getBindingMessage() {
+                return null;
+            }
+
+            @Override
+            public List<Map<String, Object>> getAuthorizationDetails() {
+                return details;
+            }
+
+            @Override
+            public <T> List<T> filterAuthorizationDetailsByType(@NonNull Class<T> clazz) {
+                return Collections.emptyList();
+            }
+        };
+
+        assertThat(other.getAuthorizationDetailsCount(), is(equalTo(1)));
+        assertThat(other.getString(0, "/type"), is(equalTo("payment")));
+        assertThat(other.getNumber(0, "/instructedAmount/amount").doubleValue(), is(equalTo(42.5)));
+        assertThat(other.getBoolean(0, "/a~1b"), is(equalTo(true)));
+        assertThat(other.getString(0, "/actions/1"), is(equalTo("status")));
+        assertThat(other.getString(0, "/missing"), is(nullValue()));
+    }
+
     @Test(expected = GuardianException.class)
     public void getAuthorizationDetailsShouldFailWhenUsedWithANonAnnotatedType() {
         subject.filterAuthorizationDetailsByType(NotAnnotatedPaymentIntentTestingAuthorizationDetailsType.class);
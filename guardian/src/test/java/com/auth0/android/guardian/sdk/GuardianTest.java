@@ -24,6 +24,7 @@ package com.auth0.android.guardian.sdk;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
@@ -31,14 +32,21 @@ import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
 import android.net.Uri;
 
+import com.auth0.android.guardian.sdk.networking.Callback;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -46,6 +54,8 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
@@ -55,6 +65,8 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
@@ -177,7 +189,34 @@ public class GuardianTest {
         verify(guardianAPIClient).device(DEVICE_ID, USER, privateKey);
         verify(deviceApiClient).delete();
 
-        assertThat(request, is(sameInstance(mockRequest)));
+        assertThat(request, is(instanceOf(DeleteRequest.class)));
+        DeleteRequest deleteRequest = (DeleteRequest) request;
+
+        assertThat(deleteRequest.request, is(sameInstance(mockRequest)));
+        assertThat(deleteRequest.client, is(sameInstance(guardianAPIClient)));
+        assertThat(deleteRequest.deviceIdentifier, is(equalTo(DEVICE_ID)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDeleteAllEnrollments() throws Exception {
+        GuardianAPIRequest<Void> mockRequest = mock(GuardianAPIRequest.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Callback<Void>) invocation.getArgument(0)).onSuccess(null);
+                return null;
+            }
+        }).when(mockRequest).start(any(Callback.class));
+        when(deviceApiClient.delete())
+                .thenReturn(mockRequest);
+
+        BulkResult<Void> result = guardian.deleteAll(Arrays.asList(enrollment, enrollment)).execute();
+
+        verify(guardianAPIClient, times(2)).device(DEVICE_ID, USER, privateKey);
+        verify(guardianAPIClient, times(2)).invalidateDeviceToken(DEVICE_ID);
+        assertThat(result.getItems(), hasSize(2));
+        assertThat(result.getSuccessCount(), is(2));
     }
 
     @Test
@@ -247,6 +286,102 @@ public class GuardianTest {
         assertThat(request, is(sameInstance(mockRequest)));
     }
 
+    @Test
+    public void shouldFailAllowIfTransactionExpired() throws Exception {
+        Guardian.getServerClock().setOffsetMillis(0);
+        when(notification.getTransactionToken())
+                .thenReturn(createTransactionToken(-1000));
+
+        GuardianAPIRequest<Void> request = guardian.allow(notification, enrollment);
+
+        verify(guardianAPIClient, never())
+                .allow(any(String.class), any(String.class), any(String.class), any(PrivateKey.class));
+        assertTransactionExpired(request);
+    }
+
+    @Test
+    public void shouldFailRejectIfTransactionExpired() throws Exception {
+        Guardian.getServerClock().setOffsetMillis(0);
+        when(notification.getTransactionToken())
+                .thenReturn(createTransactionToken(-1000));
+
+        GuardianAPIRequest<Void> request = guardian.reject(notification, enrollment, "reason");
+
+        verify(guardianAPIClient, never())
+                .reject(any(String.class), any(String.class), any(String.class), any(PrivateKey.class), any(String.class));
+        assertTransactionExpired(request);
+    }
+
+    @Test
+    public void shouldFailFetchIfTransactionExpired() throws Exception {
+        Guardian.getServerClock().setOffsetMillis(0);
+        when(notification.getTransactionToken())
+                .thenReturn(createTransactionToken(-1000));
+
+        GuardianAPIRequest<RichConsent> request = guardian.fetchConsent(notification, enrollment);
+
+        verify(richConsentsAPIClient, never())
+                .fetch(any(String.class), any(String.class), any(PrivateKey.class), any(PublicKey.class));
+        assertTransactionExpired(request);
+    }
+
+    @Test
+    public void shouldFailExpiredTransactionAfterMarginWhileServerOffsetIsUnknown() throws Exception {
+        when(notification.getTransactionToken())
+                .thenReturn(createTransactionToken(-1000));
+
+        // the device clock could be ahead of the server
+        assertThat(Guardian.checkExpiration(notification, new ServerClock()), is(nullValue()));
+
+        ServerClock synchronizedClock = new ServerClock();
+        synchronizedClock.setOffsetMillis(0);
+        assertThat(Guardian.checkExpiration(notification, synchronizedClock), is(not(nullValue())));
+
+        when(notification.getTransactionToken())
+                .thenReturn(createTransactionToken(-ServerClock.UNKNOWN_OFFSET_MARGIN_MILLIS - 1000));
+        assertThat(Guardian.checkExpiration(notification, new ServerClock()), is(not(nullValue())));
+    }
+
+    @Test
+    public void shouldNotFailTransactionWithoutExpiration() throws Exception {
+        when(notification.getTransactionToken()).thenReturn("TRANSACTION_TOKEN");
+
+        assertThat(Guardian.checkExpiration(notification, new ServerClock()), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCallAllowIfTransactionNotExpired() throws Exception {
+        String transactionToken = createTransactionToken(60000);
+        when(notification.getTransactionToken())
+                .thenReturn(transactionToken);
+        when(notification.getChallenge())
+                .thenReturn(CHALLENGE);
+
+        @SuppressWarnings("unchecked")
+        GuardianAPIRequest<Void> mockRequest = mock(GuardianAPIRequest.class);
+        when(guardianAPIClient.allow(transactionToken, DEVICE_IDENTIFIER, CHALLENGE, privateKey))
+                .thenReturn(mockRequest);
+
+        GuardianAPIRequest<Void> request = guardian.allow(notification, enrollment);
+
+        assertThat(request, is(sameInstance(mockRequest)));
+    }
+
+    @Test
+    public void shouldReturnTransactionValidity() throws Exception {
+        when(notification.getTransactionToken())
+                .thenReturn(createTransactionToken(60000));
+
+        long validity = Guardian.getTransactionValidityMillis(notification);
+
+        assertThat(validity > 50000 && validity <= 60000, is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldReturnUnknownTransactionValidity() throws Exception {
+        assertThat(Guardian.getTransactionValidityMillis(notification), is(equalTo(Long.MAX_VALUE)));
+    }
+
     @Test
     public void shouldBuildWithUrl() throws Exception {
         Guardian guardian = new Guardian.Builder()
@@ -278,6 +413,16 @@ public class GuardianTest {
                 is(equalTo("https://example.guardian.auth0.com/")));
     }
 
+    @Test
+    public void shouldBuildWithBuiltInHmac() throws Exception {
+        new Guardian.Builder()
+                .domain("example.guardian.auth0.com")
+                .useBuiltInHmac()
+                .build();
+
+        assertThat(Guardian.OTP_CODES.isBuiltInHmac(), is(equalTo(true)));
+    }
+
     @Test
     public void shouldFailIfDomainWasAlreadySet() throws Exception {
         exception.expect(IllegalArgumentException.class);
@@ -384,6 +529,17 @@ public class GuardianTest {
         String code = Guardian.getOTPCode(enrollment);
     }
 
+    @Test
+    public void shouldMarkNotificationAsSeen() throws Exception {
+        Notification received = mock(Notification.class);
+        when(received.getEnrollmentId()).thenReturn("seen_enrollment");
+        when(received.getChallenge()).thenReturn("seen_challenge");
+        when(received.getTransactionToken()).thenReturn("seen_transaction");
+
+        assertThat(Guardian.markSeen(received), is(equalTo(false)));
+        assertThat(Guardian.markSeen(received), is(equalTo(true)));
+    }
+
     private String createEnrollmentUri() {
         return Uri.parse(
                 "otpauth://totp/" +
@@ -398,4 +554,28 @@ public class GuardianTest {
                         "&base_url=" + GUARDIAN_URL
         ).toString();
     }
-}
\ No newline at end of file
+
+    private static String createTransactionToken(long expiresInMillis) {
+        long expiresAt = Guardian.getServerClock().currentTimeMillis() + expiresInMillis;
+        return JWT.create()
+                .withExpiresAt(new Date(expiresAt))
+                .sign(Algorithm.HMAC256("secret"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void assertTransactionExpired(GuardianAPIRequest<T> request) throws Exception {
+        try {
+            request.execute();
+            throw new AssertionError("Expected the request to fail");
+        } catch (GuardianException e) {
+            assertThat(e.isTransactionExpired(), is(equalTo(true)));
+        }
+
+        Callback<T> callback = mock(Callback.class);
+        request.start(callback);
+        ArgumentCaptor<Throwable> captor = ArgumentCaptor.forClass(Throwable.class);
+        verify(callback, timeout(1000)).onFailure(captor.capture());
+        verify(callback, never()).onSuccess(any());
+        assertThat(((GuardianException) captor.getValue()).isTransactionExpired(), is(equalTo(true)));
+    }
+}
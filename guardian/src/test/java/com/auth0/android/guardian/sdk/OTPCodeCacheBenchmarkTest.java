@@ -0,0 +1,154 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import com.auth0.android.guardian.sdk.otp.utils.Base32;
+import com.auth0.android.guardian.sdk.utils.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how {@link OTPCodeCache#getCodes} scales with the amount of cores. Every round moves
+ * to the next period, so all the codes are computed again and only the generators are reused.
+ * <p>
+ * Only runs when the benchmarks are enabled, see {@link Benchmark}.
+ */
+public class OTPCodeCacheBenchmarkTest {
+
+    private static final int ENROLLMENTS = 512;
+    private static final int WARM_UP_ROUNDS = 50;
+    private static final int ROUNDS = 200;
+    private static final int[] PARALLELISM = {1, 2, 4, 8};
+
+    private List<Enrollment> enrollments;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+
+        Random random = new Random(42);
+        enrollments = new ArrayList<>(ENROLLMENTS);
+        for (int i = 0; i < ENROLLMENTS; i++) {
+            byte[] secret = new byte[20];
+            random.nextBytes(secret);
+            enrollments.add(new BenchmarkEnrollment("dev_" + i, Base32.encode(secret)));
+        }
+    }
+
+    @Test
+    public void shouldScaleWithAvailableCores() throws Exception {
+        String[] expected = new String[ENROLLMENTS];
+        new OTPCodeCache(ENROLLMENTS).getCodes(enrollments, expected, 0, new ForkJoinPool(1));
+
+        double baseline = 0;
+        for (int parallelism : PARALLELISM) {
+            final OTPCodeCache cache = new OTPCodeCache(ENROLLMENTS);
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            final String[] out = new String[ENROLLMENTS];
+            try {
+                Benchmark.Result result = Benchmark.measure(WARM_UP_ROUNDS, ROUNDS, new Benchmark.Task() {
+                    private long timeSecs = 0;
+
+                    @Override
+                    public long run() {
+                        cache.getCodes(enrollments, out, timeSecs += 30, pool);
+                        return out[0].hashCode();
+                    }
+                });
+                double millisPerRound = result.nanos / 1e6;
+                if (baseline == 0) {
+                    baseline = millisPerRound;
+                }
+                Benchmark.report("%d enrollments, %d cores: %.3f ms per round (%.2fx)",
+                        ENROLLMENTS, parallelism, millisPerRound, baseline / millisPerRound);
+
+                cache.getCodes(enrollments, out, 0, pool);
+                for (int i = 0; i < ENROLLMENTS; i++) {
+                    assertThat(out[i], is(equalTo(expected[i])));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static class BenchmarkEnrollment implements Enrollment {
+        private final String id;
+        private final String secret;
+
+        BenchmarkEnrollment(String id, String secret) {
+            this.id = id;
+            this.secret = secret;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getUserId() {
+            return null;
+        }
+
+        @Override
+        public Integer getPeriod() {
+            return 30;
+        }
+
+        @Override
+        public Integer getDigits() {
+            return 6;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "SHA1";
+        }
+
+        @Override
+        public String getSecret() {
+            return secret;
+        }
+
+        @Override
+        public String getDeviceIdentifier() {
+            return null;
+        }
+
+        @Override
+        public String getDeviceName() {
+            return null;
+        }
+
+        @Override
+        public String getNotificationToken() {
+            return null;
+        }
+
+        @Override
+        public String getDeviceToken() {
+            return null;
+        }
+
+        @Override
+        public PrivateKey getSigningKey() {
+            return null;
+        }
+
+        @Override
+        public PublicKey getPublicKey() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class OTPCodeCacheTest {
+
+    // "12345678901234567890", the RFC 6238 seed for HMAC-SHA1
+    private static final String SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+    private static final String OTHER_SECRET = "JBSWY3DPEHPK3PXP";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    OTPCodeCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new OTPCodeCache(2);
+    }
+
+    @Test
+    public void shouldReturnRFCCode() {
+        Enrollment enrollment = enrollment("dev_1", SECRET);
+
+        assertThat(cache.getCode(enrollment, 59), is(equalTo("94287082")));
+        assertThat(cache.getCode(enrollment, 1111111109), is(equalTo("07081804")));
+        assertThat(cache.getCode(enrollment, 1111111111), is(equalTo("14050471")));
+    }
+
+    @Test
+    public void shouldUseSecurityProvidersUnlessBuiltInHmacIsEnabled() {
+        Enrollment enrollment = enrollment("dev_1", SECRET);
+        assertThat(cache.isBuiltInHmac(), is(equalTo(false)));
+        String first = cache.getCode(enrollment, 1111111110);
+
+        cache.setBuiltInHmac(true);
+
+        assertThat(cache.isBuiltInHmac(), is(equalTo(true)));
+        String second = cache.getCode(enrollment, 1111111119);
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(second, is(equalTo(first)));
+    }
+
+    @Test
+    public void shouldReuseCodeWithinTheSamePeriod() {
+        Enrollment enrollment = enrollment("dev_1", SECRET);
+
+        String first = cache.getCode(enrollment, 1111111110);
+        String second = cache.getCode(enrollment, 1111111119);
+
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    public void shouldGenerateNewCodeForNextPeriod() {
+        Enrollment enrollment = enrollment("dev_1", SECRET);
+
+        String first = cache.getCode(enrollment, 1111111109);
+        String second = cache.getCode(enrollment, 1111111111);
+
+        assertThat(first, is(equalTo("07081804")));
+        assertThat(second, is(equalTo("14050471")));
+    }
+
+    @Test
+    public void shouldNotReuseCodeWhenOTPDataChanges() {
+        Enrollment enrollment = enrollment("dev_1", SECRET);
+        String first = cache.getCode(enrollment, 59);
+
+        when(enrollment.getSecret()).thenReturn(OTHER_SECRET);
+        String second = cache.getCode(enrollment, 59);
+        when(enrollment.getSecret()).thenReturn(SECRET);
+        when(enrollment.getDigits()).thenReturn(6);
+        String third = cache.getCode(enrollment, 59);
+
+        assertThat(first, is(equalTo("94287082")));
+        assertThat(second, is(not(equalTo(first))));
+        assertThat(third, is(equalTo("287082")));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEnrollment() {
+        Enrollment first = enrollment("dev_1", SECRET);
+        Enrollment second = enrollment("dev_2", SECRET);
+        Enrollment third = enrollment("dev_3", SECRET);
+
+        String code = cache.getCode(first, 59);
+        cache.getCode(second, 59);
+        cache.getCode(first, 59);
+        cache.getCode(third, 59);
+
+        assertThat(cache.size(), is(equalTo(2)));
+        assertThat(cache.getCode(first, 59), is(sameInstance(code)));
+    }
+
+    @Test
+    public void shouldInvalidateEnrollment() {
+        Enrollment enrollment = enrollment("dev_1", SECRET);
+        String first = cache.getCode(enrollment, 59);
+
+        cache.invalidate("dev_1");
+
+        assertThat(cache.size(), is(equalTo(0)));
+        String second = cache.getCode(enrollment, 59);
+        assertThat(second, is(equalTo(first)));
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void shouldNotCacheEnrollmentWithoutId() {
+        Enrollment enrollment = enrollment(null, SECRET);
+
+        assertThat(cache.getCode(enrollment, 59), is(equalTo("94287082")));
+        assertThat(cache.size(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldThrowIfSecretIsInvalid() {
+        exception.expect(IllegalArgumentException.class);
+
+        cache.getCode(enrollment("dev_1", "THIS_IS_AN_INVALID_BASE32_SECRET_ñññ\n@"), 59);
+    }
+
+    @Test
+    public void shouldWriteCodesOfSmallBatch() {
+        List<Enrollment> enrollments = Arrays.asList(
+                enrollment("dev_1", SECRET),
+                enrollment("dev_2", null),
+                enrollment(null, SECRET));
+        String[] out = new String[4];
+
+        cache.getCodes(enrollments, out, 59, OTPCodeCache.bulkPool());
+
+        assertThat(out[0], is(equalTo("94287082")));
+        assertThat(out[1], is(nullValue()));
+        assertThat(out[2], is(equalTo("94287082")));
+        assertThat(out[3], is(nullValue()));
+    }
+
+    @Test
+    public void shouldWriteCodesOfLargeBatchInParallel() {
+        OTPCodeCache cache = new OTPCodeCache(OTPCodeCache.DEFAULT_MAX_SIZE);
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (int i = 0; i < OTPCodeCache.BULK_THRESHOLD * 4 + 1; i++) {
+            enrollments.add(enrollment("dev_" + i, i % 2 == 0 ? SECRET : OTHER_SECRET));
+        }
+        String[] out = new String[enrollments.size()];
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            cache.getCodes(enrollments, out, 1111111111, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        String otherCode = cache.getCode(enrollment(null, OTHER_SECRET), 1111111111);
+        for (int i = 0; i < out.length; i++) {
+            assertThat(out[i], is(equalTo(i % 2 == 0 ? "14050471" : otherCode)));
+        }
+        assertThat(cache.size(), is(equalTo(enrollments.size())));
+    }
+
+    @Test
+    public void shouldFailWhenCodesDoNotFitInArray() {
+        exception.expect(IndexOutOfBoundsException.class);
+
+        cache.getCodes(Arrays.asList(enrollment("dev_1", SECRET), enrollment("dev_2", SECRET)),
+                new String[1], 59, OTPCodeCache.bulkPool());
+    }
+
+    @Test
+    public void shouldComputeLargeBatchesInTheSDKPool() {
+        final Set<ForkJoinPool> pools = Collections.newSetFromMap(new ConcurrentHashMap<ForkJoinPool, Boolean>());
+        List<Enrollment> enrollments = new ArrayList<>();
+        for (int i = 0; i < OTPCodeCache.BULK_THRESHOLD * 2 + 1; i++) {
+            Enrollment enrollment = enrollment("dev_bulk_" + i, SECRET);
+            when(enrollment.getSecret()).thenAnswer(new Answer<String>() {
+                @Override
+                public String answer(InvocationOnMock invocation) {
+                    pools.add(ForkJoinTask.getPool());
+                    return SECRET;
+                }
+            });
+            enrollments.add(enrollment);
+        }
+        String[] out = new String[enrollments.size()];
+
+        Guardian.getOTPCodes(enrollments, out);
+
+        assertThat(pools, contains(OTPCodeCache.bulkPool()));
+        assertThat(OTPCodeCache.bulkPool(), is(not(sameInstance(ForkJoinPool.commonPool()))));
+        for (String code : out) {
+            assertThat(code, is(notNullValue()));
+        }
+    }
+
+    private static Enrollment enrollment(String id, String secret) {
+        Enrollment enrollment = mock(Enrollment.class);
+        when(enrollment.getId()).thenReturn(id);
+        when(enrollment.getSecret()).thenReturn(secret);
+        when(enrollment.getAlgorithm()).thenReturn("SHA1");
+        when(enrollment.getDigits()).thenReturn(8);
+        when(enrollment.getPeriod()).thenReturn(30);
+        return enrollment;
+    }
+}
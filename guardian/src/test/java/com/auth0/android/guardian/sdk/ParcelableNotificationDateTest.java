@@ -0,0 +1,93 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class ParcelableNotificationDateTest {
+
+    private SimpleDateFormat format;
+
+    @Before
+    public void setUp() {
+        format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    public void shouldParseEpoch() {
+        assertThat(ParcelableNotification.parseDateMillis("1970-01-01T00:00:00.000Z"), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldParseDate() {
+        assertThat(ParcelableNotification.parseDateMillis("2016-07-21T14:58:49.123Z"),
+                is(equalTo(1469113129123L)));
+    }
+
+    @Test
+    public void shouldParseLeapDays() throws Exception {
+        String[] dates = {"2000-02-29T23:59:59.999Z", "2016-02-29T00:00:00.000Z", "2400-02-29T12:00:00.000Z"};
+        for (String date : dates) {
+            assertThat(date, ParcelableNotification.parseDateMillis(date), is(equalTo(format.parse(date).getTime())));
+        }
+    }
+
+    @Test
+    public void shouldParseSameAsDateFormat() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            // from 1900 to 2400
+            long millis = -2208988800000L + (long) (random.nextDouble() * 15778800000000L);
+            String date = format.format(new Date(millis));
+
+            assertThat(date, ParcelableNotification.parseDateMillis(date), is(equalTo(millis)));
+        }
+    }
+
+    @Test
+    public void shouldRejectOtherFormats() {
+        String[] dates = {
+                "",
+                "2016-07-21T14:58:49Z",
+                "2016-07-21T14:58:49.123+01:00",
+                "2016-07-21 14:58:49.123Z",
+                "2016/07/21T14:58:49.123Z",
+                "2016-07-21T14:58:49.12aZ",
+                "-016-07-21T14:58:49.123Z",
+                "this date cannot be parsed"
+        };
+        for (String date : dates) {
+            assertThat(date, ParcelableNotification.parseDateMillis(date), is(equalTo(ParcelableNotification.INVALID_DATE)));
+        }
+    }
+
+    @Test
+    public void shouldRejectOutOfRangeFields() {
+        String[] dates = {
+                "2016-00-21T14:58:49.123Z",
+                "2016-13-21T14:58:49.123Z",
+                "2016-07-00T14:58:49.123Z",
+                "2016-07-32T14:58:49.123Z",
+                "2015-02-29T14:58:49.123Z",
+                "1900-02-29T14:58:49.123Z",
+                "2016-04-31T14:58:49.123Z",
+                "2016-07-21T24:58:49.123Z",
+                "2016-07-21T14:60:49.123Z",
+                "2016-07-21T14:58:60.123Z",
+                "0000-07-21T14:58:49.123Z"
+        };
+        for (String date : dates) {
+            assertThat(date, ParcelableNotification.parseDateMillis(date), is(equalTo(ParcelableNotification.INVALID_DATE)));
+        }
+    }
+}
@@ -289,6 +289,53 @@ public class ParcelableNotificationTest {
         assertThat(notification.getChallenge(), is(CHALLENGE));
     }
 
+    @Test
+    public void shouldKeepRawSourceAndLocationAfterParcel() {
+        Date currentDate = new Date();
+        Map<String, String> mapData = createPushNotificationPayload(
+                HOSTNAME_HTTPS, DEVICE_ID, TRANSACTION_TOKEN, currentDate, CHALLENGE);
+        ParcelableNotification originalNotification = ParcelableNotification.parse(mapData);
+
+        Parcel parcel = Parcel.obtain();
+        originalNotification.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        ParcelableNotification notification = ParcelableNotification.CREATOR.createFromParcel(parcel);
+
+        assertThat(notification, is(notNullValue()));
+        assertThat(notification.getDate(), is(equalTo(currentDate)));
+        assertThat(notification.getBrowserName(), is(equalTo(BROWSER_NAME)));
+        assertThat(notification.getBrowserVersion(), is(equalTo(BROWSER_VERSION)));
+        assertThat(notification.getOsName(), is(equalTo(OS_NAME)));
+        assertThat(notification.getOsVersion(), is(equalTo(OS_VERSION)));
+        assertThat(notification.getLocation(), is(equalTo(LOCATION)));
+        assertThat(notification.getLatitude(), is(equalTo(LATITUDE)));
+        assertThat(notification.getLongitude(), is(equalTo(LONGITUDE)));
+        assertThat(notification.getChallenge(), is(equalTo(CHALLENGE)));
+
+        // decoding doesn't change what gets written
+        Parcel decodedParcel = Parcel.obtain();
+        notification.writeToParcel(decodedParcel, 0);
+        assertThat(decodedParcel.marshall(), is(equalTo(parcel.marshall())));
+    }
+
+    @Test
+    public void shouldParseNotificationWithInvalidSourceAndLocation() {
+        Map<String, String> mapData = createPushNotificationPayload(
+                HOSTNAME, DEVICE_ID, TRANSACTION_TOKEN, new Date(), CHALLENGE);
+        mapData.put("s", "{not json");
+        mapData.put("l", "[]");
+
+        ParcelableNotification notification = ParcelableNotification.parse(mapData);
+
+        assertThat(notification, is(notNullValue()));
+        assertThat(notification.getTransactionToken(), is(equalTo(TRANSACTION_TOKEN)));
+        assertThat(notification.getChallenge(), is(equalTo(CHALLENGE)));
+        assertThat(notification.getBrowserName(), is(nullValue()));
+        assertThat(notification.getOsName(), is(nullValue()));
+        assertThat(notification.getLocation(), is(nullValue()));
+        assertThat(notification.getLatitude(), is(nullValue()));
+    }
+
     @Test
     public void shouldReturnNullSource() {
         Map<String, String> mapData = createPushNotificationPayload(
@@ -0,0 +1,272 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import okhttp3.HttpUrl;
+
+public class PendingNotificationStoreTest {
+
+    private static final long NOW = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    long now;
+    ServerClock clock;
+    File file;
+
+    @Before
+    public void setUp() throws Exception {
+        now = NOW;
+        clock = new ServerClock(new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        clock.setOffsetMillis(0);
+        file = new File(folder.getRoot(), "pending");
+    }
+
+    @Test
+    public void shouldListPendingNotificationsAfterRestart() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        store.add(notification("tx2", NOW - 1000, NOW + 60000));
+        store.add(notification("tx1", NOW - 2000, NOW + 60000));
+
+        List<ParcelableNotification> pending = new PendingNotificationStore(file, clock).getPending();
+
+        assertThat(pending, hasSize(2));
+        ParcelableNotification first = pending.get(0);
+        assertThat(first.getTransactionToken(), is(equalTo(token("tx1", NOW + 60000))));
+        assertThat(first.getDate(), is(equalTo(new Date(NOW - 2000))));
+        assertThat(first.getUrl(), is(equalTo("https://tenant.guardian.auth0.com/")));
+        assertThat(first.getEnrollmentId(), is(equalTo("dev_1")));
+        assertThat(first.getChallenge(), is(equalTo("challenge_tx1")));
+        assertThat(first.getTransactionLinkingId(), is(equalTo("txl_tx1")));
+        assertThat(first.getBrowserName(), is(equalTo("Chrome")));
+        assertThat(first.getOsVersion(), is(equalTo("13")));
+        assertThat(first.getLocation(), is(equalTo("Buenos Aires")));
+        assertThat(first.getLatitude(), is(equalTo(-34.6)));
+        assertThat(pending.get(1).getChallenge(), is(equalTo("challenge_tx2")));
+    }
+
+    @Test
+    public void shouldKeepDecodedNotifications() throws Exception {
+        ParcelableNotification notification = new ParcelableNotification(
+                HttpUrl.parse("https://tenant.guardian.auth0.com/"), "dev_1", token("tx1", NOW + 60000),
+                new Date(NOW), "OS", null, "BROWSER", "1.0", null, 1.5, null, null, "challenge");
+        new PendingNotificationStore(file, clock).add(notification);
+
+        ParcelableNotification loaded = new PendingNotificationStore(file, clock).getPending().get(0);
+
+        assertThat(loaded.getOsName(), is(equalTo("OS")));
+        assertThat(loaded.getOsVersion(), is(equalTo(null)));
+        assertThat(loaded.getBrowserName(), is(equalTo("BROWSER")));
+        assertThat(loaded.getBrowserVersion(), is(equalTo("1.0")));
+        assertThat(loaded.getLocation(), is(equalTo(null)));
+        assertThat(loaded.getLatitude(), is(equalTo(1.5)));
+        assertThat(loaded.getLongitude(), is(equalTo(null)));
+        assertThat(loaded.getTransactionLinkingId(), is(equalTo(null)));
+    }
+
+    @Test
+    public void shouldRemoveNotifications() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        ParcelableNotification notification = notification("tx1", NOW, NOW + 60000);
+        store.add(notification);
+        store.add(notification("tx2", NOW, NOW + 60000));
+
+        assertThat(store.remove(notification), is(equalTo(true)));
+        assertThat(store.remove(notification), is(equalTo(false)));
+
+        List<ParcelableNotification> pending = new PendingNotificationStore(file, clock).getPending();
+        assertThat(pending, hasSize(1));
+        assertThat(pending.get(0).getChallenge(), is(equalTo("challenge_tx2")));
+    }
+
+    @Test
+    public void shouldNotAddTwice() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+
+        assertThat(store.add(notification("tx1", NOW, NOW + 60000)), is(equalTo(true)));
+        assertThat(store.add(notification("tx1", NOW, NOW + 60000)), is(equalTo(false)));
+        assertThat(new PendingNotificationStore(file, clock).getPending(), hasSize(1));
+    }
+
+    @Test
+    public void shouldNotAddExpiredNotifications() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+
+        assertThat(store.add(notification("tx1", NOW - 60000, NOW)), is(equalTo(false)));
+        assertThat(store.getPending(), is(empty()));
+    }
+
+    @Test
+    public void shouldDropNotificationsWhenTheyExpire() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        store.add(notification("tx1", NOW, NOW + 1000));
+        store.add(notification("tx2", NOW, NOW + 60000));
+
+        now += 1000;
+
+        assertThat(store.getPending(), hasSize(1));
+        assertThat(new PendingNotificationStore(file, clock).getPending(), hasSize(1));
+    }
+
+    @Test
+    public void shouldKeepNotificationsLongerWhileServerOffsetIsUnknown() throws Exception {
+        ServerClock unsynchronized = new ServerClock(new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        PendingNotificationStore store = new PendingNotificationStore(file, unsynchronized);
+
+        assertThat(store.add(notification("tx1", NOW - 2000, NOW - 1000)), is(equalTo(true)));
+
+        now += ServerClock.UNKNOWN_OFFSET_MARGIN_MILLIS - 1000;
+        assertThat(store.getPending(), is(empty()));
+    }
+
+    @Test
+    public void shouldExpireNotificationsWithoutTokenExpirationByDate() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        store.add(notification("TRANSACTION_TOKEN", NOW));
+
+        now += PendingNotificationStore.DEFAULT_MAX_AGE_MILLIS - 1;
+        assertThat(store.getPending(), hasSize(1));
+
+        now += 1;
+        assertThat(store.getPending(), is(empty()));
+    }
+
+    @Test
+    public void shouldCompactWhenMostRecordsAreNotNeeded() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        store.add(notification("pending", NOW, NOW + 60000));
+        long sizeWithOne = file.length();
+
+        // every add and remove leaves two unneeded records
+        for (int i = 0; i <= PendingNotificationStore.MIN_RECORDS_TO_COMPACT / 2; i++) {
+            ParcelableNotification notification = notification("tx" + i, NOW, NOW + 60000);
+            store.add(notification);
+            store.remove(notification);
+        }
+
+        assertThat(store.getUnneededRecords(), is(equalTo(0)));
+        assertThat(file.length(), is(equalTo(sizeWithOne)));
+        assertThat(new PendingNotificationStore(file, clock).getPending(), hasSize(1));
+    }
+
+    @Test
+    public void shouldCompactExpiredNotificationsOnLoad() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        for (int i = 0; i <= PendingNotificationStore.MIN_RECORDS_TO_COMPACT; i++) {
+            store.add(notification("tx" + i, NOW, NOW + 1000));
+        }
+        long fullSize = file.length();
+
+        now += 1000;
+        PendingNotificationStore reloaded = new PendingNotificationStore(file, clock);
+
+        assertThat(reloaded.getPending(), is(empty()));
+        assertThat(file.length(), is(lessThan(fullSize / 10)));
+    }
+
+    @Test
+    public void shouldIgnoreIncompleteRecordAtTheEnd() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        store.add(notification("tx1", NOW, NOW + 60000));
+        store.add(notification("tx2", NOW, NOW + 60000));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 10);
+        raf.close();
+
+        PendingNotificationStore reloaded = new PendingNotificationStore(file, clock);
+        assertThat(reloaded.getPending(), hasSize(1));
+
+        reloaded.add(notification("tx3", NOW, NOW + 60000));
+        assertThat(new PendingNotificationStore(file, clock).getPending(), hasSize(2));
+    }
+
+    @Test
+    public void shouldStartOverWithUnknownFile() throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("{\"not\":\"a store\"}".getBytes());
+        out.close();
+
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        assertThat(store.getPending(), is(empty()));
+
+        store.add(notification("tx1", NOW, NOW + 60000));
+        assertThat(new PendingNotificationStore(file, clock).getPending(), hasSize(1));
+    }
+
+    @Test
+    public void shouldClear() throws Exception {
+        PendingNotificationStore store = new PendingNotificationStore(file, clock);
+        store.add(notification("tx1", NOW, NOW + 60000));
+
+        store.clear();
+
+        assertThat(file.exists(), is(equalTo(false)));
+        assertThat(store.getPending(), is(empty()));
+        assertThat(new PendingNotificationStore(file, clock).getPending(), is(empty()));
+    }
+
+    private static String token(String transactionId, long expiresAt) {
+        return JWT.create()
+                .withSubject(transactionId)
+                .withExpiresAt(new Date(expiresAt))
+                .sign(Algorithm.HMAC256("secret"));
+    }
+
+    private static ParcelableNotification notification(String transactionId, long date, long expiresAt) {
+        return notification(token(transactionId, expiresAt), date, transactionId);
+    }
+
+    private static ParcelableNotification notification(String transactionToken, long date) {
+        return notification(transactionToken, date, "tx");
+    }
+
+    private static ParcelableNotification notification(String transactionToken, long date, String transactionId) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Map<String, String> payload = new HashMap<>();
+        payload.put("sh", "tenant.guardian.auth0.com");
+        payload.put("dai", "dev_1");
+        payload.put("txtkn", transactionToken);
+        payload.put("txlnkid", "txl_" + transactionId);
+        payload.put("c", "challenge_" + transactionId);
+        payload.put("d", format.format(new Date(date)));
+        payload.put("s", "{\"b\":{\"v\":\"103.0\",\"n\":\"Chrome\"},\"os\":{\"v\":\"13\",\"n\":\"Mac OS\"}}");
+        payload.put("l", "{\"n\":\"Buenos Aires\",\"lat\":\"-34.6\",\"long\":\"-58.38\"}");
+        return ParcelableNotification.parse(payload);
+    }
+}
@@ -0,0 +1,269 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class PendingTransactionQueueTest {
+
+    private static final long NOW = 1700000000000L;
+
+    long now;
+    ServerClock clock;
+
+    @Before
+    public void setUp() {
+        now = NOW;
+        clock = new ServerClock(new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        clock.setOffsetMillis(0);
+    }
+
+    @Test
+    public void shouldHandOutByDate() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+        Notification second = notification("tx2", NOW - 2000, NOW + 60000);
+        Notification third = notification("tx3", NOW - 1000, NOW + 60000);
+        Notification first = notification("tx1", NOW - 3000, NOW + 60000);
+
+        queue.offer(second);
+        queue.offer(third);
+        queue.offer(first);
+
+        assertThat(queue.poll(), is(sameInstance(first)));
+        assertThat(queue.poll(), is(sameInstance(second)));
+        assertThat(queue.poll(), is(sameInstance(third)));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepArrivalOrderForSameDate() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+        Notification first = notification("tx1", NOW, NOW + 60000);
+        Notification second = notification("tx2", NOW, NOW + 60000);
+
+        queue.offer(first);
+        queue.offer(second);
+
+        assertThat(queue.poll(), is(sameInstance(first)));
+        assertThat(queue.poll(), is(sameInstance(second)));
+    }
+
+    @Test
+    public void shouldRejectExpiredTransactions() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+
+        assertThat(queue.offer(notification("tx1", NOW - 60000, NOW)), is(equalTo(false)));
+        assertThat(queue.size(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldDropTransactionsThatExpireWhileQueued() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+        Notification expiring = notification("tx1", NOW - 2000, NOW + 1000);
+        Notification valid = notification("tx2", NOW - 1000, NOW + 60000);
+        queue.offer(expiring);
+        queue.offer(valid);
+
+        now += 1000;
+
+        assertThat(queue.poll(), is(sameInstance(valid)));
+        assertThat(queue.size(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldKeepTransactionsLongerWhileServerOffsetIsUnknown() {
+        ServerClock unsynchronized = new ServerClock(new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, unsynchronized);
+        Notification expired = notification("tx1", NOW - 2000, NOW - 1000);
+        assertThat(queue.offer(expired), is(equalTo(true)));
+
+        now += ServerClock.UNKNOWN_OFFSET_MARGIN_MILLIS - 1000;
+
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(queue.size(), is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldUseServerTimeForExpiration() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+        clock.setOffsetMillis(2000);
+
+        assertThat(queue.offer(notification("tx1", NOW, NOW + 1000)), is(equalTo(false)));
+        assertThat(queue.offer(notification("tx2", NOW, NOW + 3000)), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldKeepTransactionsWithoutExpiration() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+        Notification notification = mock(Notification.class);
+        when(notification.getTransactionToken()).thenReturn("TRANSACTION_TOKEN");
+        when(notification.getDate()).thenReturn(new Date(NOW));
+
+        assertThat(queue.offer(notification), is(equalTo(true)));
+        assertThat(queue.poll(), is(sameInstance(notification)));
+    }
+
+    @Test
+    public void shouldKeepTransactionsWithoutExpirationWhileServerOffsetIsUnknown() {
+        ServerClock unsynchronized = new ServerClock(new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, unsynchronized);
+        Notification notification = mock(Notification.class);
+        when(notification.getTransactionToken()).thenReturn("TRANSACTION_TOKEN");
+        when(notification.getDate()).thenReturn(new Date(NOW));
+
+        assertThat(queue.offer(notification), is(equalTo(true)));
+        now += 60 * 60 * 1000;
+        assertThat(queue.poll(), is(sameInstance(notification)));
+    }
+
+    @Test
+    public void shouldRejectSameTransactionTwice() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 10, clock);
+
+        assertThat(queue.offer(notification("tx1", NOW, NOW + 60000)), is(equalTo(true)));
+        assertThat(queue.offer(notification("tx1", NOW, NOW + 60000)), is(equalTo(false)));
+        assertThat(queue.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldRejectWhenFull() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(2, 10, clock);
+
+        assertThat(queue.offer(notification("tx1", NOW, NOW + 60000)), is(equalTo(true)));
+        assertThat(queue.offer(notification("tx2", NOW, NOW + 60000)), is(equalTo(true)));
+        assertThat(queue.offer(notification("tx3", NOW, NOW + 60000)), is(equalTo(false)));
+
+        queue.poll();
+        assertThat(queue.offer(notification("tx3", NOW, NOW + 60000)), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldMakeRoomWhenQueuedTransactionsExpire() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(1, 10, clock);
+        queue.offer(notification("tx1", NOW, NOW + 1000));
+
+        now += 1000;
+
+        assertThat(queue.offer(notification("tx2", NOW, NOW + 60000)), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldLimitNotificationsInFlight() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 1, clock);
+        Notification first = notification("tx1", NOW - 2000, NOW + 60000);
+        Notification second = notification("tx2", NOW - 1000, NOW + 60000);
+        queue.offer(first);
+        queue.offer(second);
+
+        assertThat(queue.poll(), is(sameInstance(first)));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(queue.inFlight(), is(equalTo(1)));
+
+        queue.done(first);
+
+        assertThat(queue.poll(), is(sameInstance(second)));
+    }
+
+    @Test
+    public void shouldIgnoreDoneForUnknownNotifications() {
+        PendingTransactionQueue queue = new PendingTransactionQueue(10, 1, clock);
+        queue.offer(notification("tx1", NOW, NOW + 60000));
+        queue.poll();
+
+        queue.done(notification("tx1", NOW, NOW + 60000));
+
+        assertThat(queue.inFlight(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldBlockTakeUntilAvailable() throws Exception {
+        final PendingTransactionQueue queue = new PendingTransactionQueue(10, 1, clock);
+        final Notification first = notification("tx1", NOW - 2000, NOW + 60000);
+        final Notification second = notification("tx2", NOW - 1000, NOW + 60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Callable<Notification> take = new Callable<Notification>() {
+                @Override
+                public Notification call() throws Exception {
+                    return queue.take();
+                }
+            };
+
+            Future<Notification> taken = executor.submit(take);
+            assertNotDone(taken);
+            queue.offer(first);
+            assertThat(taken.get(5, TimeUnit.SECONDS), is(sameInstance(first)));
+
+            queue.offer(second);
+            taken = executor.submit(take);
+            assertNotDone(taken);
+            queue.done(first);
+            assertThat(taken.get(5, TimeUnit.SECONDS), is(sameInstance(second)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePositiveCapacity() {
+        new PendingTransactionQueue(0, 1, clock);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePositiveMaxInFlight() {
+        new PendingTransactionQueue(1, 0, clock);
+    }
+
+    private static void assertNotDone(Future<Notification> future) throws Exception {
+        try {
+            future.get(100, TimeUnit.MILLISECONDS);
+            throw new AssertionError("Expected take() to wait");
+        } catch (TimeoutException e) {
+            // still waiting
+        }
+    }
+
+    private static Notification notification(String transactionId, long date, long expiresAt) {
+        String token = JWT.create()
+                .withSubject(transactionId)
+                .withExpiresAt(new Date(expiresAt))
+                .sign(Algorithm.HMAC256("secret"));
+        Notification notification = mock(Notification.class);
+        when(notification.getTransactionToken()).thenReturn(token);
+        when(notification.getDate()).thenReturn(new Date(date));
+        return notification;
+    }
+}
@@ -0,0 +1,337 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.auth0.android.guardian.sdk.networking.Callback;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class PushTokenRotationTest {
+
+    private static KeyPair keyPair;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    GuardianAPIClient apiClient;
+    ScheduledExecutorService executor;
+    EnrollmentStore store;
+    File file;
+
+    List<Runnable> scheduled;
+    List<Long> delays;
+    List<String> updatedIds;
+    List<Callback<Map<String, Object>>> callbacks;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        file = new File(folder.getRoot(), "rotation");
+        store = new EnrollmentStore(new File(folder.getRoot(), "enrollments"), StorageCiphers.NONE, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        scheduled = new ArrayList<>();
+        delays = new ArrayList<>();
+        executor = mock(ScheduledExecutorService.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((Runnable) invocation.getArgument(0)).run();
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
+        doAnswer(new Answer<ScheduledFuture<?>>() {
+            @Override
+            public ScheduledFuture<?> answer(InvocationOnMock invocation) {
+                scheduled.add((Runnable) invocation.getArgument(0));
+                delays.add((Long) invocation.getArgument(1));
+                return mock(ScheduledFuture.class);
+            }
+        }).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+        updatedIds = new ArrayList<>();
+        callbacks = new ArrayList<>();
+        apiClient = mock(GuardianAPIClient.class);
+        doAnswer(new Answer<DeviceAPIClient>() {
+            @Override
+            public DeviceAPIClient answer(InvocationOnMock invocation) {
+                final String id = invocation.getArgument(0);
+                DeviceAPIClient device = mock(DeviceAPIClient.class);
+                GuardianAPIRequest<Map<String, Object>> request = mock(GuardianAPIRequest.class);
+                doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) {
+                        updatedIds.add(id);
+                        callbacks.add((Callback<Map<String, Object>>) invocation.getArgument(0));
+                        return null;
+                    }
+                }).when(request).start(any(Callback.class));
+                when(device.update(isNull(), isNull(), anyString())).thenReturn(request);
+                return device;
+            }
+        }).when(apiClient).device(anyString(), anyString(), any(PrivateKey.class));
+    }
+
+    @Test
+    public void shouldUpdateEveryEnrollmentAfterTheDebounce() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        store.put(enrollment("dev_2", "old"));
+        PushTokenRotation rotation = rotation(4);
+
+        rotation.onNewToken("new");
+
+        assertThat(updatedIds, hasSize(0));
+        assertThat(delays, contains(PushTokenRotation.DEBOUNCE_MILLIS));
+        runScheduled();
+        assertThat(updatedIds, contains("dev_1", "dev_2"));
+
+        succeed(0);
+        succeed(1);
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("new")));
+        assertThat(store.get("dev_2").getNotificationToken(), is(equalTo("new")));
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void shouldOnlyRotateTheLastTokenOfQuickChanges() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        PushTokenRotation rotation = rotation(4);
+
+        rotation.onNewToken("first");
+        rotation.onNewToken("second");
+        rotation.onNewToken("second");
+
+        // every change replaces the scheduled run
+        assertThat(scheduled, hasSize(2));
+        runScheduled();
+        assertThat(updatedIds, contains("dev_1"));
+        succeed(0);
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("second")));
+    }
+
+    @Test
+    public void shouldSkipEnrollmentsThatAlreadyHaveTheToken() throws Exception {
+        store.put(enrollment("dev_1", "new"));
+        store.put(enrollment("dev_2", "old"));
+        PushTokenRotation rotation = rotation(4);
+
+        rotation.onNewToken("new");
+        runScheduled();
+
+        assertThat(updatedIds, contains("dev_2"));
+    }
+
+    @Test
+    public void shouldLimitConcurrentUpdates() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        store.put(enrollment("dev_2", "old"));
+        store.put(enrollment("dev_3", "old"));
+        PushTokenRotation rotation = rotation(2);
+
+        rotation.onNewToken("new");
+        runScheduled();
+        assertThat(updatedIds, contains("dev_1", "dev_2"));
+
+        succeed(1);
+        assertThat(updatedIds, contains("dev_1", "dev_2", "dev_3"));
+    }
+
+    @Test
+    public void shouldResumeUnfinishedRotation() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        store.put(enrollment("dev_2", "old"));
+        rotation(4).onNewToken("new");
+        runScheduled();
+        succeed(0);
+        // killed before the second update finished
+        assertThat(file.exists(), is(true));
+
+        updatedIds.clear();
+        callbacks.clear();
+        PushTokenRotation restarted = rotation(4);
+        restarted.resume();
+        assertThat(delays.get(delays.size() - 1), is(0L));
+        runScheduled();
+
+        assertThat(updatedIds, contains("dev_2"));
+        succeed(0);
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void shouldNotResumeWhenThereIsNothingToRotate() throws Exception {
+        rotation(4).resume();
+
+        verify(executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void shouldRetryConnectionFailuresWithBackoff() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        PushTokenRotation rotation = rotation(4);
+        rotation.onNewToken("new");
+        runScheduled();
+
+        fail(0, new IOException("offline"));
+        assertThat(delays.get(delays.size() - 1), is(PushTokenRotation.MIN_RETRY_DELAY_MILLIS));
+        runScheduled();
+        fail(1, new IOException("offline"));
+        assertThat(delays.get(delays.size() - 1), is(PushTokenRotation.MIN_RETRY_DELAY_MILLIS * 2));
+        runScheduled();
+        succeed(2);
+
+        assertThat(updatedIds, contains("dev_1", "dev_1", "dev_1"));
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("new")));
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void shouldRetryServerErrorsWithBackoff() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        PushTokenRotation rotation = rotation(4);
+        rotation.onNewToken("new");
+        runScheduled();
+
+        fail(0, rejection("server_error", 503));
+        assertThat(delays.get(delays.size() - 1), is(PushTokenRotation.MIN_RETRY_DELAY_MILLIS));
+        runScheduled();
+        succeed(1);
+
+        assertThat(updatedIds, contains("dev_1", "dev_1"));
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("new")));
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void shouldNotRetryEnrollmentsRejectedByTheServer() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        store.put(enrollment("dev_2", "old"));
+        PushTokenRotation rotation = rotation(4);
+        rotation.onNewToken("new");
+        runScheduled();
+
+        fail(0, rejection("device_account_not_found", 404));
+        succeed(1);
+
+        assertThat(updatedIds, contains("dev_1", "dev_2"));
+        assertThat(scheduled, hasSize(0));
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("old")));
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void shouldNotAddBackEnrollmentsRemovedDuringTheUpdate() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        PushTokenRotation rotation = rotation(4);
+        rotation.onNewToken("new");
+        runScheduled();
+
+        store.remove("dev_1");
+        succeed(0);
+
+        assertThat(store.getAll(), hasSize(0));
+    }
+
+    @Test
+    public void shouldRotateAgainWhenTheTokenChangesDuringTheUpdate() throws Exception {
+        store.put(enrollment("dev_1", "old"));
+        PushTokenRotation rotation = rotation(4);
+        rotation.onNewToken("first");
+        runScheduled();
+
+        rotation.onNewToken("second");
+        succeed(0);
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("first")));
+        runScheduled();
+        succeed(1);
+
+        assertThat(updatedIds, contains("dev_1", "dev_1"));
+        assertThat(store.get("dev_1").getNotificationToken(), is(equalTo("second")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireAtLeastOneUpdate() {
+        rotation(0);
+    }
+
+    private PushTokenRotation rotation(int maxConcurrentUpdates) {
+        return new PushTokenRotation(apiClient, store, file, executor, false, maxConcurrentUpdates);
+    }
+
+    private void runScheduled() {
+        Runnable last = scheduled.get(scheduled.size() - 1);
+        scheduled.clear();
+        last.run();
+    }
+
+    private void succeed(int index) {
+        callbacks.get(index).onSuccess(null);
+    }
+
+    private void fail(int index, Throwable exception) {
+        callbacks.get(index).onFailure(exception);
+    }
+
+    private static GuardianException rejection(String errorCode, int statusCode) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("errorCode", errorCode);
+        return new GuardianException(error, statusCode);
+    }
+
+    private static Enrollment enrollment(String id, String notificationToken) {
+        Enrollment enrollment = mock(Enrollment.class);
+        when(enrollment.getId()).thenReturn(id);
+        when(enrollment.getUserId()).thenReturn("user_" + id);
+        when(enrollment.getDeviceIdentifier()).thenReturn("identifier");
+        when(enrollment.getDeviceName()).thenReturn("name");
+        when(enrollment.getNotificationToken()).thenReturn(notificationToken);
+        when(enrollment.getDeviceToken()).thenReturn("token_" + id);
+        when(enrollment.getSigningKey()).thenReturn(keyPair.getPrivate());
+        when(enrollment.getPublicKey()).thenReturn(keyPair.getPublic());
+        return enrollment;
+    }
+}
@@ -0,0 +1,94 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SeenNotificationsTest {
+
+    private static final long EXPIRATION = 60000;
+
+    long now;
+    SeenNotifications seen;
+
+    @Before
+    public void setUp() {
+        now = 1000000;
+        seen = new SeenNotifications(2, EXPIRATION, new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+    }
+
+    @Test
+    public void shouldFlagCopiesOfTheSameNotification() {
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(false)));
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(true)));
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(true)));
+        assertThat(seen.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void shouldNotFlagNotificationsThatDifferInAnyField() {
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(false)));
+        assertThat(seen.markSeen(notification("dev_2", "c1", "tx1")), is(equalTo(false)));
+
+        setUp();
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(false)));
+        assertThat(seen.markSeen(notification("dev_1", "c2", "tx1")), is(equalTo(false)));
+
+        setUp();
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(false)));
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx2")), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldForgetNotificationsAfterExpiration() {
+        seen.markSeen(notification("dev_1", "c1", "tx1"));
+
+        now += EXPIRATION - 1;
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(true)));
+
+        now += 1;
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldRemoveExpiredEntries() {
+        seen.markSeen(notification("dev_1", "c1", "tx1"));
+        now += EXPIRATION / 2;
+        seen.markSeen(notification("dev_1", "c2", "tx2"));
+
+        now += EXPIRATION / 2;
+        seen.markSeen(notification("dev_1", "c3", "tx3"));
+
+        assertThat(seen.size(), is(equalTo(2)));
+        assertThat(seen.markSeen(notification("dev_1", "c2", "tx2")), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldEvictOldestWhenFull() {
+        seen.markSeen(notification("dev_1", "c1", "tx1"));
+        seen.markSeen(notification("dev_1", "c2", "tx2"));
+        seen.markSeen(notification("dev_1", "c3", "tx3"));
+
+        assertThat(seen.size(), is(equalTo(2)));
+        assertThat(seen.markSeen(notification("dev_1", "c3", "tx3")), is(equalTo(true)));
+        assertThat(seen.markSeen(notification("dev_1", "c1", "tx1")), is(equalTo(false)));
+    }
+
+    private static Notification notification(String enrollmentId, String challenge, String transactionToken) {
+        Notification notification = mock(Notification.class);
+        when(notification.getEnrollmentId()).thenReturn(enrollmentId);
+        when(notification.getChallenge()).thenReturn(challenge);
+        when(notification.getTransactionToken()).thenReturn(transactionToken);
+        return notification;
+    }
+}
@@ -0,0 +1,163 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class ServerClockTest {
+
+    private static final long NOW = 1700000000000L;
+
+    long deviceTime;
+    ServerClock clock;
+    MockWebServer server;
+
+    @Before
+    public void setUp() {
+        deviceTime = NOW;
+        clock = new ServerClock(new ServerClock.DeviceClock() {
+            @Override
+            public long currentTimeMillis() {
+                return deviceTime;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldUseDeviceTimeWithoutSamples() {
+        assertThat(clock.getOffsetMillis(), is(equalTo(0L)));
+        assertThat(clock.currentTimeMillis(), is(equalTo(NOW)));
+    }
+
+    @Test
+    public void shouldKnowOffsetAfterFirstSample() {
+        assertThat(clock.hasOffset(), is(equalTo(false)));
+
+        clock.addSample(NOW, NOW, NOW + 200);
+
+        assertThat(clock.hasOffset(), is(equalTo(true)));
+    }
+
+    @Test
+    public void shouldAddMarginToPassedTimesWhileOffsetIsUnknown() {
+        assertThat(clock.hasPassed(NOW), is(equalTo(false)));
+        assertThat(clock.hasPassed(NOW - ServerClock.UNKNOWN_OFFSET_MARGIN_MILLIS), is(equalTo(true)));
+
+        clock.setOffsetMillis(0);
+
+        assertThat(clock.hasPassed(NOW), is(equalTo(true)));
+        assertThat(clock.hasPassed(NOW + 1), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldNeverPassMaxValue() {
+        assertThat(clock.hasPassed(Long.MAX_VALUE), is(equalTo(false)));
+        assertThat(clock.hasPassed(Long.MAX_VALUE - 1), is(equalTo(false)));
+
+        clock.setOffsetMillis(0);
+
+        assertThat(clock.hasPassed(Long.MAX_VALUE), is(equalTo(false)));
+    }
+
+    @Test
+    public void shouldTakeFirstSampleAsOffset() {
+        // sent at NOW, received 200ms later, when the server was 60s ahead
+        clock.addSample(NOW + 60000, NOW, NOW + 200);
+
+        // the date is truncated to the second, so half a second is added
+        assertThat(clock.getOffsetMillis(), is(equalTo(60400L)));
+        assertThat(clock.currentTimeMillis(), is(equalTo(NOW + 60400)));
+    }
+
+    @Test
+    public void shouldSmoothFollowingSamples() {
+        clock.addSample(NOW + 60000, NOW, NOW + 200);
+        clock.addSample(NOW + 61000, NOW, NOW + 200);
+
+        assertThat(clock.getOffsetMillis(), is(equalTo(60650L)));
+    }
+
+    @Test
+    public void shouldReplaceOffsetWhenDeviceClockChanges() {
+        clock.addSample(NOW + 60000, NOW, NOW + 200);
+        clock.addSample(NOW, NOW, NOW + 200);
+
+        assertThat(clock.getOffsetMillis(), is(equalTo(400L)));
+    }
+
+    @Test
+    public void shouldIgnoreSamplesWithLongRoundTrips() {
+        clock.addSample(NOW + 60000, NOW, NOW + ServerClock.MAX_ROUND_TRIP_MILLIS + 1);
+
+        assertThat(clock.getOffsetMillis(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldSmoothSamplesAfterRestoringOffset() {
+        clock.setOffsetMillis(60000);
+        clock.addSample(NOW + 61000, NOW, NOW + 200);
+
+        assertThat(clock.getOffsetMillis(), is(equalTo(60350L)));
+    }
+
+    @Test
+    public void shouldSampleDateHeaderOfResponses() throws Exception {
+        ServerClock clock = new ServerClock();
+        server = new MockWebServer();
+        server.enqueue(new MockResponse().setHeader("Date", httpDate(System.currentTimeMillis() + 120000)));
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new ServerClock.SamplingInterceptor(clock))
+                .build();
+
+        try (Response response = client.newCall(new Request.Builder().url(server.url("/")).build()).execute()) {
+            assertThat(response.code(), is(equalTo(200)));
+        }
+
+        assertThat((double) clock.getOffsetMillis(), is(closeTo(120000, 1500)));
+    }
+
+    @Test
+    public void shouldIgnoreResponsesWithoutDate() throws Exception {
+        ServerClock clock = new ServerClock();
+        server = new MockWebServer();
+        server.enqueue(new MockResponse());
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new ServerClock.SamplingInterceptor(clock))
+                .build();
+
+        client.newCall(new Request.Builder().url(server.url("/")).build()).execute().close();
+
+        assertThat(clock.getOffsetMillis(), is(equalTo(0L)));
+    }
+
+    private static String httpDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+}
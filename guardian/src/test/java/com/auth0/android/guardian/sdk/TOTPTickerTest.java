@@ -0,0 +1,232 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class TOTPTickerTest {
+
+    // "12345678901234567890", the RFC 6238 seed for HMAC-SHA1
+    private static final String SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+
+    // 10 seconds into the period that includes 1111111109, whose code is 07081804
+    private static final long START = 1111111090000L;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    ScheduledExecutorService executor;
+    ScheduledFuture<?> future;
+    long now;
+    TOTPTicker ticker;
+
+    @Before
+    public void setUp() {
+        executor = mock(ScheduledExecutorService.class);
+        future = mock(ScheduledFuture.class);
+        doReturn(future).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        now = START;
+        ticker = new TOTPTicker(executor, true, new OTPCodeCache(16), new TOTPTicker.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        });
+    }
+
+    @Test
+    public void shouldPublishCodeOnSubscribe() {
+        RecordingListener listener = new RecordingListener();
+
+        ticker.subscribe(enrollment("dev_1"), 5000, listener);
+        verify(executor).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+        ticker.tick();
+
+        assertThat(listener.events, contains("07081804 20000"));
+        verify(executor).schedule(any(Runnable.class), eq(15000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldWakeUpWhenAboutToExpireAndAtPeriodBoundary() {
+        RecordingListener listener = new RecordingListener();
+        ticker.subscribe(enrollment("dev_1"), 5000, listener);
+        ticker.tick();
+
+        now += 15000;
+        ticker.tick();
+        verify(executor).schedule(any(Runnable.class), eq(5000L), eq(TimeUnit.MILLISECONDS));
+
+        now += 5000;
+        ticker.tick();
+        verify(executor).schedule(any(Runnable.class), eq(25000L), eq(TimeUnit.MILLISECONDS));
+
+        assertThat(listener.events, contains("07081804 20000", "07081804 5000", "14050471 30000"));
+    }
+
+    @Test
+    public void shouldOnlyWakeUpAtPeriodBoundaryWithoutThreshold() {
+        RecordingListener listener = new RecordingListener();
+        ticker.subscribe(enrollment("dev_1"), 0, listener);
+        ticker.tick();
+
+        verify(executor).schedule(any(Runnable.class), eq(20000L), eq(TimeUnit.MILLISECONDS));
+        now += 20000;
+        ticker.tick();
+
+        assertThat(listener.events, contains("07081804 20000", "14050471 30000"));
+    }
+
+    @Test
+    public void shouldNotNotifyAgainWhenWakingUpEarly() {
+        RecordingListener listener = new RecordingListener();
+        ticker.subscribe(enrollment("dev_1"), 0, listener);
+        ticker.tick();
+
+        now += 19990;
+        ticker.tick();
+
+        assertThat(listener.events, contains("07081804 20000"));
+        verify(executor).schedule(any(Runnable.class), eq(10L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldShareCodeBetweenListenersOfSameEnrollment() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        Enrollment enrollment = enrollment("dev_1");
+        ticker.subscribe(enrollment, 5000, first);
+        ticker.subscribe(enrollment, 5000, second);
+
+        ticker.tick();
+
+        assertThat(second.codes.get(0), is(sameInstance(first.codes.get(0))));
+    }
+
+    @Test
+    public void shouldNotNotifyExistingListenersWhenSubscribing() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        ticker.subscribe(enrollment("dev_1"), 5000, first);
+        ticker.tick();
+
+        ticker.subscribe(enrollment("dev_2"), 5000, second);
+        ticker.tick();
+
+        assertThat(first.events, contains("07081804 20000"));
+        assertThat(second.events, contains("07081804 20000"));
+    }
+
+    @Test
+    public void shouldStopWakingUpWhenLastListenerUnsubscribes() {
+        RecordingListener listener = new RecordingListener();
+        ticker.subscribe(enrollment("dev_1"), 5000, listener);
+        ticker.tick();
+
+        ticker.unsubscribe(listener);
+        now += 15000;
+        ticker.tick();
+
+        verify(future, times(2)).cancel(false);
+        verify(executor, never()).schedule(any(Runnable.class), eq(5000L), any(TimeUnit.class));
+        assertThat(listener.events, contains("07081804 20000"));
+    }
+
+    @Test
+    public void shouldNotifyOtherListenersWhenOneFails() {
+        RecordingListener listener = new RecordingListener();
+        ticker.subscribe(enrollment("dev_1"), 5000, new TOTPTicker.Listener() {
+            @Override
+            public void onCode(@NonNull String code, long millisRemaining) {
+                throw new IllegalStateException("failed");
+            }
+        });
+        ticker.subscribe(enrollment("dev_1"), 5000, listener);
+
+        try {
+            ticker.tick();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is(equalTo("failed")));
+        }
+
+        assertThat(listener.events, contains("07081804 20000"));
+        verify(executor).schedule(any(Runnable.class), eq(15000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldShutDownOwnExecutor() {
+        ticker.shutdown();
+
+        verify(executor).shutdown();
+    }
+
+    @Test
+    public void shouldFailToSubscribeAfterShutdown() {
+        exception.expect(IllegalStateException.class);
+
+        ticker.shutdown();
+        ticker.subscribe(enrollment("dev_1"), 5000, new RecordingListener());
+    }
+
+    @Test
+    public void shouldFailToSubscribeEnrollmentWithoutOTPData() {
+        exception.expect(IllegalArgumentException.class);
+
+        Enrollment enrollment = enrollment("dev_1");
+        when(enrollment.getSecret()).thenReturn(null);
+        ticker.subscribe(enrollment, 5000, new RecordingListener());
+    }
+
+    @Test
+    public void shouldFailToSubscribeEnrollmentWithInvalidSecret() {
+        exception.expect(IllegalArgumentException.class);
+
+        Enrollment enrollment = enrollment("dev_1");
+        when(enrollment.getSecret()).thenReturn("THIS_IS_AN_INVALID_BASE32_SECRET_@");
+        ticker.subscribe(enrollment, 5000, new RecordingListener());
+    }
+
+    private static Enrollment enrollment(String id) {
+        Enrollment enrollment = mock(Enrollment.class);
+        when(enrollment.getId()).thenReturn(id);
+        when(enrollment.getSecret()).thenReturn(SECRET);
+        when(enrollment.getAlgorithm()).thenReturn("SHA1");
+        when(enrollment.getDigits()).thenReturn(8);
+        when(enrollment.getPeriod()).thenReturn(30);
+        return enrollment;
+    }
+
+    private static class RecordingListener implements TOTPTicker.Listener {
+        final List<String> events = new ArrayList<>();
+        final List<String> codes = new ArrayList<>();
+
+        @Override
+        public void onCode(@NonNull String code, long millisRemaining) {
+            events.add(code + " " + millisRemaining);
+            codes.add(code);
+        }
+    }
+}
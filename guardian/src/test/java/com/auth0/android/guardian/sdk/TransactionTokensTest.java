@@ -0,0 +1,63 @@
+package com.auth0.android.guardian.sdk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+public class TransactionTokensTest {
+
+    private static final Algorithm ALGORITHM = Algorithm.HMAC256("secret");
+
+    @Test
+    public void shouldReadExpiration() {
+        String token = JWT.create()
+                .withSubject("tx_123")
+                .withIssuedAt(new Date(1700000000000L))
+                .withExpiresAt(new Date(1700000300000L))
+                .sign(ALGORITHM);
+
+        assertThat(TransactionTokens.getExpirationMillis(token), is(equalTo(1700000300000L)));
+    }
+
+    @Test
+    public void shouldReadExpirationWithUrlSafeCharsAndNoPadding() {
+        // the payload encodes to base64 with '-', '_' and without padding
+        String token = JWT.create()
+                .withClaim("x", "??>>??>>")
+                .withExpiresAt(new Date(1700000301000L))
+                .sign(ALGORITHM);
+
+        assertThat(TransactionTokens.getExpirationMillis(token), is(equalTo(1700000301000L)));
+    }
+
+    @Test
+    public void shouldNotHaveExpirationWithoutExpClaim() {
+        String token = JWT.create().withSubject("tx_123").sign(ALGORITHM);
+
+        assertThat(TransactionTokens.getExpirationMillis(token), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+    }
+
+    @Test
+    public void shouldNotHaveExpirationWithNonNumericExpClaim() {
+        String token = JWT.create().withClaim("exp", "tomorrow").sign(ALGORITHM);
+
+        assertThat(TransactionTokens.getExpirationMillis(token), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+    }
+
+    @Test
+    public void shouldNotHaveExpirationIfNotAJWT() {
+        assertThat(TransactionTokens.getExpirationMillis(null), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+        assertThat(TransactionTokens.getExpirationMillis("TRANSACTION_TOKEN"), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+        assertThat(TransactionTokens.getExpirationMillis("a.b"), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+        assertThat(TransactionTokens.getExpirationMillis("a.!!!.c"), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+        // "[1]" is valid JSON, but not an object
+        assertThat(TransactionTokens.getExpirationMillis("a.WzFd.c"), is(equalTo(TransactionTokens.NO_EXPIRATION)));
+    }
+}
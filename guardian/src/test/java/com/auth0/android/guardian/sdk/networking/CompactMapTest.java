@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.networking;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CompactMapTest {
+
+    CompactMap<String> map;
+
+    @Before
+    public void setUp() throws Exception {
+        map = new CompactMap<>();
+    }
+
+    @Test
+    public void shouldStartEmpty() throws Exception {
+        assertThat(map.isEmpty(), is(true));
+        assertThat(map.get("missing"), is(nullValue()));
+        assertThat(map.remove("missing"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepInsertionOrderWhileGrowing() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            map.put("key" + i, "value" + i);
+        }
+
+        assertThat(map.size(), is(equalTo(10)));
+        for (int i = 0; i < 10; i++) {
+            assertThat(map.keyAt(i), is(equalTo("key" + i)));
+            assertThat(map.valueAt(i), is(equalTo("value" + i)));
+        }
+    }
+
+    @Test
+    public void shouldReplaceExistingKey() throws Exception {
+        map.put("a", "1");
+        map.put("b", "2");
+
+        assertThat(map.put("a", "3"), is(equalTo("1")));
+        assertThat(map.size(), is(equalTo(2)));
+        assertThat(map.get("a"), is(equalTo("3")));
+        assertThat(map.keySet(), contains("a", "b"));
+    }
+
+    @Test
+    public void shouldRemoveAndShiftEntries() throws Exception {
+        map.put("a", "1");
+        map.put("b", "2");
+        map.put("c", "3");
+
+        assertThat(map.remove("b"), is(equalTo("2")));
+        assertThat(map.size(), is(equalTo(2)));
+        assertThat(map.keySet(), contains("a", "c"));
+        assertThat(map.containsKey("b"), is(false));
+    }
+
+    @Test
+    public void shouldRemoveThroughIterator() throws Exception {
+        map.put("a", "1");
+        map.put("b", "2");
+        map.put("c", "3");
+
+        Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getKey().equals("a")) {
+                iterator.remove();
+            }
+        }
+
+        assertThat(map.keySet(), contains("b", "c"));
+    }
+
+    @Test
+    public void shouldBeEqualToOtherMaps() throws Exception {
+        map.put("a", "1");
+        map.put("b", "2");
+
+        Map<String, String> other = new HashMap<>();
+        other.put("b", "2");
+        other.put("a", "1");
+
+        assertThat(map.equals(other), is(true));
+        assertThat(map.hashCode(), is(equalTo(other.hashCode())));
+    }
+}
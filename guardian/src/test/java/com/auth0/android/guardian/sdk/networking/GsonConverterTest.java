@@ -30,6 +30,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
@@ -53,7 +54,9 @@ public class GsonConverterTest {
 
     @Test
     public void shouldSerializeObject() throws Exception {
-        String serialized = converter.serialize(new DummyObject());
+        StringWriter writer = new StringWriter();
+        converter.serialize(new DummyObject(), writer);
+        String serialized = writer.toString();
         assertThat(serialized, is(equalTo("{\"someString\":\"theString\",\"someInteger\":456}")));
     }
 
@@ -62,7 +65,9 @@ public class GsonConverterTest {
         Map<String, Object> map = new HashMap<>();
         map.put("someString", "theString");
         map.put("someInteger", 456);
-        String serialized = converter.serialize(map);
+        StringWriter writer = new StringWriter();
+        converter.serialize(map, writer);
+        String serialized = writer.toString();
         assertThat(serialized, containsString("\"someString\":\"theString\""));
         assertThat(serialized, containsString("\"someInteger\":456"));
     }
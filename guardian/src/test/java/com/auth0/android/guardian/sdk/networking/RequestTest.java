@@ -23,6 +23,7 @@
 package com.auth0.android.guardian.sdk.networking;
 
 import com.auth0.android.guardian.sdk.GuardianException;
+import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import org.junit.Before;
@@ -32,9 +33,12 @@ import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
@@ -46,16 +50,22 @@ import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -71,7 +81,7 @@ public class RequestTest {
     public ExpectedException thrown = ExpectedException.none();
 
     @Mock
-    GsonConverter converter;
+    Converter converter;
 
     @Mock
     OkHttpClient client;
@@ -124,8 +134,13 @@ public class RequestTest {
         when(call.execute())
                 .thenReturn(successResponse);
 
-        when(converter.serialize(any(Object.class)))
-                .thenReturn("{}");
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                invocation.getArgument(1, Writer.class).write("{}");
+                return null;
+            }
+        }).when(converter).serialize(any(Object.class), any(Writer.class));
 
         when(client.newCall(any(okhttp3.Request.class)))
                 .thenReturn(call);
@@ -213,7 +228,7 @@ public class RequestTest {
                 .setParameter("some", "parameter")
                 .execute();
 
-        verify(converter).serialize(mapCaptor.capture());
+        verify(converter).serialize(mapCaptor.capture(), any(Writer.class));
         verify(converter).parse(any(Type.class), any(Reader.class));
         verifyNoMoreInteractions(converter);
         Map<String, Object> body = mapCaptor.getValue();
@@ -312,7 +327,7 @@ public class RequestTest {
                 .setParameter("boolean", true)
                 .execute();
 
-        verify(converter).serialize(mapCaptor.capture());
+        verify(converter).serialize(mapCaptor.capture(), any(Writer.class));
         verify(converter).parse(any(Type.class), any(Reader.class));
         verifyNoMoreInteractions(converter);
         Map<String, Object> body = mapCaptor.getValue();
@@ -333,7 +348,7 @@ public class RequestTest {
                 .setBody(BODY)
                 .execute();
 
-        verify(converter).serialize(objectCaptor.capture());
+        verify(converter).serialize(objectCaptor.capture(), any(Writer.class));
         Object body = objectCaptor.getValue();
         assertThat(body, is(instanceOf(DummyBody.class)));
 
@@ -344,6 +359,67 @@ public class RequestTest {
         assertThat(request.url().encodedPath(), is(equalTo("/user/123")));
     }
 
+    @Test
+    public void shouldWriteSerializedBodyAsUtf8Json() throws Exception {
+        getRequest("PUT", getUrl("/user/123"))
+                .setBody(BODY)
+                .execute();
+
+        verify(client).newCall(requestCaptor.capture());
+        okhttp3.RequestBody requestBody = requestCaptor.getValue().body();
+        Buffer sink = new Buffer();
+        requestBody.writeTo(sink);
+
+        assertThat(requestBody.contentType(), is(equalTo(MEDIA_TYPE)));
+        assertThat(requestBody.contentLength(), is(equalTo(2L)));
+        assertThat(sink.readUtf8(), is(equalTo("{}")));
+    }
+
+    @Test
+    public void shouldSerializeBodyOnlyOnceWhenExecutedAgain() throws Exception {
+        Request<Object> request = getRequest("PUT", getUrl("/user/123"))
+                .setParameter("string", "value");
+
+        request.execute();
+        request.execute();
+
+        verify(converter, times(1)).serialize(any(Object.class), any(Writer.class));
+        verify(client, times(2)).newCall(requestCaptor.capture());
+        okhttp3.RequestBody first = requestCaptor.getAllValues().get(0).body();
+        okhttp3.RequestBody second = requestCaptor.getAllValues().get(1).body();
+        assertThat(second, is(sameInstance(first)));
+
+        Buffer firstSink = new Buffer();
+        first.writeTo(firstSink);
+        Buffer secondSink = new Buffer();
+        second.writeTo(secondSink);
+        assertThat(secondSink.readUtf8(), is(equalTo(firstSink.readUtf8())));
+    }
+
+    @Test
+    public void shouldSerializeAgainAfterParametersChange() throws Exception {
+        Request<Object> request = getRequest("PUT", getUrl("/user/123"))
+                .setParameter("string", "value");
+
+        request.execute();
+        request.setParameter("number", 123)
+                .execute();
+
+        verify(converter, times(2)).serialize(any(Object.class), any(Writer.class));
+    }
+
+    @Test
+    public void shouldSerializeAgainAfterBodyIsSetAgain() throws Exception {
+        Request<Object> request = getRequest("PUT", getUrl("/user/123"))
+                .setBody(BODY);
+
+        request.execute();
+        request.setBody(BODY)
+                .execute();
+
+        verify(converter, times(2)).serialize(any(Object.class), any(Writer.class));
+    }
+
     @Test
     public void shouldFailWhenAddingParametersAndAlreadyHadBody() throws Exception {
         thrown.expect(IllegalArgumentException.class);
@@ -363,7 +439,7 @@ public class RequestTest {
                 .setParameter("string", null)
                 .execute();
 
-        verify(converter).serialize(mapCaptor.capture());
+        verify(converter).serialize(mapCaptor.capture(), any(Writer.class));
         verify(converter).parse(any(Type.class), any(Reader.class));
         verifyNoMoreInteractions(converter);
         Map<String, Object> body = mapCaptor.getValue();
@@ -635,6 +711,77 @@ public class RequestTest {
         assertThat((IOException)thrownException, is(sameInstance(exception)));
     }
 
+    @Test
+    public void shouldReuseSingleConnectionForSequentialResolves() throws Exception {
+        MockWebServer server = new MockWebServer();
+        try {
+            server.start();
+            OkHttpClient realClient = new OkHttpClient();
+            RequestFactory factory = new RequestFactory(new Gson(), realClient);
+            HttpUrl url = server.url("/api/resolve-transaction");
+
+            final int resolves = 20;
+            for (int i = 0; i < resolves; i++) {
+                server.enqueue(new MockResponse().setResponseCode(204));
+                server.enqueue(new MockResponse().setResponseCode(200).setBody("{\"ignored\":true}"));
+                server.enqueue(new MockResponse().setResponseCode(401).setBody("{\"errorCode\":\"invalid_token\"}"));
+            }
+
+            for (int i = 0; i < resolves; i++) {
+                factory.<Void>newRequest("POST", url, Void.class)
+                        .setParameter("challenge_response", "jwt")
+                        .execute();
+                factory.<Void>newRequest("POST", url, Void.class)
+                        .setParameter("challenge_response", "jwt")
+                        .execute();
+                try {
+                    factory.<Void>newRequest("POST", url, Void.class)
+                            .setParameter("challenge_response", "jwt")
+                            .execute();
+                    fail("expected GuardianException");
+                } catch (GuardianException e) {
+                    assertThat(e.isInvalidToken(), is(true));
+                }
+            }
+
+            for (int i = 0; i < resolves * 3; i++) {
+                assertThat(server.takeRequest().getSequenceNumber(), is(equalTo(i)));
+            }
+            assertThat(realClient.connectionPool().connectionCount(), is(equalTo(1)));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldNotParseErrorBodiesOverTheSizeLimit() throws Exception {
+        MockWebServer server = new MockWebServer();
+        try {
+            server.start();
+            StringBuilder hugeBody = new StringBuilder("{\"error\":\"");
+            for (int i = 0; i < 70 * 1024; i++) {
+                hugeBody.append('x');
+            }
+            hugeBody.append("\"}");
+            server.enqueue(new MockResponse().setResponseCode(500).setBody(hugeBody.toString()));
+
+            RequestFactory factory = new RequestFactory(new Gson(), new OkHttpClient());
+            GuardianException exception = null;
+            try {
+                factory.<Void>newRequest("GET", server.url("/something"), Void.class)
+                        .execute();
+            } catch (GuardianException e) {
+                exception = e;
+            }
+
+            assertThat(exception, is(notNullValue()));
+            assertThat(exception.getStatusCode(), is(equalTo(500)));
+            assertThat(exception.getMessage(), containsString("too large"));
+        } finally {
+            server.shutdown();
+        }
+    }
+
     static class DummyBody {
         String someString = "someString";
     }
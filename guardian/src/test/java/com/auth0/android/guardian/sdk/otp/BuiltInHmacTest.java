@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.otp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BuiltInHmacTest {
+
+    private static final String[] ALGORITHMS = {"sha1", "sha256", "sha512"};
+    private static final String[] JCE_ALGORITHMS = {"HmacSHA1", "HmacSHA256", "HmacSHA512"};
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void shouldMatchRFC2202TestCaseForSha1() throws Exception {
+        byte[] key = Utils.hexStr2Bytes("0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b");
+        byte[] message = "Hi There".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(hmac("sha1", key, message),
+                is(equalTo(Utils.hexStr2Bytes("b617318655057264e28bc0b6fb378c8ef146be00"))));
+    }
+
+    @Test
+    public void shouldMatchRFC4231TestCaseForSha256() throws Exception {
+        byte[] key = Utils.hexStr2Bytes("0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b");
+        byte[] message = "Hi There".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(hmac("sha256", key, message), is(equalTo(Utils.hexStr2Bytes(
+                "b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7"))));
+    }
+
+    @Test
+    public void shouldMatchRFC4231TestCaseForSha512() throws Exception {
+        byte[] key = Utils.hexStr2Bytes("0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b");
+        byte[] message = "Hi There".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(hmac("sha512", key, message), is(equalTo(Utils.hexStr2Bytes(
+                "87aa7cdea5ef619d4ff0b4241a1d6cb02379f4e2ce4ec2787ad0b30545e17cde" +
+                        "daa833b7d6b8a702038b274eaea3f4e4be9d914eeb61f1702e696c203a126854"))));
+    }
+
+    @Test
+    public void shouldMatchJceForAllKeyAndMessageLengths() throws Exception {
+        Random random = new Random(1);
+        for (int a = 0; a < ALGORITHMS.length; a++) {
+            // covers keys shorter and longer than the block and every padding boundary
+            for (int keyLength = 1; keyLength <= 260; keyLength += 7) {
+                for (int messageLength = 0; messageLength <= 260; messageLength++) {
+                    byte[] key = new byte[keyLength];
+                    byte[] message = new byte[messageLength];
+                    random.nextBytes(key);
+                    random.nextBytes(message);
+
+                    Hmac jce = JceHmac.create(JCE_ALGORITHMS[a], key);
+                    byte[] expected = new byte[jce.getMacLength()];
+                    jce.compute(message, expected);
+                    assertThat(ALGORITHMS[a] + " key " + keyLength + " message " + messageLength,
+                            hmac(ALGORITHMS[a], key, message), is(equalTo(expected)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldComputeSameMacWhenReused() throws Exception {
+        byte[] key = Utils.hexStr2Bytes("3132333435363738393031323334353637383930");
+        byte[] message = Utils.hexStr2Bytes("0000000000000001");
+        for (String algorithm : ALGORITHMS) {
+            Hmac hmac = BuiltInHmac.create(algorithm, key);
+            Hmac copy = hmac.copy();
+            byte[] first = new byte[hmac.getMacLength()];
+            byte[] second = new byte[hmac.getMacLength()];
+            byte[] third = new byte[hmac.getMacLength()];
+
+            hmac.compute(message, first);
+            hmac.compute(message, second);
+            copy.compute(message, third);
+
+            assertThat(Arrays.equals(first, second), is(true));
+            assertThat(Arrays.equals(first, third), is(true));
+        }
+    }
+
+    @Test
+    public void shouldReturnNullForUnsupportedAlgorithm() throws Exception {
+        assertThat(BuiltInHmac.create("md5", new byte[]{1}), is(nullValue()));
+    }
+
+    @Test
+    public void shouldFailWithEmptyKey() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+
+        BuiltInHmac.create("sha1", new byte[0]);
+    }
+
+    private static byte[] hmac(String algorithm, byte[] key, byte[] message) {
+        Hmac hmac = BuiltInHmac.create(algorithm, key);
+        byte[] out = new byte[hmac.getMacLength()];
+        hmac.compute(message, out);
+        return out;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.otp;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class TOTPAllocationTest {
+
+    private static final int ITERATIONS = 20000;
+
+    // Seed for HMAC-SHA1 - 20 bytes
+    private static final String SECRET = "3132333435363738393031323334353637383930";
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void shouldWriteCodeIntoBuffer() throws Exception {
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(SECRET), 6, 30);
+        char[] out = new char[10];
+
+        int written = totp.generate(1, out, 2);
+
+        assertThat(written, is(equalTo(6)));
+        assertThat(new String(out, 2, 6), is(equalTo("287082")));
+        assertThat(out[0], is(equalTo('\0')));
+        assertThat(out[8], is(equalTo('\0')));
+    }
+
+    @Test
+    public void shouldPadCodeWithZeros() throws Exception {
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(SECRET), 8, 30);
+        char[] out = new char[8];
+
+        // RFC 6238 vector for T = 1111111109
+        totp.generate(1111111109L / 30, out, 0);
+
+        assertThat(new String(out), is(equalTo("07081804")));
+    }
+
+    @Test
+    public void shouldFailWhenCodeDoesNotFitInBuffer() throws Exception {
+        thrown.expect(IndexOutOfBoundsException.class);
+
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(SECRET), 6, 30);
+        totp.generate(1, new char[6], 1);
+    }
+
+    @Test
+    public void shouldNotAllocateMoreThanTheMac() throws Exception {
+        byte[] secret = Utils.hexStr2Bytes(SECRET);
+        TOTP totp = new TOTP("sha1", secret, 6, 30);
+        char[] out = new char[6];
+
+        // whatever the JCE provider allocates internally is the baseline to compare against
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(secret, "RAW"));
+        byte[] counter = new byte[8];
+        byte[] hash = new byte[mac.getMacLength()];
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            totp.generate(i, out, 0);
+            mac.update(counter);
+            mac.doFinal(hash, 0);
+        }
+
+        long macBytes = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            counter[7] = (byte) i;
+            mac.update(counter);
+            mac.doFinal(hash, 0);
+        }
+        macBytes = allocatedBytes() - macBytes;
+
+        long totpBytes = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            totp.generate(i, out, 0);
+        }
+        totpBytes = allocatedBytes() - totpBytes;
+
+        long extraBytesPerCode = (totpBytes - macBytes) / ITERATIONS;
+        assertThat(extraBytesPerCode, is(lessThan(8L)));
+    }
+
+    @Test
+    public void shouldNotAllocateWithBuiltInHmac() throws Exception {
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(SECRET), 6, 30, true);
+        char[] out = new char[6];
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            totp.generate(i, out, 0);
+        }
+
+        long totpBytes = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            totp.generate(i, out, 0);
+        }
+        totpBytes = allocatedBytes() - totpBytes;
+
+        assertThat(totpBytes / ITERATIONS, is(lessThan(8L)));
+    }
+
+    private long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
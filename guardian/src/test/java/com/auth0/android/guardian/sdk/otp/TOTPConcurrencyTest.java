@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.auth0.android.guardian.sdk.otp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TOTPConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2000;
+
+    private static final long[] TIMES = {59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L};
+
+    // Seed for HMAC-SHA1 - 20 bytes
+    private static final String SEED_SHA1 = "3132333435363738393031323334353637383930";
+    // Seed for HMAC-SHA256 - 32 bytes
+    private static final String SEED_SHA256 = "3132333435363738393031323334353637383930313233343536373839303132";
+    // Seed for HMAC-SHA512 - 64 bytes
+    private static final String SEED_SHA512 = "31323334353637383930313233343536373839303132333435363738393031323334353637383930313233343536373839303132333435363738393031323334";
+
+    private static final String[] CODES_SHA1 = {"94287082", "07081804", "14050471", "89005924", "69279037", "65353130"};
+    private static final String[] CODES_SHA256 = {"46119246", "68084774", "67062674", "91819424", "90698825", "77737706"};
+    private static final String[] CODES_SHA512 = {"90693936", "25091201", "99943326", "93441116", "38618901", "47863826"};
+
+    @Test
+    public void shouldGenerateRFCCodesWhenSharedBetweenThreads() throws Exception {
+        final TOTP sha1 = new TOTP("SHA1", Utils.hexStr2Bytes(SEED_SHA1), 8, 30);
+        final TOTP sha256 = new TOTP("SHA256", Utils.hexStr2Bytes(SEED_SHA256), 8, 30);
+        final TOTP sha512 = new TOTP("SHA512", Utils.hexStr2Bytes(SEED_SHA512), 8, 30);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int mismatches = 0;
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            int index = (i + offset) % TIMES.length;
+                            long step = TIMES[index] / 30;
+                            mismatches += CODES_SHA1[index].equals(sha1.generate(step)) ? 0 : 1;
+                            mismatches += CODES_SHA256[index].equals(sha256.generate(step)) ? 0 : 1;
+                            mismatches += CODES_SHA512[index].equals(sha512.generate(step)) ? 0 : 1;
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int mismatches = 0;
+            for (Future<Integer> result : results) {
+                mismatches += result.get(60, TimeUnit.SECONDS);
+            }
+            assertThat(mismatches, is(equalTo(0)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldGenerateRFCCodesIntoBuffersWhenSharedBetweenThreads() throws Exception {
+        final TOTP sha1 = new TOTP("SHA1", Utils.hexStr2Bytes(SEED_SHA1), 8, 30);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        char[] out = new char[8];
+                        int mismatches = 0;
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            int index = (i + offset) % TIMES.length;
+                            sha1.generate(TIMES[index] / 30, out, 0);
+                            mismatches += CODES_SHA1[index].equals(new String(out)) ? 0 : 1;
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int mismatches = 0;
+            for (Future<Integer> result : results) {
+                mismatches += result.get(60, TimeUnit.SECONDS);
+            }
+            assertThat(mismatches, is(equalTo(0)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
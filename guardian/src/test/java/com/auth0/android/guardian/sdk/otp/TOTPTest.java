@@ -26,6 +26,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
 public class TOTPTest {
 
     @Rule
@@ -56,4 +60,54 @@ public class TOTPTest {
 
         new TOTP("sha256", null, 8, period);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldGenerateConsecutiveCodesIntoBuffer() throws Exception {
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(secret), 6, period);
+        char[] out = new char[10 * 6];
+
+        int written = totp.generate(0, 10, out);
+
+        assertThat(written, is(equalTo(60)));
+        assertThat(new String(out), is(equalTo(
+                "755224287082359152969429338314254676287922162583399871520489")));
+    }
+
+    @Test
+    public void shouldGenerateSameCodesAsSingleStepGeneration() throws Exception {
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(secret), 8, period);
+        long step = 1111111111L / period;
+        char[] out = new char[3 * 8];
+
+        totp.generate(step - 1, 3, out);
+
+        assertThat(new String(out, 0, 8), is(equalTo(totp.generate(step - 1))));
+        assertThat(new String(out, 8, 8), is(equalTo(totp.generate(step))));
+        assertThat(new String(out, 16, 8), is(equalTo(totp.generate(step + 1))));
+    }
+
+    @Test
+    public void shouldNotWriteAnythingWhenCountIsZero() throws Exception {
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(secret), 8, period);
+
+        int written = totp.generate(0, 0, new char[0]);
+
+        assertThat(written, is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldFailWhenCodesDoNotFitInBuffer() throws Exception {
+        thrown.expect(IndexOutOfBoundsException.class);
+
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(secret), 8, period);
+        totp.generate(0, 3, new char[23]);
+    }
+
+    @Test
+    public void shouldFailWithNegativeCount() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+
+        TOTP totp = new TOTP("sha1", Utils.hexStr2Bytes(secret), 8, period);
+        totp.generate(0, -1, new char[8]);
+    }
+}
@@ -61,6 +61,7 @@ public class TOTPTest8DigitsSha256 {
     String secret = "3132333435363738393031323334353637383930313233343536373839303132";
 
     private TOTP totp;
+    private TOTP builtInTotp;
 
     private String expected;
 
@@ -73,10 +74,16 @@ public class TOTPTest8DigitsSha256 {
                 .thenReturn(timeSecs);
 
         totp = new TOTP("sha256", Utils.hexStr2Bytes(secret), digits, period, clock);
+        builtInTotp = new TOTP("sha256", Utils.hexStr2Bytes(secret), digits, period, true, clock);
     }
 
     @Test
     public void test() {
         assertThat(expected, is(equalTo(totp.generate())));
     }
+
+    @Test
+    public void testBuiltInHmac() {
+        assertThat(expected, is(equalTo(builtInTotp.generate())));
+    }
 }
@@ -64,6 +64,7 @@ public class TOTPTest8DigitsSha512 {
                     "31323334";
 
     private TOTP totp;
+    private TOTP builtInTotp;
 
     private String expected;
 
@@ -76,10 +77,16 @@ public class TOTPTest8DigitsSha512 {
                 .thenReturn(timeSecs);
 
         totp = new TOTP("sha512", Utils.hexStr2Bytes(secret), digits, period, clock);
+        builtInTotp = new TOTP("sha512", Utils.hexStr2Bytes(secret), digits, period, true, clock);
     }
 
     @Test
     public void test() {
         assertThat(expected, is(equalTo(totp.generate())));
     }
+
+    @Test
+    public void testBuiltInHmac() {
+        assertThat(expected, is(equalTo(builtInTotp.generate())));
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.auth0.android.guardian.sdk.otp.utils;
+
+import com.auth0.android.guardian.sdk.utils.Benchmark;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the table driven decoder with the previous, regex and HashMap based, implementation.
+ * <p>
+ * Only runs when the benchmarks are enabled, see {@link Benchmark}.
+ */
+public class Base32BenchmarkTest {
+
+    private static final int SECRETS = 1000;
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int ROUNDS = 100;
+
+    private static final char[] DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final HashMap<Character, Integer> CHAR_MAP = new HashMap<>();
+
+    static {
+        for (int i = 0; i < DIGITS.length; i++) {
+            CHAR_MAP.put(DIGITS[i], i);
+        }
+    }
+
+    private String[] secrets;
+
+    @Before
+    public void setUp() {
+        Benchmark.assumeEnabled();
+
+        Random random = new Random(42);
+        secrets = new String[SECRETS];
+        for (int i = 0; i < SECRETS; i++) {
+            byte[] secret = new byte[20];
+            random.nextBytes(secret);
+            secrets[i] = Base32.encode(secret);
+        }
+    }
+
+    @Test
+    public void shouldDecodeFasterThanPreviousImplementation() throws Exception {
+        for (String secret : secrets) {
+            assertThat(Base32.decode(secret), is(equalTo(legacyDecode(secret))));
+        }
+
+        Benchmark.Result legacy = Benchmark.measure(WARM_UP_ROUNDS, ROUNDS, new Benchmark.Task() {
+            @Override
+            public long run() throws Exception {
+                return legacyDecodeAll();
+            }
+        });
+        Benchmark.Result result = Benchmark.measure(WARM_UP_ROUNDS, ROUNDS, new Benchmark.Task() {
+            @Override
+            public long run() throws Exception {
+                return decodeAll();
+            }
+        });
+
+        double legacyNanos = legacy.nanos / SECRETS;
+        double nanos = result.nanos / SECRETS;
+        Benchmark.report("Base32 decode: %.1f ns per secret, previous implementation %.1f ns (%.1fx)",
+                nanos, legacyNanos, legacyNanos / nanos);
+    }
+
+    private long decodeAll() throws Exception {
+        long checksum = 0;
+        for (String secret : secrets) {
+            checksum += Base32.decode(secret)[0];
+        }
+        return checksum;
+    }
+
+    private long legacyDecodeAll() throws Exception {
+        long checksum = 0;
+        for (String secret : secrets) {
+            checksum += legacyDecode(secret)[0];
+        }
+        return checksum;
+    }
+
+    // the decoder as it was before the lookup table
+    private static byte[] legacyDecode(String encoded) throws Base32.DecodingException {
+        encoded = encoded.trim().replaceAll(Base32.SEPARATOR, "").replaceAll(" ", "");
+        encoded = encoded.replaceFirst("[=]*$", "");
+        encoded = encoded.toUpperCase(Locale.US);
+        if (encoded.length() == 0) {
+            return new byte[0];
+        }
+        byte[] result = new byte[encoded.length() * 5 / 8];
+        int buffer = 0;
+        int next = 0;
+        int bitsLeft = 0;
+        for (char c : encoded.toCharArray()) {
+            if (!CHAR_MAP.containsKey(c)) {
+                throw new Base32.DecodingException("Illegal character: " + c);
+            }
+            buffer <<= 5;
+            buffer |= CHAR_MAP.get(c) & 31;
+            bitsLeft += 5;
+            if (bitsLeft >= 8) {
+                result[next++] = (byte) (buffer >> (bitsLeft - 8));
+                bitsLeft -= 8;
+            }
+        }
+        return result;
+    }
+}
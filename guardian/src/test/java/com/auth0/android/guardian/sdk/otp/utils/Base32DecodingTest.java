@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 Auth0 (http://auth0.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.auth0.android.guardian.sdk.otp.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class Base32DecodingTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void shouldFailWithIllegalCharacter() throws Exception {
+        thrown.expect(Base32.DecodingException.class);
+        thrown.expectMessage("Illegal character: 1");
+
+        Base32.decode("MZXW1");
+    }
+
+    @Test
+    public void shouldFailWithNonAsciiCharacter() throws Exception {
+        thrown.expect(Base32.DecodingException.class);
+
+        Base32.decode("MZXWñ");
+    }
+
+    @Test
+    public void shouldFailWithDigitsAfterPadding() throws Exception {
+        thrown.expect(Base32.DecodingException.class);
+
+        Base32.decode("MZXQ====MZXQ");
+    }
+
+    @Test
+    public void shouldDecodeEmptyAndBlankStrings() throws Exception {
+        assertThat(Base32.decode("").length, is(equalTo(0)));
+        assertThat(Base32.decode(" \t-\n===").length, is(equalTo(0)));
+    }
+
+    @Test
+    public void shouldFailWhenDecodedBytesDoNotFitInBuffer() throws Exception {
+        thrown.expect(IndexOutOfBoundsException.class);
+
+        Base32.decode("MZXW6YTBOI", new byte[6], 1);
+    }
+
+    @Test
+    public void shouldRoundTripAllByteValues() throws Exception {
+        byte[] data = new byte[256];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        for (int length = 0; length <= data.length; length++) {
+            byte[] expected = Arrays.copyOf(data, length);
+
+            assertThat(Base32.decode(Base32.encode(expected)), is(equalTo(expected)));
+        }
+    }
+}
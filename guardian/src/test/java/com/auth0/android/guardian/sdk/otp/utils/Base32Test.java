@@ -68,4 +68,33 @@ public class Base32Test {
     public void testDecode() throws Exception {
         assertThat(Base32.decode(encoded), is(equalTo(decoded)));
     }
+
+    @Test
+    public void testDecodeLowercase() throws Exception {
+        assertThat(Base32.decode(encoded.toLowerCase()), is(equalTo(decoded)));
+    }
+
+    @Test
+    public void testDecodeWithSeparatorsAndPadding() throws Exception {
+        StringBuilder formatted = new StringBuilder(" ");
+        for (int i = 0; i < encoded.length(); i++) {
+            if (i > 0 && i % 4 == 0) {
+                formatted.append(i % 8 == 0 ? " " : "-");
+            }
+            formatted.append(encoded.charAt(i));
+        }
+        formatted.append("======\n");
+
+        assertThat(Base32.decode(formatted.toString()), is(equalTo(decoded)));
+    }
+
+    @Test
+    public void testDecodeIntoBuffer() throws Exception {
+        byte[] out = new byte[decoded.length + 2];
+
+        int written = Base32.decode(encoded, out, 1);
+
+        assertThat(written, is(equalTo(decoded.length)));
+        assertThat(Arrays.copyOfRange(out, 1, 1 + written), is(equalTo(decoded)));
+    }
 }
\ No newline at end of file
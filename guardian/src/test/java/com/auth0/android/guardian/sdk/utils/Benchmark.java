@@ -0,0 +1,96 @@
+package com.auth0.android.guardian.sdk.utils;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Shared harness of the benchmark tests. They only run when the {@code guardian.benchmark} system
+ * property is true, which the build passes on to the test JVM:
+ * <pre>
+ *     ./gradlew :guardian:testDebugUnitTest -Dguardian.benchmark=true
+ * </pre>
+ */
+public final class Benchmark {
+
+    public static final String PROPERTY = "guardian.benchmark";
+
+    // keeps the results of the tasks alive, so the JIT can't drop the measured work
+    private static volatile long sink;
+
+    private Benchmark() {
+    }
+
+    /**
+     * The measured work
+     */
+    public interface Task {
+
+        /**
+         * Runs one iteration
+         *
+         * @return any value computed from the work, like a checksum of the results
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * The cost of one iteration of a task
+     */
+    public static final class Result {
+        public final double nanos;
+        public final long bytes;
+
+        Result(double nanos, long bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Skips the calling test unless the benchmarks were enabled
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("Benchmarks run only with -D" + PROPERTY + "=true",
+                Boolean.getBoolean(PROPERTY));
+    }
+
+    /**
+     * Runs the task for the warm up iterations, and then measures the time and the bytes
+     * allocated by the current thread during the given amount of iterations.
+     *
+     * @return the average cost of one iteration
+     */
+    public static Result measure(int warmUpIterations, int iterations, Task task) throws Exception {
+        long checksum = 0;
+        for (int i = 0; i < warmUpIterations; i++) {
+            checksum += task.run();
+        }
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += task.run();
+        }
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - bytes;
+        sink += checksum;
+        return new Result(nanos / (double) iterations, allocated / iterations);
+    }
+
+    /**
+     * Prints one line of results
+     */
+    public static void report(String format, Object... args) {
+        System.out.println(String.format(Locale.US, format, args));
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}